@@ -0,0 +1,68 @@
+package com.example.apigateway.gateway;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RouteMatchingBenchmark {
+
+    @Param({"5", "50", "500"})
+    private int routeCount;
+
+    private List<Route> routes;
+    private RouteIndex routeIndex;
+    private String[] paths;
+
+    @Setup
+    public void setup() {
+        routes = new ArrayList<>(routeCount);
+        for (int i = 0; i < routeCount; i++) {
+            routes.add(new Route("/api/service-" + i + "/.*", "service-" + i, true));
+        }
+        routeIndex = RouteIndex.build(routes);
+
+        // Первый, средний и последний маршрут плюс промах
+        paths = new String[] {
+            "/api/service-0/users/42",
+            "/api/service-" + (routeCount / 2) + "/users/42/orders",
+            "/api/service-" + (routeCount - 1) + "/items",
+            "/api/unknown/path"
+        };
+    }
+
+    @Benchmark
+    public void streamAndRegex(Blackhole blackhole) {
+        for (String path : paths) {
+            Optional<Route> route = routes.stream()
+                .filter(candidate -> path.matches(candidate.path()))
+                .findFirst();
+            if (route.isPresent()) {
+                String routePattern = route.get().path().replace(".*", "");
+                blackhole.consume(path.replaceFirst(routePattern, "/"));
+            } else {
+                blackhole.consume(route);
+            }
+        }
+    }
+
+    @Benchmark
+    public void routeIndex(Blackhole blackhole) {
+        for (String path : paths) {
+            blackhole.consume(routeIndex.match(path));
+        }
+    }
+}
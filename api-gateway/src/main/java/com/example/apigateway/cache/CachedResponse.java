@@ -0,0 +1,84 @@
+package com.example.apigateway.cache;
+
+import org.springframework.http.HttpHeaders;
+
+import java.util.List;
+
+/**
+ * Запись кеша ответов. Тело и заголовки неизменяемы, срок свежести продлевается
+ * после успешной ревалидации по ETag.
+ */
+final class CachedResponse {
+
+    private final int status;
+    private final HttpHeaders headers;
+    private final byte[] body;
+    private final String etag;
+    private final boolean upstreamEtag;
+    private final List<String> vary;
+    private final long generation;
+    private final long ttlNanos;
+    private volatile long storedAtNanos;
+
+    CachedResponse(int status, HttpHeaders headers, byte[] body, String etag, boolean upstreamEtag,
+                   List<String> vary, long generation, long ttlNanos) {
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+        this.etag = etag;
+        this.upstreamEtag = upstreamEtag;
+        this.vary = vary;
+        this.generation = generation;
+        this.ttlNanos = ttlNanos;
+        this.storedAtNanos = System.nanoTime();
+    }
+
+    int status() {
+        return status;
+    }
+
+    HttpHeaders headers() {
+        return headers;
+    }
+
+    byte[] body() {
+        return body;
+    }
+
+    String etag() {
+        return etag;
+    }
+
+    // Ревалидировать у апстрима можно только его собственный ETag, а не вычисленный шлюзом
+    boolean hasUpstreamEtag() {
+        return upstreamEtag;
+    }
+
+    List<String> vary() {
+        return vary;
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    long ttlNanos() {
+        return ttlNanos;
+    }
+
+    boolean isFresh(long nowNanos) {
+        return nowNanos - storedAtNanos < ttlNanos;
+    }
+
+    long ageSeconds(long nowNanos) {
+        return (nowNanos - storedAtNanos) / 1_000_000_000L;
+    }
+
+    void refresh() {
+        storedAtNanos = System.nanoTime();
+    }
+
+    int weight() {
+        return body.length + 256;
+    }
+}
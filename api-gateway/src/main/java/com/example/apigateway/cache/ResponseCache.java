@@ -0,0 +1,397 @@
+package com.example.apigateway.cache;
+
+import com.example.apigateway.gateway.Route;
+import com.example.apigateway.proxy.BufferedResponse;
+import com.example.apigateway.proxy.ProxyEngine;
+import com.example.apigateway.proxy.UpstreamFetcher;
+import com.example.apigateway.proxy.UpstreamRequest;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * Кеш ответов шлюза для GET/HEAD.
+ * <ul>
+ *   <li>Вытеснение W-TinyLFU (Caffeine), размер ограничен суммарным объёмом тел.</li>
+ *   <li>Свежесть задаётся TTL маршрута; протухшая запись с ETag апстрима ещё stale-retention
+ *   хранится для условного запроса If-None-Match.</li>
+ *   <li>Ключ учитывает заголовки из Vary ответа.</li>
+ *   <li>Одновременные промахи по одному ключу ждут один запрос к апстриму.</li>
+ *   <li>Промах HEAD уходит в апстрим как GET: GET и HEAD делят одну запись с полным телом,
+ *   HEAD отдаётся из неё без тела. Ответ апстрима на HEAD не сохраняется никогда.</li>
+ *   <li>Инвалидация по сервису — сменой поколения, без обхода кеша.</li>
+ * </ul>
+ */
+@Component
+public class ResponseCache {
+    private static final Logger logger = LoggerFactory.getLogger(ResponseCache.class);
+
+    // Пока Vary ещё неизвестен, запросы с разными Accept* не должны делить один ответ
+    private static final List<String> COALESCING_HEADERS = List.of("accept", "accept-encoding", "accept-language");
+
+    private final ProxyEngine proxyEngine;
+    private final boolean enabled;
+    private final int maxEntryBytes;
+    private final long staleRetentionNanos;
+    private final Cache<String, CachedResponse> entries;
+    private final Cache<String, List<String>> varyByResource;
+    private final ConcurrentHashMap<String, CompletableFuture<BufferedResponse>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter revalidated;
+    private final Counter coalesced;
+
+    public ResponseCache(ProxyEngine proxyEngine,
+                         MeterRegistry meterRegistry,
+                         @Value("${gateway.cache.enabled:true}") boolean enabled,
+                         @Value("${gateway.cache.max-size-bytes:67108864}") long maxSizeBytes,
+                         @Value("${gateway.cache.max-entry-bytes:262144}") int maxEntryBytes,
+                         @Value("${gateway.cache.stale-retention-ms:300000}") long staleRetentionMs) {
+        this.proxyEngine = proxyEngine;
+        this.enabled = enabled;
+        this.maxEntryBytes = maxEntryBytes;
+        this.staleRetentionNanos = TimeUnit.MILLISECONDS.toNanos(staleRetentionMs);
+        this.entries = Caffeine.newBuilder()
+            .maximumWeight(maxSizeBytes)
+            .weigher((String key, CachedResponse value) -> value.weight())
+            .expireAfter(new Expiry<String, CachedResponse>() {
+                @Override
+                public long expireAfterCreate(String key, CachedResponse value, long currentTime) {
+                    return retentionNanos(value);
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, CachedResponse value, long currentTime, long currentDuration) {
+                    return retentionNanos(value);
+                }
+
+                @Override
+                public long expireAfterRead(String key, CachedResponse value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+        this.varyByResource = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterAccess(staleRetentionMs, TimeUnit.MILLISECONDS)
+            .build();
+
+        this.hits = Counter.builder("gateway.cache.hits").register(meterRegistry);
+        this.misses = Counter.builder("gateway.cache.misses").register(meterRegistry);
+        this.revalidated = Counter.builder("gateway.cache.revalidated").register(meterRegistry);
+        this.coalesced = Counter.builder("gateway.cache.coalesced").register(meterRegistry);
+        meterRegistry.gauge("gateway.cache.entries", entries, cache -> cache.estimatedSize());
+    }
+
+    public boolean isCacheable(HttpServletRequest request, Route route) {
+        if (!enabled || !route.cacheable()) {
+            return false;
+        }
+        String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return false;
+        }
+        // Общий кеш не хранит ответы на запросы с учётными данными
+        if (request.getHeader(HttpHeaders.AUTHORIZATION) != null || request.getHeader(HttpHeaders.COOKIE) != null) {
+            return false;
+        }
+        String cacheControl = request.getHeader(HttpHeaders.CACHE_CONTROL);
+        return cacheControl == null || !cacheControl.toLowerCase(Locale.ROOT).contains("no-store");
+    }
+
+    /**
+     * Отдаёт свежую запись из кеша, не обращаясь к апстриму.
+     *
+     * @return {@code true}, если ответ отправлен клиенту
+     */
+    public boolean serveFresh(HttpServletRequest request, HttpServletResponse response,
+                              Route route, String upstreamPath) throws IOException {
+        String resource = resourceKey(route, upstreamPath, request);
+        CachedResponse cached = lookup(resource, route, request);
+        long now = System.nanoTime();
+        if (cached == null || !cached.isFresh(now) || requestsRevalidation(request)) {
+            return false;
+        }
+        hits.increment();
+        write(request, response, cached, "HIT", now);
+        return true;
+    }
+
+    /**
+     * Промах или протухшая запись: один запрос к апстриму на ключ, при наличии ETag — условный.
+     *
+     * @param upstreamRequest снимок запроса клиента; в апстрим уходит его GET-вариант
+     * @return статус ответа апстрима
+     */
+    public int fetch(HttpServletRequest request, HttpServletResponse response, Route route,
+                     UpstreamRequest upstreamRequest, UpstreamFetcher fetcher) throws IOException {
+        String resource = resourceKey(route, upstreamRequest.path(), request);
+        CachedResponse stale = lookup(resource, route, request);
+        String revalidateWith = stale != null && stale.hasUpstreamEtag() ? stale.etag() : null;
+
+        String flightKey = coalescingKey(resource, request);
+        CompletableFuture<BufferedResponse> flight = new CompletableFuture<>();
+        CompletableFuture<BufferedResponse> existing = inFlight.putIfAbsent(flightKey, flight);
+        BufferedResponse upstream;
+        if (existing != null) {
+            coalesced.increment();
+            upstream = await(existing);
+            if (upstream.status() == HttpServletResponse.SC_NOT_MODIFIED && stale == null) {
+                // Ведущий запрос был условным, а у этого запроса сохранённой записи нет
+                upstream = fetcher.fetch(upstreamRequest.revalidating(null));
+            }
+        } else {
+            misses.increment();
+            try {
+                upstream = fetcher.fetch(upstreamRequest.revalidating(revalidateWith));
+                flight.complete(upstream);
+            } catch (IOException | RuntimeException e) {
+                flight.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(flightKey, flight);
+            }
+        }
+
+        if (upstream.status() == HttpServletResponse.SC_NOT_MODIFIED && stale != null) {
+            // Ревалидацию выполнил один из запросов, остальные просто отдают продлённую запись
+            if (existing == null) {
+                stale.refresh();
+                revalidated.increment();
+            }
+            write(request, response, stale, "REVALIDATED", System.nanoTime());
+            return HttpServletResponse.SC_OK;
+        }
+
+        CachedResponse stored = existing == null ? store(resource, route, request, upstream) : null;
+        if (stored != null) {
+            write(request, response, stored, "MISS", System.nanoTime());
+        } else {
+            writeUncached(request, response, upstream);
+        }
+        return upstream.status();
+    }
+
+    /**
+     * Все записи сервиса перестают находиться: ключи содержат номер поколения.
+     */
+    public void invalidateService(String serviceName) {
+        generations.computeIfAbsent(serviceName, k -> new AtomicLong()).incrementAndGet();
+        logger.debug("Response cache invalidated for {}", serviceName);
+    }
+
+    private CachedResponse lookup(String resource, Route route, HttpServletRequest request) {
+        List<String> vary = varyByResource.getIfPresent(resource);
+        CachedResponse cached = entries.getIfPresent(variantKey(resource, vary, request));
+        if (cached == null || cached.generation() != generation(route.serviceName())) {
+            return null;
+        }
+        return cached;
+    }
+
+    private CachedResponse store(String resource, Route route, HttpServletRequest request, BufferedResponse upstream) {
+        if (upstream.status() != HttpServletResponse.SC_OK || upstream.body().length > maxEntryBytes) {
+            return null;
+        }
+        HttpHeaders headers = upstream.headers();
+        String cacheControl = headers.getCacheControl();
+        if (cacheControl != null) {
+            String directives = cacheControl.toLowerCase(Locale.ROOT);
+            if (directives.contains("no-store") || directives.contains("private") || directives.contains("no-cache")) {
+                return null;
+            }
+        }
+        if (headers.containsKey(HttpHeaders.SET_COOKIE)) {
+            return null;
+        }
+        List<String> vary = parseVary(headers);
+        if (vary == null) {
+            return null;
+        }
+        // Сжатое тело хранится как есть и годится только клиентам с тем же Accept-Encoding
+        if (headers.containsKey(HttpHeaders.CONTENT_ENCODING) && !vary.contains("accept-encoding")) {
+            List<String> withEncoding = new ArrayList<>(vary);
+            withEncoding.add("accept-encoding");
+            Collections.sort(withEncoding);
+            vary = List.copyOf(withEncoding);
+        }
+
+        long ttlNanos = Math.min(route.cacheTtl().toNanos(), maxAgeNanos(cacheControl));
+        String upstreamEtag = headers.getETag();
+        String etag = upstreamEtag != null ? upstreamEtag : weakEtag(upstream.body());
+
+        HttpHeaders storedHeaders = new HttpHeaders();
+        storedHeaders.putAll(headers);
+        storedHeaders.setETag(etag);
+        storedHeaders.setVary(vary);
+
+        CachedResponse entry = new CachedResponse(upstream.status(), HttpHeaders.readOnlyHttpHeaders(storedHeaders),
+            upstream.body(), etag, upstreamEtag != null, vary, generation(route.serviceName()), ttlNanos);
+        varyByResource.put(resource, vary);
+        entries.put(variantKey(resource, vary, request), entry);
+        return entry;
+    }
+
+    private void write(HttpServletRequest request, HttpServletResponse response, CachedResponse cached,
+                       String cacheStatus, long nowNanos) throws IOException {
+        response.setHeader("X-Cache", cacheStatus);
+        response.setHeader(HttpHeaders.AGE, String.valueOf(cached.ageSeconds(nowNanos)));
+        if (etagMatches(request.getHeader(HttpHeaders.IF_NONE_MATCH), cached.etag())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            response.setHeader(HttpHeaders.ETAG, cached.etag());
+            String cacheControl = cached.headers().getCacheControl();
+            if (cacheControl != null) {
+                response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+            }
+            return;
+        }
+        proxyEngine.write(request, response, cached.status(), cached.headers(), cached.body());
+    }
+
+    private void writeUncached(HttpServletRequest request, HttpServletResponse response,
+                               BufferedResponse upstream) throws IOException {
+        response.setHeader("X-Cache", "MISS");
+        proxyEngine.write(request, response, upstream.status(), upstream.headers(), upstream.body());
+    }
+
+    private BufferedResponse await(CompletableFuture<BufferedResponse> flight) throws IOException {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for upstream response", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private long retentionNanos(CachedResponse value) {
+        return value.hasUpstreamEtag() ? value.ttlNanos() + staleRetentionNanos : value.ttlNanos();
+    }
+
+    private long generation(String serviceName) {
+        AtomicLong generation = generations.get(serviceName);
+        return generation != null ? generation.get() : 0;
+    }
+
+    private static String resourceKey(Route route, String upstreamPath, HttpServletRequest request) {
+        String query = request.getQueryString();
+        return query == null ? route.serviceName() + ' ' + upstreamPath
+            : route.serviceName() + ' ' + upstreamPath + '?' + query;
+    }
+
+    private static String variantKey(String resource, List<String> vary, HttpServletRequest request) {
+        if (vary == null || vary.isEmpty()) {
+            return resource;
+        }
+        StringBuilder key = new StringBuilder(resource);
+        for (String headerName : vary) {
+            String value = request.getHeader(headerName);
+            key.append('\n').append(headerName).append('=').append(value != null ? value : "");
+        }
+        return key.toString();
+    }
+
+    private static String coalescingKey(String resource, HttpServletRequest request) {
+        return variantKey(resource, COALESCING_HEADERS, request);
+    }
+
+    // null — ответ с Vary: * не кешируется
+    private static List<String> parseVary(HttpHeaders headers) {
+        List<String> values = headers.getVary();
+        if (values.isEmpty()) {
+            return List.of();
+        }
+        List<String> names = new ArrayList<>();
+        for (String value : values) {
+            String name = value.trim().toLowerCase(Locale.ROOT);
+            if ("*".equals(name)) {
+                return null;
+            }
+            if (!name.isEmpty() && !names.contains(name)) {
+                names.add(name);
+            }
+        }
+        Collections.sort(names);
+        return List.copyOf(names);
+    }
+
+    private static long maxAgeNanos(String cacheControl) {
+        if (cacheControl == null) {
+            return Long.MAX_VALUE;
+        }
+        long maxAge = Long.MAX_VALUE;
+        for (String directive : cacheControl.split(",")) {
+            String trimmed = directive.trim().toLowerCase(Locale.ROOT);
+            boolean shared = trimmed.startsWith("s-maxage=");
+            if (shared || trimmed.startsWith("max-age=")) {
+                long seconds;
+                try {
+                    seconds = Long.parseLong(trimmed.substring(trimmed.indexOf('=') + 1));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+                // s-maxage для общего кеша важнее max-age
+                if (shared) {
+                    return TimeUnit.SECONDS.toNanos(seconds);
+                }
+                maxAge = TimeUnit.SECONDS.toNanos(seconds);
+            }
+        }
+        return maxAge;
+    }
+
+    private static boolean requestsRevalidation(HttpServletRequest request) {
+        String cacheControl = request.getHeader(HttpHeaders.CACHE_CONTROL);
+        return cacheControl != null && cacheControl.toLowerCase(Locale.ROOT).contains("no-cache");
+    }
+
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        String opaque = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if ("*".equals(trimmed) || stripWeak(trimmed).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private static String weakEtag(byte[] body) {
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        return "W/\"" + Long.toHexString(crc.getValue()) + '-' + Integer.toHexString(body.length) + '"';
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.apigateway.cache;
+
+import org.example.common.event.UserEvent;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+@Component
+public class UserEventCacheInvalidator {
+
+    private static final String USER_SERVICE = "user-service";
+
+    private final ResponseCache responseCache;
+
+    public UserEventCacheInvalidator(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    // В событии только email, а кешируются пути по id, поэтому сбрасываем весь user-service.
+    // Кеш есть у каждой реплики шлюза, поэтому группа своя
+    @KafkaListener(
+        topics = "user-events",
+        groupId = "#{'api-gateway-cache-' + T(java.util.UUID).randomUUID()}",
+        properties = "auto.offset.reset=latest")
+    public void handleUserEvent(UserEvent event) {
+        responseCache.invalidateService(USER_SERVICE);
+    }
+}
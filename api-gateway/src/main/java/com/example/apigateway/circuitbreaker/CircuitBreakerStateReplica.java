@@ -0,0 +1,82 @@
+package com.example.apigateway.circuitbreaker;
+
+import org.example.common.event.CircuitBreakerStateEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Локальная копия состояний circuit breaker'ов из топика circuit-breaker-state.
+ * Решение о пропуске запроса принимается без сетевых вызовов.
+ */
+@Component
+public class CircuitBreakerStateReplica {
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreakerStateReplica.class);
+
+    private final ConcurrentHashMap<String, BreakerState> states = new ConcurrentHashMap<>();
+    private final long probeIntervalMs;
+
+    public CircuitBreakerStateReplica(@Value("${circuit-breaker.probe-interval-ms:1000}") long probeIntervalMs) {
+        this.probeIntervalMs = probeIntervalMs;
+    }
+
+    public boolean allowRequest(String breakerName) {
+        BreakerState state = states.get(breakerName);
+        return state == null || state.allowRequest(System.currentTimeMillis(), probeIntervalMs);
+    }
+
+    public String getState(String breakerName) {
+        BreakerState state = states.get(breakerName);
+        return state != null ? state.state : BreakerState.CLOSED;
+    }
+
+    public Map<String, String> getStates() {
+        Map<String, String> snapshot = new ConcurrentHashMap<>();
+        states.forEach((name, state) -> snapshot.put(name, state.state));
+        return snapshot;
+    }
+
+    public void apply(CircuitBreakerStateEvent event) {
+        if (event.getBreakerName() == null || event.getState() == null) {
+            return;
+        }
+        BreakerState previous = states.put(event.getBreakerName(),
+            new BreakerState(event.getState(), event.getRetryAt()));
+        if (previous == null || !previous.state.equals(event.getState())) {
+            logger.info("Circuit breaker {} is now {}", event.getBreakerName(), event.getState());
+        }
+    }
+
+    private static final class BreakerState {
+        private static final String CLOSED = "CLOSED";
+        private static final String OPEN = "OPEN";
+
+        private final String state;
+        private final long retryAt;
+        private final AtomicLong nextProbeAt;
+
+        BreakerState(String state, long retryAt) {
+            this.state = state;
+            this.retryAt = retryAt;
+            this.nextProbeAt = new AtomicLong(OPEN.equals(state) ? retryAt : 0);
+        }
+
+        boolean allowRequest(long now, long probeIntervalMs) {
+            if (CLOSED.equals(state)) {
+                return true;
+            }
+            if (OPEN.equals(state) && now < retryAt) {
+                return false;
+            }
+            // HALF_OPEN или истёкший OPEN: пропускаем пробные запросы не чаще раза в интервал,
+            // пока сервис не пришлёт новое состояние
+            long probeAt = nextProbeAt.get();
+            return now >= probeAt && nextProbeAt.compareAndSet(probeAt, now + probeIntervalMs);
+        }
+    }
+}
@@ -1,14 +1,39 @@
 package com.example.apigateway.config;
 
+import com.example.apigateway.http.UpstreamConnectionPools;
+import com.example.apigateway.kafka.KafkaReplyCorrelator;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.web.client.RestTemplate;
 
 @Configuration
+@EnableConfigurationProperties(HttpClientProperties.class)
 public class AppConfig {
 
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public UpstreamConnectionPools upstreamConnectionPools(HttpClientProperties properties,
+                                                           MeterRegistry meterRegistry) {
+        return new UpstreamConnectionPools(properties, meterRegistry);
+    }
+
+    @Bean
+    public RestTemplate restTemplate(UpstreamConnectionPools upstreamConnectionPools) {
+        return new RestTemplate(upstreamConnectionPools);
+    }
+
+    // Ответы живут секунды, поэтому топик реплики держим с коротким retention
+    @Bean
+    public NewTopic gatewayReplyTopic(KafkaReplyCorrelator correlator,
+                                      @Value("${gateway.kafka.reply.retention-ms:60000}") long retentionMs) {
+        return TopicBuilder.name(correlator.getReplyTopic())
+            .partitions(1)
+            .replicas(1)
+            .config("retention.ms", String.valueOf(retentionMs))
+            .build();
     }
 }
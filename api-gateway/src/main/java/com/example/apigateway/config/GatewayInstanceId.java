@@ -0,0 +1,25 @@
+package com.example.apigateway.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+@Component
+public class GatewayInstanceId {
+
+    private final String id;
+
+    public GatewayInstanceId(@Value("${spring.application.name:api-gateway}") String applicationName) {
+        this.id = applicationName + "-" + UUID.randomUUID();
+    }
+
+    public String get() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.apigateway.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+@ConfigurationProperties(prefix = "gateway.http-client")
+public class HttpClientProperties {
+
+    private int maxConnectionsPerRoute = 50;
+    private Duration connectTimeout = Duration.ofSeconds(2);
+    private Duration readTimeout = Duration.ofSeconds(10);
+    private Duration connectionRequestTimeout = Duration.ofSeconds(1);
+    private Duration idleTimeout = Duration.ofSeconds(30);
+    private Duration timeToLive = Duration.ofMinutes(5);
+    private Duration evictionInterval = Duration.ofSeconds(5);
+    // Переопределение лимита для конкретного апстрима: host или host:port -> max connections
+    private Map<String, Integer> maxConnections = new HashMap<>();
+    // Апстримы (host или host:port), с которыми шлюз говорит по HTTP/2: h2c для http, ALPN для https
+    private Set<String> http2Upstreams = new HashSet<>();
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(Duration readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public Duration getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public void setConnectionRequestTimeout(Duration connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public Duration getTimeToLive() {
+        return timeToLive;
+    }
+
+    public void setTimeToLive(Duration timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    public Duration getEvictionInterval() {
+        return evictionInterval;
+    }
+
+    public void setEvictionInterval(Duration evictionInterval) {
+        this.evictionInterval = evictionInterval;
+    }
+
+    public Map<String, Integer> getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(Map<String, Integer> maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public Set<String> getHttp2Upstreams() {
+        return http2Upstreams;
+    }
+
+    public void setHttp2Upstreams(Set<String> http2Upstreams) {
+        this.http2Upstreams = http2Upstreams;
+    }
+
+    public boolean isHttp2(String host, int port) {
+        return http2Upstreams.contains(host + ":" + port) || http2Upstreams.contains(host);
+    }
+
+    public int resolveMaxConnections(String host, int port) {
+        Integer limit = maxConnections.get(host + ":" + port);
+        if (limit == null) {
+            limit = maxConnections.get(host);
+        }
+        return limit != null ? limit : maxConnectionsPerRoute;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.apigateway.discovery;
+
+import org.example.common.event.ServiceHeartbeatEvent;
+import org.example.common.event.ServiceRegistrationEvent;
+import org.example.common.event.ServiceUnregistrationEvent;
+import org.springframework.kafka.annotation.KafkaHandler;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+// Своя consumer group на каждый инстанс шлюза: каждая реплика должна видеть все события
+@Component
+@KafkaListener(
+    topics = {"service-registration-events", "service-heartbeat-events", "service-unregistration-events"},
+    groupId = "#{'api-gateway-discovery-' + T(java.util.UUID).randomUUID()}",
+    properties = "auto.offset.reset=latest")
+public class ServiceDiscoveryEventListener {
+
+    private final ServiceInstanceCache serviceInstanceCache;
+
+    public ServiceDiscoveryEventListener(ServiceInstanceCache serviceInstanceCache) {
+        this.serviceInstanceCache = serviceInstanceCache;
+    }
+
+    @KafkaHandler
+    public void handleRegistration(ServiceRegistrationEvent event) {
+        serviceInstanceCache.onRegistration(event);
+    }
+
+    @KafkaHandler
+    public void handleHeartbeat(ServiceHeartbeatEvent event) {
+        serviceInstanceCache.onHeartbeat(event);
+    }
+
+    @KafkaHandler
+    public void handleUnregistration(ServiceUnregistrationEvent event) {
+        serviceInstanceCache.onUnregistration(event);
+    }
+}
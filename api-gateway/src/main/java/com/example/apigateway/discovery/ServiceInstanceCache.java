@@ -0,0 +1,264 @@
+package com.example.apigateway.discovery;
+
+import org.example.common.event.ServiceHeartbeatEvent;
+import org.example.common.event.ServiceInstance;
+import org.example.common.event.ServiceRegistrationEvent;
+import org.example.common.event.ServiceUnregistrationEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Таблица инстансов, которую наполняют события service-discovery из Kafka.
+ * HTTP-запрос в service-discovery нужен только при холодном старте, когда о сервисе
+ * ещё не пришло ни одного события, и для обновления инстансов, у которых истекает
+ * heartbeat. На один сервис в полёте не больше одного такого запроса: остальные
+ * вызывающие ждут его результат или получают прежние инстансы, пока он идёт.
+ */
+@Component
+public class ServiceInstanceCache implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(ServiceInstanceCache.class);
+
+    private static final long MISS_RETRY_MS = 5000;
+    // Совпадает с порогом ServiceInstance.isHealthy()
+    private static final long HEARTBEAT_TTL_MS = 45000;
+
+    private final RestTemplate restTemplate;
+    private final String discoveryUrl;
+    private final AtomicReference<ServiceTable> table = new AtomicReference<>(ServiceTable.EMPTY);
+    private final long staleTtlMs;
+    private final long refreshAheadMs;
+    // Когда в последний раз ходили в service-discovery за сервисом
+    private final ConcurrentHashMap<String, Long> lastLookups = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<List<ServiceInstance>>> inFlightLookups =
+        new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refreshScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "service-instance-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Фоновые обновления не должны стоять в очереди refreshScheduler: reconcile на его
+    // единственном потоке ждёт чужой полёт по сервису и никогда бы его не дождался
+    private final ExecutorService backgroundLookups = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("service-instance-lookup-", 0).factory());
+
+    public ServiceInstanceCache(RestTemplate restTemplate,
+                                @Value("${service-discovery.url:http://localhost:8084}") String discoveryUrl,
+                                @Value("${service-discovery.reconcile-interval-ms:60000}") long reconcileIntervalMs,
+                                @Value("${service-discovery.stale-ttl-ms:30000}") long staleTtlMs,
+                                @Value("${service-discovery.refresh-ahead-ms:10000}") long refreshAheadMs) {
+        this.restTemplate = restTemplate;
+        this.discoveryUrl = discoveryUrl;
+        this.staleTtlMs = staleTtlMs;
+        this.refreshAheadMs = refreshAheadMs;
+        refreshScheduler.scheduleWithFixedDelay(this::evictExpired, 5, 5, TimeUnit.SECONDS);
+        refreshScheduler.scheduleWithFixedDelay(this::reconcile,
+            reconcileIntervalMs, reconcileIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public List<ServiceInstance> getInstances(String serviceName) {
+        List<ServiceInstance> known = table.get().instancesOf(serviceName);
+        List<ServiceInstance> instances = healthy(known);
+        if (!instances.isEmpty()) {
+            if (expiresSoon(instances)) {
+                refreshInBackground(serviceName);
+            }
+            return instances;
+        }
+        if (!known.isEmpty()) {
+            // Heartbeat истёк, но инстансы ещё в окне stale-ttl: отдаём их, пока идёт обновление
+            refreshInBackground(serviceName);
+            return known;
+        }
+        return healthy(singleFlight(serviceName, this::loadCold, Runnable::run).join());
+    }
+
+    public Optional<ServiceInstance> getInstance(String serviceName) {
+        List<ServiceInstance> instances = getInstances(serviceName);
+        return instances.isEmpty() ? Optional.empty() : Optional.of(instances.get(0));
+    }
+
+    public long version() {
+        return table.get().version();
+    }
+
+    void onRegistration(ServiceRegistrationEvent event) {
+        ServiceInstance instance = new ServiceInstance(event.getInstanceId(), event.getServiceName(),
+            event.getHost(), event.getPort());
+        instance.setHealthCheckUrl(event.getHealthCheckUrl());
+        if (event.getMetadata() != null) {
+            instance.setMetadata(new HashMap<>(event.getMetadata()));
+        }
+        instance.updateHeartbeat();
+        update(current -> current.with(instance));
+        lastLookups.remove(event.getServiceName());
+        logger.info("Service instance registered: {} ({})", event.getInstanceId(), instance.getBaseUrl());
+    }
+
+    void onHeartbeat(ServiceHeartbeatEvent event) {
+        ServiceInstance known = table.get().get(event.getInstanceId());
+        if (known == null) {
+            // Пропустили регистрацию (например, шлюз стартовал позже) - узнаём адрес в фоне
+            refreshInBackground(event.getServiceName());
+            return;
+        }
+
+        ServiceInstance refreshed = copyOf(known);
+        refreshed.updateHeartbeat();
+        refreshed.setLoad(event.getLoad());
+        update(current -> current.get(event.getInstanceId()) != null ? current.with(refreshed) : current);
+    }
+
+    void onUnregistration(ServiceUnregistrationEvent event) {
+        update(current -> current.without(event.getInstanceId()));
+        logger.info("Service instance unregistered: {}", event.getInstanceId());
+    }
+
+    // Один запрос в service-discovery на сервис: кто пришёл, пока он в полёте, получает тот же future.
+    // Лидер снимает future только после обновления таблицы, поэтому опоздавшие видят уже новые данные
+    private CompletableFuture<List<ServiceInstance>> singleFlight(String serviceName,
+                                                                  Function<String, List<ServiceInstance>> loader,
+                                                                  Executor executor) {
+        CompletableFuture<List<ServiceInstance>> flight = inFlightLookups.get(serviceName);
+        if (flight != null) {
+            return flight;
+        }
+        CompletableFuture<List<ServiceInstance>> created = new CompletableFuture<>();
+        flight = inFlightLookups.putIfAbsent(serviceName, created);
+        if (flight != null) {
+            return flight;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    created.complete(loader.apply(serviceName));
+                } catch (Throwable e) {
+                    created.complete(List.of());
+                } finally {
+                    inFlightLookups.remove(serviceName, created);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlightLookups.remove(serviceName, created);
+            created.complete(List.of());
+        }
+        return created;
+    }
+
+    private void refreshInBackground(String serviceName) {
+        if (inFlightLookups.containsKey(serviceName) || recentlyLookedUp(serviceName)) {
+            return;
+        }
+        singleFlight(serviceName, name -> recentlyLookedUp(name)
+            ? table.get().instancesOf(name)
+            : loadFromDiscovery(name), backgroundLookups);
+    }
+
+    private List<ServiceInstance> loadCold(String serviceName) {
+        // Пока ждали, таблицу мог наполнить предыдущий запрос или событие из Kafka
+        List<ServiceInstance> current = healthy(table.get().instancesOf(serviceName));
+        if (!current.isEmpty() || recentlyLookedUp(serviceName)) {
+            return current;
+        }
+        return loadFromDiscovery(serviceName);
+    }
+
+    private boolean recentlyLookedUp(String serviceName) {
+        Long lastLookup = lastLookups.get(serviceName);
+        return lastLookup != null && System.currentTimeMillis() - lastLookup < MISS_RETRY_MS;
+    }
+
+    private boolean expiresSoon(List<ServiceInstance> instances) {
+        long refreshAfter = System.currentTimeMillis() - (HEARTBEAT_TTL_MS - refreshAheadMs);
+        for (ServiceInstance instance : instances) {
+            if (instance.getLastHeartbeat() < refreshAfter) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<ServiceInstance> loadFromDiscovery(String serviceName) {
+        lastLookups.put(serviceName, System.currentTimeMillis());
+
+        try {
+            ResponseEntity<ServiceInstance[]> response = restTemplate.getForEntity(
+                discoveryUrl + "/api/discovery/services/" + serviceName, ServiceInstance[].class);
+            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
+                List<ServiceInstance> instances = Arrays.asList(response.getBody());
+                update(current -> current.withService(serviceName, instances));
+                logger.debug("Loaded {} instances of {} from service-discovery", instances.size(), serviceName);
+                return instances;
+            }
+        } catch (Exception e) {
+            logger.debug("Service discovery lookup failed for {}: {}", serviceName, e.getMessage());
+        }
+        return List.of();
+    }
+
+    // Страховка от потерянных событий: раз в интервал сверяемся с service-discovery
+    private void reconcile() {
+        List<String> serviceNames = table.get().serviceNames();
+        for (String serviceName : serviceNames) {
+            singleFlight(serviceName, this::loadFromDiscovery, Runnable::run).join();
+        }
+    }
+
+    private void evictExpired() {
+        try {
+            long staleBefore = System.currentTimeMillis() - HEARTBEAT_TTL_MS - staleTtlMs;
+            update(current -> current.withoutExpired(staleBefore));
+        } catch (Exception e) {
+            logger.warn("Failed to evict expired service instances", e);
+        }
+    }
+
+    private void update(UnaryOperator<ServiceTable> change) {
+        table.updateAndGet(change);
+    }
+
+    private List<ServiceInstance> healthy(List<ServiceInstance> instances) {
+        for (ServiceInstance instance : instances) {
+            if (!instance.isHealthy()) {
+                return instances.stream().filter(ServiceInstance::isHealthy).toList();
+            }
+        }
+        return instances;
+    }
+
+    private static ServiceInstance copyOf(ServiceInstance source) {
+        ServiceInstance copy = new ServiceInstance(source.getInstanceId(), source.getServiceName(),
+            source.getHost(), source.getPort());
+        copy.setHealthCheckUrl(source.getHealthCheckUrl());
+        copy.setMetadata(source.getMetadata());
+        copy.setLastHeartbeat(source.getLastHeartbeat());
+        copy.setLoad(source.getLoad());
+        return copy;
+    }
+
+    @Override
+    public void destroy() {
+        refreshScheduler.shutdownNow();
+        backgroundLookups.shutdownNow();
+    }
+}
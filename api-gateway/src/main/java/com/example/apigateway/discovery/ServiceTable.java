@@ -0,0 +1,87 @@
+package com.example.apigateway.discovery;
+
+import org.example.common.event.ServiceInstance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Неизменяемый снимок известных инстансов. Любое изменение создаёт новый снимок
+ * со следующей версией, поэтому читатели всегда видят согласованное состояние.
+ */
+final class ServiceTable {
+
+    static final ServiceTable EMPTY = new ServiceTable(0, Map.of());
+
+    private final long version;
+    private final Map<String, ServiceInstance> instances;
+    private final Map<String, List<ServiceInstance>> byService;
+
+    private ServiceTable(long version, Map<String, ServiceInstance> instances) {
+        this.version = version;
+        this.instances = instances;
+        this.byService = groupByService(instances);
+    }
+
+    long version() {
+        return version;
+    }
+
+    List<ServiceInstance> instancesOf(String serviceName) {
+        return byService.getOrDefault(serviceName, List.of());
+    }
+
+    ServiceInstance get(String instanceId) {
+        return instances.get(instanceId);
+    }
+
+    List<String> serviceNames() {
+        return List.copyOf(byService.keySet());
+    }
+
+    int size() {
+        return instances.size();
+    }
+
+    ServiceTable with(ServiceInstance instance) {
+        Map<String, ServiceInstance> updated = new HashMap<>(instances);
+        updated.put(instance.getInstanceId(), instance);
+        return new ServiceTable(version + 1, Collections.unmodifiableMap(updated));
+    }
+
+    ServiceTable without(String instanceId) {
+        if (!instances.containsKey(instanceId)) {
+            return this;
+        }
+        Map<String, ServiceInstance> updated = new HashMap<>(instances);
+        updated.remove(instanceId);
+        return new ServiceTable(version + 1, Collections.unmodifiableMap(updated));
+    }
+
+    ServiceTable withService(String serviceName, List<ServiceInstance> serviceInstances) {
+        Map<String, ServiceInstance> updated = new HashMap<>(instances);
+        updated.values().removeIf(instance -> serviceName.equals(instance.getServiceName()));
+        serviceInstances.forEach(instance -> updated.put(instance.getInstanceId(), instance));
+        return new ServiceTable(version + 1, Collections.unmodifiableMap(updated));
+    }
+
+    // Удаляет инстансы, последний heartbeat которых старше staleBefore
+    ServiceTable withoutExpired(long staleBefore) {
+        Map<String, ServiceInstance> updated = new HashMap<>(instances);
+        if (!updated.values().removeIf(instance -> instance.getLastHeartbeat() < staleBefore)) {
+            return this;
+        }
+        return new ServiceTable(version + 1, Collections.unmodifiableMap(updated));
+    }
+
+    private static Map<String, List<ServiceInstance>> groupByService(Map<String, ServiceInstance> instances) {
+        Map<String, List<ServiceInstance>> grouped = new HashMap<>();
+        instances.values().forEach(instance ->
+            grouped.computeIfAbsent(instance.getServiceName(), k -> new ArrayList<>()).add(instance));
+        grouped.replaceAll((serviceName, list) -> List.copyOf(list));
+        return Collections.unmodifiableMap(grouped);
+    }
+}
@@ -1,54 +1,68 @@
 package com.example.apigateway.gateway;
 
 import org.example.common.event.*;
+import com.example.apigateway.cache.ResponseCache;
+import com.example.apigateway.circuitbreaker.CircuitBreakerStateReplica;
 import com.example.apigateway.kafka.RateLimitProducer;
-import org.springframework.http.*;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.support.SendResult;
+import com.example.apigateway.loadbalancer.LoadBalancer;
+import com.example.apigateway.proxy.BufferedResponse;
+import com.example.apigateway.proxy.ProxyEngine;
+import com.example.apigateway.proxy.ResponseTooLargeException;
+import com.example.apigateway.ratelimit.LocalRateLimiter;
+import com.example.apigateway.resilience.AdaptiveConcurrencyLimiter;
+import com.example.apigateway.resilience.UpstreamExecutor;
+import com.example.apigateway.telemetry.GatewayTelemetry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.Enumeration;
-import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 @Component
 public class ApiGateway implements Filter {
 
-    private final RestTemplate restTemplate;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final LoadBalancer loadBalancer;
+    private final ProxyEngine proxyEngine;
+    private final UpstreamExecutor upstreamExecutor;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final CircuitBreakerStateReplica circuitBreakerStateReplica;
+    private final GatewayTelemetry telemetry;
     private final RateLimitProducer rateLimitProducer;
-    private final List<Route> routes;
-    private final ConcurrentHashMap<String, ServiceInstance> serviceInstances = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, Long> serviceCacheTime = new ConcurrentHashMap<>();
-    private static final long SERVICE_CACHE_TTL_MS = 30000;
-    private final ConcurrentHashMap<String, Boolean> circuitBreakerCache = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, Long> circuitBreakerCacheTime = new ConcurrentHashMap<>();
-    private static final long CIRCUIT_BREAKER_CACHE_TTL_MS = 5000;
-
-    public ApiGateway(RestTemplate restTemplate,
-                      KafkaTemplate<String, Object> kafkaTemplate,
-                      RateLimitProducer rateLimitProducer) {
-        this.restTemplate = restTemplate;
-        this.kafkaTemplate = kafkaTemplate;
+    private final LocalRateLimiter localRateLimiter;
+    private final ResponseCache responseCache;
+    private final boolean localRateLimiting;
+    private final RouteTable routeTable;
+    // Заголовок с tier клиента, который ставит доверенный прокси перед шлюзом; null — не передаём
+    private final String tierHeader;
+
+    public ApiGateway(LoadBalancer loadBalancer,
+                      ProxyEngine proxyEngine,
+                      UpstreamExecutor upstreamExecutor,
+                      AdaptiveConcurrencyLimiter concurrencyLimiter,
+                      CircuitBreakerStateReplica circuitBreakerStateReplica,
+                      GatewayTelemetry telemetry,
+                      RateLimitProducer rateLimitProducer,
+                      LocalRateLimiter localRateLimiter,
+                      ResponseCache responseCache,
+                      RouteTable routeTable,
+                      @Value("${rate-limiter.mode:hybrid}") String rateLimiterMode,
+                      @Value("${gateway.rate-limit.tier-header:}") String tierHeader) {
+        this.loadBalancer = loadBalancer;
+        this.proxyEngine = proxyEngine;
+        this.upstreamExecutor = upstreamExecutor;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.circuitBreakerStateReplica = circuitBreakerStateReplica;
+        this.telemetry = telemetry;
         this.rateLimitProducer = rateLimitProducer;
-        this.routes = initializeRoutes();
-    }
-
-    private List<Route> initializeRoutes() {
-        return List.of(
-            new Route("/api/users/.*", "user-service"),
-            new Route("/api/notifications/.*", "notification-service"),
-            new Route("/api/circuit-breaker/.*", "circuit-breaker-service"),
-            new Route("/api/rate-limit/.*", "rate-limiter-service"),
-            new Route("/api/discovery/.*", "service-discovery")
-        );
+        this.localRateLimiter = localRateLimiter;
+        this.responseCache = responseCache;
+        this.routeTable = routeTable;
+        this.localRateLimiting = "hybrid".equalsIgnoreCase(rateLimiterMode);
+        this.tierHeader = tierHeader.isBlank() ? null : tierHeader;
     }
 
     @Override
@@ -67,17 +81,30 @@ public class ApiGateway implements Filter {
             return;
         }
 
-        Optional<Route> routeOpt = findMatchingRoute(path);
-        if (routeOpt.isEmpty()) {
+        RouteMatch routeMatch = routeTable.match(path, httpRequest);
+        if (routeMatch == null) {
             chain.doFilter(request, response);
             return;
         }
 
-        Route route = routeOpt.get();
+        Route route = routeMatch.route();
         String serviceName = route.serviceName();
+        long startNanos = 0;
 
         try {
-            Optional<ServiceInstance> serviceInstanceOpt = getServiceInstance(serviceName);
+            boolean rateLimitAllowed = checkRateLimit(clientId, route, path, httpRequest);
+            if (!rateLimitAllowed) {
+                telemetry.rateLimited(serviceName, path, method);
+                handleRateLimitExceeded(httpResponse, clientId);
+                return;
+            }
+
+            boolean cacheable = responseCache.isCacheable(httpRequest, route);
+            if (cacheable && responseCache.serveFresh(httpRequest, httpResponse, route, routeMatch.upstreamPath())) {
+                return;
+            }
+
+            Optional<ServiceInstance> serviceInstanceOpt = getServiceInstance(serviceName, clientId);
             if (serviceInstanceOpt.isEmpty()) {
                 handleFallback(httpResponse, serviceName, "Service not found");
                 return;
@@ -86,65 +113,80 @@ public class ApiGateway implements Filter {
             ServiceInstance serviceInstance = serviceInstanceOpt.get();
             boolean circuitAllowed = checkCircuitBreaker(serviceName);
             if (!circuitAllowed) {
+                telemetry.circuitBlocked(serviceName, path, method);
                 handleFallback(httpResponse, serviceName, "Circuit Breaker blocked");
-                sendCircuitBreakerEvent(serviceName, "REQUEST_BLOCKED", path, method);
                 return;
             }
 
-            boolean rateLimitAllowed = checkRateLimit(clientId, serviceName, path);
-            if (!rateLimitAllowed) {
-                handleRateLimitExceeded(httpResponse, clientId);
+            AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire(serviceName);
+            if (permit == null) {
+                telemetry.concurrencyLimited(serviceName, path, method);
+                handleFallback(httpResponse, serviceName, "Concurrency limit exceeded");
                 return;
             }
 
-            sendApiGatewayEvent(serviceName, "REQUEST_STARTED", path, method);
-            String targetUrl = serviceInstance.getBaseUrl() + path;
-            RestTemplate simpleRestTemplate = new RestTemplate();
-            ResponseEntity<String> responseEntity = simpleRestTemplate.getForEntity(targetUrl, String.class);
-            sendCircuitBreakerEvent(serviceName, "SUCCESS_RECORDED", path, method);
-            sendApiGatewayEvent(serviceName, "REQUEST_SUCCESS", path, method);
-            httpResponse.setStatus(responseEntity.getStatusCodeValue());
-            httpResponse.setContentType("application/json");
-            httpResponse.getWriter().write(responseEntity.getBody());
+            startNanos = System.nanoTime();
+            int status;
+            boolean dropped = true;
+            try {
+                status = forwardToUpstream(httpRequest, httpResponse, route, routeMatch, serviceInstance, cacheable);
+                dropped = status >= 500;
+            } finally {
+                permit.release(dropped);
+            }
+            if (status < 400 && !isSafeMethod(method)) {
+                responseCache.invalidateService(serviceName);
+            }
+            long latencyNanos = System.nanoTime() - startNanos;
+            if (status >= 500) {
+                telemetry.requestFailed(serviceName, path, method, latencyNanos);
+            } else {
+                telemetry.requestSucceeded(serviceName, path, method, latencyNanos);
+            }
 
         } catch (Exception e) {
+            long latencyNanos = startNanos != 0 ? System.nanoTime() - startNanos : 0;
+            telemetry.requestFailed(serviceName, path, method, latencyNanos);
 
-            sendCircuitBreakerEvent(serviceName, "FAILURE_RECORDED", path, method);
-            sendApiGatewayEvent(serviceName, "REQUEST_FAILED", path, method);
-
-            handleFallback(httpResponse, serviceName, "Proxy error: " + e.getMessage());
+            if (!httpResponse.isCommitted()) {
+                handleFallback(httpResponse, serviceName, "Proxy error: " + e.getMessage());
+            }
         }
     }
 
-    private Optional<ServiceInstance> getServiceInstance(String serviceName) {
-        // Проверяем кэш
-        Long lastCacheTime = serviceCacheTime.get(serviceName);
-        ServiceInstance cachedInstance = serviceInstances.get(serviceName);
-
-        if (lastCacheTime != null && cachedInstance != null &&
-            (System.currentTimeMillis() - lastCacheTime) < SERVICE_CACHE_TTL_MS) {
-            return Optional.of(cachedInstance);
-        }
-
+    private int forwardToUpstream(HttpServletRequest httpRequest, HttpServletResponse httpResponse, Route route,
+                                  RouteMatch routeMatch, ServiceInstance serviceInstance,
+                                  boolean cacheable) throws IOException {
         try {
-            String discoveryUrl = "http://localhost:8084/api/discovery/service/" + serviceName;
-            ResponseEntity<ServiceInstance> response = restTemplate.getForEntity(
-                discoveryUrl, ServiceInstance.class);
-
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                ServiceInstance instance = response.getBody();
-                serviceInstances.put(serviceName, instance);
-                serviceCacheTime.put(serviceName, System.currentTimeMillis());
-                return Optional.of(instance);
+            if (cacheable) {
+                return responseCache.fetch(httpRequest, httpResponse, route,
+                    proxyEngine.snapshot(httpRequest, routeMatch.upstreamPath()),
+                    upstreamRequest -> upstreamExecutor.execute(route, serviceInstance, upstreamRequest));
             }
-        } catch (Exception e) {
-
+            if (isReplayable(httpRequest) && upstreamExecutor.replaysRequests()) {
+                // Идемпотентный запрос без тела можно повторить и захеджировать
+                BufferedResponse upstreamResponse = upstreamExecutor.execute(route, serviceInstance,
+                    proxyEngine.snapshot(httpRequest, routeMatch.upstreamPath()));
+                proxyEngine.write(httpRequest, httpResponse,
+                    upstreamResponse.status(), upstreamResponse.headers(), upstreamResponse.body());
+                return upstreamResponse.status();
+            }
+        } catch (ResponseTooLargeException e) {
+            // Ответ не помещается в буфер: повторяем идемпотентный запрос потоком, ответ клиенту
+            // ещё не начат
         }
-
-        if (cachedInstance != null) {
-            return Optional.of(cachedInstance);
+        loadBalancer.requestStarted(serviceInstance);
+        try {
+            return proxyEngine.forward(httpRequest, httpResponse,
+                serviceInstance.getBaseUrl(), routeMatch.upstreamPath());
+        } finally {
+            loadBalancer.requestFinished(serviceInstance);
         }
-        return getFallbackServiceInstance(serviceName);
+    }
+
+    private Optional<ServiceInstance> getServiceInstance(String serviceName, String clientId) {
+        Optional<ServiceInstance> instance = loadBalancer.choose(serviceName, clientId);
+        return instance.isPresent() ? instance : getFallbackServiceInstance(serviceName);
     }
 
     private Optional<ServiceInstance> getFallbackServiceInstance(String serviceName) {
@@ -181,50 +223,27 @@ public class ApiGateway implements Filter {
     }
 
     private boolean checkCircuitBreaker(String serviceName) {
-        Long lastCheck = circuitBreakerCacheTime.get(serviceName);
-        Boolean cachedResult = circuitBreakerCache.get(serviceName);
-
-        if (lastCheck != null && cachedResult != null &&
-            (System.currentTimeMillis() - lastCheck) < CIRCUIT_BREAKER_CACHE_TTL_MS) {
-            return cachedResult;
-        }
-
-        try {
-            CircuitBreakerEvent checkEvent = new CircuitBreakerEvent();
-            checkEvent.setBreakerName(serviceName);
-            checkEvent.setServiceName(serviceName);
-            checkEvent.setEventType("CHECK_REQUEST");
-            checkEvent.setTimestamp(java.time.LocalDateTime.now());
-
-            CompletableFuture<SendResult<String, Object>> future =
-                kafkaTemplate.send("circuit-breaker-check-requests", serviceName, checkEvent);
-
-            future.get(2, TimeUnit.SECONDS);
-            boolean allowed = true;
-            circuitBreakerCache.put(serviceName, allowed);
-            circuitBreakerCacheTime.put(serviceName, System.currentTimeMillis());
-
-            return allowed;
+        return circuitBreakerStateReplica.allowRequest(serviceName);
+    }
 
-        } catch (Exception e) {
-            boolean allowed = true;
-            circuitBreakerCache.put(serviceName, allowed);
-            circuitBreakerCacheTime.put(serviceName, System.currentTimeMillis());
-            return allowed;
+    private boolean checkRateLimit(String clientId, Route route, String path, HttpServletRequest request) {
+        RateLimitPolicy policy = route.rateLimit();
+        // Лимит клиента выбирает rate-limiter-service по его политикам, от маршрута идёт только алгоритм
+        String tier = tierHeader != null ? request.getHeader(tierHeader) : null;
+        if (localRateLimiting) {
+            return policy != null
+                ? localRateLimiter.tryAcquire(clientId, request.getRemoteAddr(), tier, route.serviceName(),
+                    policy.limit(), policy.windowMs())
+                : localRateLimiter.tryAcquire(clientId, request.getRemoteAddr(), tier, route.serviceName());
         }
-    }
 
-    private boolean checkRateLimit(String clientId, String serviceName, String path) {
         try {
-            CompletableFuture<RateLimitResultEvent> future =
-                rateLimitProducer.checkRateLimit(clientId, serviceName, path);
+            CompletableFuture<RateLimitResultEvent> future = rateLimitProducer.checkRateLimit(
+                clientId, request.getRemoteAddr(), tier, route.serviceName(), path,
+                policy != null ? policy.algorithm() : null);
             RateLimitResultEvent result = future.get(5, TimeUnit.SECONDS);
 
-            if (!result.isAllowed()) {
-                sendApiGatewayEvent(serviceName, "RATE_LIMIT_EXCEEDED", path, "GET");
-                return false;
-            }
-            return true;
+            return result.isAllowed();
 
         } catch (Exception e) {
             return true;
@@ -239,141 +258,6 @@ public class ApiGateway implements Filter {
         return clientId;
     }
 
-    private void sendCircuitBreakerEvent(String serviceName, String eventType, String path, String method) {
-        try {
-            CircuitBreakerEvent event = new CircuitBreakerEvent();
-            event.setBreakerName(serviceName);
-            event.setServiceName(serviceName);
-            event.setEventType(eventType);
-            event.setPath(path);
-            event.setMethod(method);
-            event.setTimestamp(java.time.LocalDateTime.now());
-
-            kafkaTemplate.send("circuit-breaker-events", serviceName, event)
-                .whenComplete((result, exception) -> {
-                });
-
-        } catch (Exception e) {
-            System.err.println("❌ Failed to create Circuit Breaker event: " + e.getMessage());
-        }
-    }
-
-    private void sendApiGatewayEvent(String serviceName, String eventType, String path, String method) {
-        try {
-            ApiGatewayEvent event = new ApiGatewayEvent();
-            event.setServiceName(serviceName);
-            event.setEventType(eventType);
-            event.setPath(path);
-            event.setMethod(method);
-            event.setTimestamp(java.time.LocalDateTime.now());
-
-            kafkaTemplate.send("api-gateway-events", serviceName, event)
-                .whenComplete((result, exception) -> {
-                });
-
-        } catch (Exception e) {
-            System.err.println("❌ Failed to create API Gateway event: " + e.getMessage());
-        }
-    }
-
-    private boolean forwardRequest(HttpServletRequest request, HttpServletResponse response,
-                                   ServiceInstance serviceInstance, String originalPath) {
-        try {
-            String targetUrl = buildTargetUrl(serviceInstance, originalPath);
-
-            HttpHeaders headers = extractHeaders(request);
-            HttpEntity<byte[]> requestEntity = prepareRequestEntity(request, headers);
-
-            HttpMethod httpMethod = HttpMethod.valueOf(request.getMethod());
-
-            ResponseEntity<byte[]> responseEntity = restTemplate.exchange(
-                targetUrl, httpMethod, requestEntity, byte[].class);
-
-            copyResponse(responseEntity, response);
-
-            return responseEntity.getStatusCode().is2xxSuccessful();
-
-        } catch (Exception e) {
-            return false;
-        }
-    }
-
-    private String buildTargetUrl(ServiceInstance serviceInstance, String originalPath) {
-        String baseUrl = serviceInstance.getBaseUrl();
-        Optional<Route> routeOpt = routes.stream()
-            .filter(route -> route.serviceName().equals(serviceInstance.getServiceName()))
-            .findFirst();
-
-        if (routeOpt.isPresent()) {
-            Route route = routeOpt.get();
-            String routePattern = route.path().replace(".*", "");
-            String servicePath = originalPath.replaceFirst(routePattern, "");
-            return baseUrl + servicePath;
-        }
-
-        return baseUrl + originalPath;
-    }
-
-    private HttpHeaders extractHeaders(HttpServletRequest request) {
-        HttpHeaders headers = new HttpHeaders();
-
-        Enumeration<String> headerNames = request.getHeaderNames();
-        while (headerNames.hasMoreElements()) {
-            String headerName = headerNames.nextElement();
-            if (shouldSkipHeader(headerName)) {
-                continue;
-            }
-            Enumeration<String> headerValues = request.getHeaders(headerName);
-            while (headerValues.hasMoreElements()) {
-                headers.add(headerName, headerValues.nextElement());
-            }
-        }
-
-        return headers;
-    }
-
-    private HttpEntity<byte[]> prepareRequestEntity(HttpServletRequest request, HttpHeaders headers)
-        throws IOException {
-
-        if (hasBody(request)) {
-            byte[] body = request.getInputStream().readAllBytes();
-            return new HttpEntity<>(body, headers);
-        } else {
-            return new HttpEntity<>(headers);
-        }
-    }
-
-    private void copyResponse(ResponseEntity<byte[]> responseEntity, HttpServletResponse response)
-        throws IOException {
-
-        response.setStatus(responseEntity.getStatusCode().value());
-
-        responseEntity.getHeaders().forEach((headerName, headerValues) -> {
-            if (!shouldSkipHeader(headerName)) {
-                headerValues.forEach(headerValue ->
-                    response.addHeader(headerName, headerValue));
-            }
-        });
-
-        if (responseEntity.getBody() != null && responseEntity.getBody().length > 0) {
-            response.getOutputStream().write(responseEntity.getBody());
-        }
-    }
-
-    private boolean shouldSkipHeader(String headerName) {
-        return "host".equalsIgnoreCase(headerName) ||
-            "content-length".equalsIgnoreCase(headerName) ||
-            "transfer-encoding".equalsIgnoreCase(headerName) ||
-            "connection".equalsIgnoreCase(headerName);
-    }
-
-    private boolean hasBody(HttpServletRequest request) {
-        String method = request.getMethod();
-        return "POST".equalsIgnoreCase(method) ||
-            "PUT".equalsIgnoreCase(method) ||
-            "PATCH".equalsIgnoreCase(method);
-    }
-
     private void handleRateLimitExceeded(HttpServletResponse response, String clientId) throws IOException {
         response.setStatus(429);
         response.setContentType("application/json");
@@ -396,10 +280,14 @@ public class ApiGateway implements Filter {
         response.getWriter().flush();
     }
 
-    private Optional<Route> findMatchingRoute(String path) {
-        return routes.stream()
-            .filter(route -> path.matches(route.path()))
-            .findFirst();
+    private boolean isReplayable(HttpServletRequest request) {
+        return isSafeMethod(request.getMethod())
+            && request.getContentLengthLong() <= 0
+            && request.getHeader("Transfer-Encoding") == null;
+    }
+
+    private boolean isSafeMethod(String method) {
+        return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method);
     }
 
     private boolean shouldSkip(String path) {
@@ -418,9 +306,5 @@ public class ApiGateway implements Filter {
 
     @Override
     public void destroy() {
-        serviceInstances.clear();
-        serviceCacheTime.clear();
-        circuitBreakerCache.clear();
-        circuitBreakerCacheTime.clear();
     }
 }
@@ -0,0 +1,18 @@
+package com.example.apigateway.gateway;
+
+import java.time.Duration;
+
+/**
+ * @param algorithm алгоритм rate-limiter-service (token-bucket, sliding-window, gcra, sliding-log)
+ *                  или {@code null} — выбирает сам сервис по своим настройкам
+ */
+public record RateLimitPolicy(int limit, Duration window, String algorithm) {
+
+    public RateLimitPolicy(int limit, Duration window) {
+        this(limit, window, null);
+    }
+
+    public int windowMs() {
+        return (int) window.toMillis();
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.apigateway.gateway;
+
+import java.util.regex.Pattern;
+
+/**
+ * Переписывание пути для апстрима (после strip-prefix), синтаксис замены как у {@link java.util.regex.Matcher#replaceAll(String)}.
+ */
+public record RewriteRule(Pattern pattern, String replacement) {
+
+    public static RewriteRule of(String regex, String replacement) {
+        return new RewriteRule(Pattern.compile(regex), replacement != null ? replacement : "");
+    }
+
+    public String apply(String path) {
+        String rewritten = pattern.matcher(path).replaceAll(replacement);
+        return rewritten.isEmpty() ? "/" : rewritten;
+    }
+
+    @Override
+    public String toString() {
+        return pattern.pattern() + " -> " + replacement;
+    }
+}
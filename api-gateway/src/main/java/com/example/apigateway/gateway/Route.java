@@ -1,8 +1,60 @@
 package com.example.apigateway.gateway;
 
-public record Route(String path, String serviceName) {
+import java.time.Duration;
+
+/**
+ * @param predicate     условия помимо пути: методы, заголовки
+ * @param rewrite       переписывание пути для апстрима или {@code null}
+ * @param cacheTtl      сколько ответ на GET/HEAD считается свежим в кеше шлюза; {@link Duration#ZERO} — не кешировать
+ * @param latencyBudget сколько всего может занять идемпотентный запрос вместе с повторами и хеджами;
+ *                      {@link Duration#ZERO} — значение по умолчанию gateway.latency-budget-ms
+ * @param rateLimit     лимит запросов клиента к сервису или {@code null} — лимит по умолчанию rate-limiter.*
+ */
+public record Route(String path, String serviceName, boolean stripPrefix, RoutePredicate predicate,
+                    RewriteRule rewrite, Duration cacheTtl, Duration latencyBudget, RateLimitPolicy rateLimit) {
+
+    public Route {
+        predicate = predicate != null ? predicate : RoutePredicate.ANY;
+        cacheTtl = cacheTtl != null ? cacheTtl : Duration.ZERO;
+        latencyBudget = latencyBudget != null ? latencyBudget : Duration.ZERO;
+    }
+
+    public Route(String path, String serviceName, boolean stripPrefix) {
+        this(path, serviceName, stripPrefix, RoutePredicate.ANY, null, Duration.ZERO, Duration.ZERO, null);
+    }
+
+    public Route(String path, String serviceName) {
+        this(path, serviceName, false);
+    }
+
+    public Route withPredicate(RoutePredicate predicate) {
+        return new Route(path, serviceName, stripPrefix, predicate, rewrite, cacheTtl, latencyBudget, rateLimit);
+    }
+
+    public Route withRewrite(RewriteRule rewrite) {
+        return new Route(path, serviceName, stripPrefix, predicate, rewrite, cacheTtl, latencyBudget, rateLimit);
+    }
+
+    public Route withCacheTtl(Duration cacheTtl) {
+        return new Route(path, serviceName, stripPrefix, predicate, rewrite, cacheTtl, latencyBudget, rateLimit);
+    }
+
+    public Route withLatencyBudget(Duration latencyBudget) {
+        return new Route(path, serviceName, stripPrefix, predicate, rewrite, cacheTtl, latencyBudget, rateLimit);
+    }
+
+    public Route withRateLimit(RateLimitPolicy rateLimit) {
+        return new Route(path, serviceName, stripPrefix, predicate, rewrite, cacheTtl, latencyBudget, rateLimit);
+    }
+
+    public boolean cacheable() {
+        return !cacheTtl.isZero() && !cacheTtl.isNegative();
+    }
+
     @Override
     public String toString() {
-        return "Route{path='" + path + "', serviceName='" + serviceName + "'}";
+        return "Route{path='" + path + "', serviceName='" + serviceName + "', stripPrefix=" + stripPrefix
+            + ", predicate=" + predicate + ", rewrite=" + rewrite + ", cacheTtl=" + cacheTtl
+            + ", latencyBudget=" + latencyBudget + ", rateLimit=" + rateLimit + "}";
     }
 }
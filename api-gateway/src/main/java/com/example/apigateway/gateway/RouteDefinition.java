@@ -0,0 +1,172 @@
+package com.example.apigateway.gateway;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Описание маршрута в файле маршрутов (gateway.routes.location), см. config-repo/api-gateway-routes.yml.
+ */
+public class RouteDefinition {
+    private String path;
+    private String service;
+    private boolean stripPrefix;
+    private List<String> methods = new ArrayList<>();
+    private Map<String, String> headers = new LinkedHashMap<>();
+    private Rewrite rewrite;
+    private Duration timeout;
+    private Duration cacheTtl;
+    private RateLimit rateLimit;
+
+    public Route toRoute() {
+        if (path == null || path.isBlank()) {
+            throw new IllegalArgumentException("Route path is required");
+        }
+        if (service == null || service.isBlank()) {
+            throw new IllegalArgumentException("Route " + path + " has no service");
+        }
+        Set<String> upperCaseMethods = methods.stream()
+            .map(method -> method.trim().toUpperCase(Locale.ROOT))
+            .collect(Collectors.toSet());
+        RewriteRule rewriteRule = rewrite != null && rewrite.getPattern() != null
+            ? RewriteRule.of(rewrite.getPattern(), rewrite.getReplacement())
+            : null;
+        RateLimitPolicy rateLimitPolicy = null;
+        if (rateLimit != null) {
+            if (rateLimit.getLimit() <= 0 || rateLimit.getWindow() == null || rateLimit.getWindow().isZero()) {
+                throw new IllegalArgumentException("Route " + path + " has invalid rate limit");
+            }
+            rateLimitPolicy = new RateLimitPolicy(rateLimit.getLimit(), rateLimit.getWindow(), rateLimit.getAlgorithm());
+        }
+        return new Route(path, service, stripPrefix, new RoutePredicate(upperCaseMethods, headers),
+            rewriteRule, cacheTtl, timeout, rateLimitPolicy);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getService() {
+        return service;
+    }
+
+    public void setService(String service) {
+        this.service = service;
+    }
+
+    public boolean isStripPrefix() {
+        return stripPrefix;
+    }
+
+    public void setStripPrefix(boolean stripPrefix) {
+        this.stripPrefix = stripPrefix;
+    }
+
+    public List<String> getMethods() {
+        return methods;
+    }
+
+    public void setMethods(List<String> methods) {
+        this.methods = methods;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public void setHeaders(Map<String, String> headers) {
+        this.headers = headers;
+    }
+
+    public Rewrite getRewrite() {
+        return rewrite;
+    }
+
+    public void setRewrite(Rewrite rewrite) {
+        this.rewrite = rewrite;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public Duration getCacheTtl() {
+        return cacheTtl;
+    }
+
+    public void setCacheTtl(Duration cacheTtl) {
+        this.cacheTtl = cacheTtl;
+    }
+
+    public RateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    public void setRateLimit(RateLimit rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    public static class Rewrite {
+        private String pattern;
+        private String replacement;
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        public void setPattern(String pattern) {
+            this.pattern = pattern;
+        }
+
+        public String getReplacement() {
+            return replacement;
+        }
+
+        public void setReplacement(String replacement) {
+            this.replacement = replacement;
+        }
+    }
+
+    public static class RateLimit {
+        private int limit;
+        private Duration window;
+        private String algorithm;
+
+        public int getLimit() {
+            return limit;
+        }
+
+        public void setLimit(int limit) {
+            this.limit = limit;
+        }
+
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        public void setAlgorithm(String algorithm) {
+            this.algorithm = algorithm;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.example.apigateway.gateway;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Неизменяемый индекс маршрутов: дерево по сегментам пути, собирается один раз
+ * при старте или перезагрузке маршрутов.
+ * <p>
+ * Поддерживаемые шаблоны сегментов: литерал ({@code users}), один любой сегмент
+ * ({@code *} или {@code [^/]+}) и хвост {@code .*} / {@code **} в конце пути.
+ * Маршрут {@code /api/users/.*} совпадает и с {@code /api/users}, и со всеми вложенными путями.
+ * Все остальные шаблоны считаются настоящими регулярками: они компилируются заранее и
+ * проверяются по порядку объявления, только если дерево ничего не нашло.
+ * <p>
+ * Поиск в дереве не создаёт промежуточных объектов: сегменты сравниваются прямо в исходной
+ * строке, дочерние узлы ищутся по хешу участка строки.
+ * <p>
+ * Несколько маршрутов с одинаковым шаблоном пути различаются предикатами: из них берётся
+ * первый в порядке объявления, который принимает запрос. Если не подошёл ни один,
+ * поиск продолжается по менее специфичным шаблонам.
+ */
+public final class RouteIndex {
+
+    private static final long NO_MATCH = -1L;
+    private static final int[] NO_ROUTES = new int[0];
+
+    private final Route[] routes;
+    private final Node root;
+    private final Route[] regexRoutes;
+    private final Pattern[] regexPatterns;
+
+    private RouteIndex(Route[] routes, Node root, Route[] regexRoutes, Pattern[] regexPatterns) {
+        this.routes = routes;
+        this.root = root;
+        this.regexRoutes = regexRoutes;
+        this.regexPatterns = regexPatterns;
+    }
+
+    public static RouteIndex build(List<Route> routes) {
+        Route[] indexed = routes.toArray(new Route[0]);
+        Node root = new Node();
+        List<Route> regexRoutes = new ArrayList<>();
+        List<Pattern> regexPatterns = new ArrayList<>();
+
+        for (int id = 0; id < indexed.length; id++) {
+            Route route = indexed[id];
+            if (!insert(root, route.path(), id)) {
+                regexRoutes.add(route);
+                regexPatterns.add(Pattern.compile(route.path()));
+            }
+        }
+
+        return new RouteIndex(indexed, root,
+            regexRoutes.toArray(new Route[0]), regexPatterns.toArray(new Pattern[0]));
+    }
+
+    public List<Route> routes() {
+        return List.of(routes);
+    }
+
+    /**
+     * @return совпавший маршрут и путь для апстрима или {@code null}, если маршрут не найден
+     */
+    public RouteMatch match(String path) {
+        return match(path, route -> true);
+    }
+
+    /**
+     * @param accept проверка предикатов маршрута для текущего запроса
+     * @return совпавший маршрут и путь для апстрима или {@code null}, если маршрут не найден
+     */
+    public RouteMatch match(String path, Predicate<Route> accept) {
+        long result = matchNode(root, path, 0, accept);
+        if (result != NO_MATCH) {
+            Route route = routes[(int) (result >>> 32)];
+            int prefixEnd = (int) result;
+            return new RouteMatch(route, upstreamPath(route, path, prefixEnd));
+        }
+
+        for (int i = 0; i < regexPatterns.length; i++) {
+            if (regexPatterns[i].matcher(path).matches() && accept.test(regexRoutes[i])) {
+                return new RouteMatch(regexRoutes[i], rewrite(regexRoutes[i], path));
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return routes.length;
+    }
+
+    private static String upstreamPath(Route route, String path, int prefixEnd) {
+        if (!route.stripPrefix() || prefixEnd == 0) {
+            return rewrite(route, path);
+        }
+        return rewrite(route, prefixEnd >= path.length() ? "/" : path.substring(prefixEnd));
+    }
+
+    private static String rewrite(Route route, String path) {
+        return route.rewrite() != null ? route.rewrite().apply(path) : path;
+    }
+
+    // Результат упакован в long: старшие 32 бита - id маршрута, младшие - конец совпавшего префикса
+    private long matchNode(Node node, String path, int position, Predicate<Route> accept) {
+        int start = position;
+        int length = path.length();
+        while (start < length && path.charAt(start) == '/') {
+            start++;
+        }
+
+        if (start >= length) {
+            int exact = firstAccepted(node.exactRoutes, accept);
+            if (exact >= 0) {
+                return pack(exact, length);
+            }
+            int prefix = firstAccepted(node.prefixRoutes, accept);
+            return prefix >= 0 ? pack(prefix, position) : NO_MATCH;
+        }
+
+        int end = path.indexOf('/', start);
+        if (end < 0) {
+            end = length;
+        }
+
+        Node literal = node.findChild(path, start, end);
+        if (literal != null) {
+            long result = matchNode(literal, path, end, accept);
+            if (result != NO_MATCH) {
+                return result;
+            }
+        }
+
+        if (node.wildcardChild != null) {
+            long result = matchNode(node.wildcardChild, path, end, accept);
+            if (result != NO_MATCH) {
+                return result;
+            }
+        }
+
+        int prefix = firstAccepted(node.prefixRoutes, accept);
+        return prefix >= 0 ? pack(prefix, position) : NO_MATCH;
+    }
+
+    private int firstAccepted(int[] routeIds, Predicate<Route> accept) {
+        for (int routeId : routeIds) {
+            if (accept.test(routes[routeId])) {
+                return routeId;
+            }
+        }
+        return -1;
+    }
+
+    private static long pack(int routeId, int prefixEnd) {
+        return ((long) routeId << 32) | (prefixEnd & 0xFFFFFFFFL);
+    }
+
+    private static boolean insert(Node root, String pattern, int routeId) {
+        if (!pattern.startsWith("/")) {
+            return false;
+        }
+
+        String[] segments = pattern.substring(1).split("/", -1);
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            boolean last = i == segments.length - 1;
+            if (isTail(segment) && !last) {
+                return false;
+            }
+            if (!isTail(segment) && !isWildcard(segment) && !isLiteral(segment)) {
+                return false;
+            }
+        }
+
+        Node node = root;
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (segment.isEmpty()) {
+                if (i == segments.length - 1) {
+                    node.exactRoutes = append(node.exactRoutes, routeId);
+                }
+                continue;
+            }
+            if (isTail(segment)) {
+                node.prefixRoutes = append(node.prefixRoutes, routeId);
+                return true;
+            }
+            node = isWildcard(segment) ? node.wildcard() : node.literal(segment);
+        }
+
+        node.exactRoutes = append(node.exactRoutes, routeId);
+        return true;
+    }
+
+    private static int[] append(int[] routeIds, int routeId) {
+        int[] result = Arrays.copyOf(routeIds, routeIds.length + 1);
+        result[routeIds.length] = routeId;
+        return result;
+    }
+
+    private static boolean isTail(String segment) {
+        return ".*".equals(segment) || "**".equals(segment);
+    }
+
+    private static boolean isWildcard(String segment) {
+        return "*".equals(segment) || "[^/]+".equals(segment) || "[^/]*".equals(segment);
+    }
+
+    private static boolean isLiteral(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            if ("\\^$.|?*+()[]{}".indexOf(segment.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Node {
+        private String[] keys = new String[4];
+        private Node[] children = new Node[4];
+        private int size;
+        private Node wildcardChild;
+        private int[] exactRoutes = NO_ROUTES;
+        private int[] prefixRoutes = NO_ROUTES;
+
+        Node literal(String segment) {
+            int slot = slotFor(segment.hashCode(), segment, 0, segment.length());
+            if (keys[slot] != null) {
+                return children[slot];
+            }
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+                slot = slotFor(segment.hashCode(), segment, 0, segment.length());
+            }
+            Node child = new Node();
+            keys[slot] = segment;
+            children[slot] = child;
+            size++;
+            return child;
+        }
+
+        Node wildcard() {
+            if (wildcardChild == null) {
+                wildcardChild = new Node();
+            }
+            return wildcardChild;
+        }
+
+        Node findChild(String path, int start, int end) {
+            if (size == 0) {
+                return null;
+            }
+            int slot = slotFor(regionHash(path, start, end), path, start, end);
+            return keys[slot] != null ? children[slot] : null;
+        }
+
+        private int slotFor(int hash, String source, int start, int end) {
+            int mask = keys.length - 1;
+            int slot = spread(hash) & mask;
+            int length = end - start;
+            while (true) {
+                String key = keys[slot];
+                if (key == null
+                    || (key.length() == length && key.regionMatches(0, source, start, length))) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private void resize() {
+            String[] oldKeys = keys;
+            Node[] oldChildren = children;
+            keys = new String[oldKeys.length * 2];
+            children = new Node[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int slot = slotFor(oldKeys[i].hashCode(), oldKeys[i], 0, oldKeys[i].length());
+                    keys[slot] = oldKeys[i];
+                    children[slot] = oldChildren[i];
+                }
+            }
+        }
+
+        // Тот же хеш, что у String.hashCode(), но по участку строки без substring
+        private static int regionHash(String source, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + source.charAt(i);
+            }
+            return hash;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
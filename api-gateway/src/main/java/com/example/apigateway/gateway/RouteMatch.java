@@ -0,0 +1,4 @@
+package com.example.apigateway.gateway;
+
+public record RouteMatch(Route route, String upstreamPath) {
+}
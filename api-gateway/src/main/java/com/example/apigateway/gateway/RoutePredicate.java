@@ -0,0 +1,39 @@
+package com.example.apigateway.gateway;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Дополнительные условия маршрута помимо пути.
+ *
+ * @param methods HTTP-методы в верхнем регистре; пустое множество — любой метод
+ * @param headers обязательные заголовки; пустое значение — достаточно наличия заголовка
+ */
+public record RoutePredicate(Set<String> methods, Map<String, String> headers) {
+
+    public static final RoutePredicate ANY = new RoutePredicate(Set.of(), Map.of());
+
+    public RoutePredicate {
+        methods = methods != null ? Set.copyOf(methods) : Set.of();
+        headers = headers != null ? Map.copyOf(headers) : Map.of();
+    }
+
+    public boolean test(HttpServletRequest request) {
+        if (!methods.isEmpty() && !methods.contains(request.getMethod())) {
+            return false;
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            String value = request.getHeader(header.getKey());
+            if (value == null || (!header.getValue().isEmpty() && !header.getValue().equals(value))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isAny() {
+        return methods.isEmpty() && headers.isEmpty();
+    }
+}
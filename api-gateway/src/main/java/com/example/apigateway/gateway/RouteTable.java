@@ -0,0 +1,160 @@
+package com.example.apigateway.gateway;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Таблица маршрутов шлюза. Читается из файла gateway.routes.location (YAML, ключ {@code routes})
+ * и перечитывается по таймеру, если содержимое изменилось. Новая таблица полностью собирается
+ * и проверяется до публикации, затем подменяется одной записью volatile-ссылки: запросы никогда
+ * не видят частично обновлённых маршрутов, а чтение идёт без блокировок.
+ * Если файла нет или он некорректен, остаются встроенные маршруты или последняя удачная версия.
+ */
+@Component
+public class RouteTable implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(RouteTable.class);
+
+    private final ResourceLoader resourceLoader;
+    private final String location;
+    private final long refreshIntervalMs;
+    private final ScheduledExecutorService refreshScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "route-table-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Snapshot snapshot;
+
+    public RouteTable(ResourceLoader resourceLoader,
+                      @Value("${gateway.routes.location:}") String location,
+                      @Value("${gateway.routes.refresh-interval-ms:5000}") long refreshIntervalMs) {
+        this.resourceLoader = resourceLoader;
+        this.location = location;
+        this.refreshIntervalMs = refreshIntervalMs;
+        this.snapshot = new Snapshot(RouteIndex.build(defaultRoutes()), 0, "builtin", null, Instant.now());
+    }
+
+    @PostConstruct
+    public void init() {
+        if (location.isBlank()) {
+            logger.info("gateway.routes.location is not set, using {} built-in routes", snapshot.index().size());
+            return;
+        }
+        reload();
+        if (refreshIntervalMs > 0) {
+            refreshScheduler.scheduleWithFixedDelay(this::reload,
+                refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public RouteMatch match(String path, HttpServletRequest request) {
+        return snapshot.index().match(path, route -> route.predicate().isAny() || route.predicate().test(request));
+    }
+
+    public List<Route> routes() {
+        return snapshot.index().routes();
+    }
+
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Перечитывает файл маршрутов.
+     *
+     * @return {@code true}, если опубликована новая версия таблицы
+     */
+    public synchronized boolean reload() {
+        Resource resource = resourceLoader.getResource(location);
+        if (!resource.exists()) {
+            logger.warn("Route file {} not found, keeping {} routes (version {})",
+                location, snapshot.index().size(), snapshot.version());
+            return false;
+        }
+        try {
+            byte[] content;
+            try (InputStream inputStream = resource.getInputStream()) {
+                content = inputStream.readAllBytes();
+            }
+            String checksum = DigestUtils.md5DigestAsHex(content);
+            if (checksum.equals(snapshot.checksum())) {
+                return false;
+            }
+            replace(parse(resource), checksum, location);
+            return true;
+        } catch (Exception e) {
+            logger.error("Failed to load routes from {}, keeping version {}: {}",
+                location, snapshot.version(), e.getMessage());
+            return false;
+        }
+    }
+
+    public synchronized void replace(List<Route> routes) {
+        replace(routes, "manual-" + (snapshot.version() + 1), null);
+    }
+
+    private void replace(List<Route> routes, String checksum, String source) {
+        RouteIndex index = RouteIndex.build(routes);
+        Snapshot next = new Snapshot(index, snapshot.version() + 1, checksum, source, Instant.now());
+        snapshot = next;
+        logger.info("Route table version {} published: {} routes from {}",
+            next.version(), index.size(), source != null ? source : "API");
+    }
+
+    private List<Route> parse(Resource resource) throws IOException {
+        List<PropertySource<?>> sources = new YamlPropertySourceLoader().load(location, resource);
+        List<RouteDefinition> definitions = new Binder(ConfigurationPropertySources.from(sources))
+            .bind("routes", Bindable.listOf(RouteDefinition.class))
+            .orElse(List.of());
+        if (definitions.isEmpty()) {
+            throw new IllegalArgumentException("no routes defined");
+        }
+        List<Route> routes = new ArrayList<>(definitions.size());
+        for (RouteDefinition definition : definitions) {
+            routes.add(definition.toRoute());
+        }
+        return routes;
+    }
+
+    private static List<Route> defaultRoutes() {
+        return List.of(
+            new Route("/api/users/.*", "user-service")
+                .withCacheTtl(Duration.ofSeconds(30))
+                .withLatencyBudget(Duration.ofSeconds(2)),
+            new Route("/api/notifications/.*", "notification-service"),
+            new Route("/api/circuit-breaker/.*", "circuit-breaker-service"),
+            new Route("/api/rate-limit/.*", "rate-limiter-service"),
+            new Route("/api/discovery/.*", "service-discovery")
+        );
+    }
+
+    @Override
+    public void destroy() {
+        refreshScheduler.shutdownNow();
+    }
+
+    public record Snapshot(RouteIndex index, long version, String checksum, String source, Instant loadedAt) {
+    }
+}
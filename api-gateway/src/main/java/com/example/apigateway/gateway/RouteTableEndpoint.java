@@ -0,0 +1,44 @@
+package com.example.apigateway.gateway;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GET /actuator/gatewayroutes — текущая таблица, POST — перечитать файл маршрутов сейчас.
+ */
+@Component
+@Endpoint(id = "gatewayroutes")
+public class RouteTableEndpoint {
+
+    private final RouteTable routeTable;
+
+    public RouteTableEndpoint(RouteTable routeTable) {
+        this.routeTable = routeTable;
+    }
+
+    @ReadOperation
+    public Map<String, Object> routes() {
+        RouteTable.Snapshot snapshot = routeTable.snapshot();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("version", snapshot.version());
+        result.put("source", snapshot.source());
+        result.put("loadedAt", snapshot.loadedAt().toString());
+        List<String> routes = snapshot.index().routes().stream().map(Route::toString).toList();
+        result.put("routes", routes);
+        return result;
+    }
+
+    @WriteOperation
+    public Map<String, Object> reload() {
+        boolean changed = routeTable.reload();
+        Map<String, Object> result = routes();
+        result.put("changed", changed);
+        return result;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.apigateway.http;
+
+import com.example.apigateway.config.HttpClientProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class UpstreamConnectionPools implements ClientHttpRequestFactory, DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamConnectionPools.class);
+
+    private final HttpClientProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, UpstreamPool> pools = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictionScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "upstream-pool-evictor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile JdkClientHttpRequestFactory http2Factory;
+    private HttpClient http2Client;
+
+    public UpstreamConnectionPools(HttpClientProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        long intervalMs = properties.getEvictionInterval().toMillis();
+        evictionScheduler.scheduleAtFixedRate(this::evictIdleConnections, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        if (properties.isHttp2(uri.getHost(), portOf(uri))) {
+            return http2RequestFactory().createRequest(uri, httpMethod);
+        }
+        return poolFor(uri).requestFactory.createRequest(uri, httpMethod);
+    }
+
+    // Один HTTP/2-клиент на все такие апстримы: он сам держит по соединению на origin
+    // и мультиплексирует в нём запросы, пул соединений не нужен
+    private ClientHttpRequestFactory http2RequestFactory() {
+        JdkClientHttpRequestFactory factory = http2Factory;
+        if (factory == null) {
+            synchronized (this) {
+                factory = http2Factory;
+                if (factory == null) {
+                    http2Client = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_2)
+                        .connectTimeout(properties.getConnectTimeout())
+                        .executor(Executors.newVirtualThreadPerTaskExecutor())
+                        .build();
+                    factory = new JdkClientHttpRequestFactory(http2Client);
+                    factory.setReadTimeout(properties.getReadTimeout());
+                    http2Factory = factory;
+                    logger.info("Created HTTP/2 client for upstreams {}", properties.getHttp2Upstreams());
+                }
+            }
+        }
+        return factory;
+    }
+
+    public PoolStats getStats(String baseUrl) {
+        UpstreamPool pool = pools.get(baseUrl);
+        return pool != null ? pool.connectionManager.getTotalStats() : null;
+    }
+
+    public Map<String, PoolStats> getAllStats() {
+        Map<String, PoolStats> stats = new ConcurrentHashMap<>();
+        pools.forEach((baseUrl, pool) -> stats.put(baseUrl, pool.connectionManager.getTotalStats()));
+        return stats;
+    }
+
+    private UpstreamPool poolFor(URI uri) {
+        String baseUrl = baseUrlOf(uri);
+        UpstreamPool pool = pools.get(baseUrl);
+        if (pool != null) {
+            return pool;
+        }
+        return pools.computeIfAbsent(baseUrl, key -> createPool(key, uri.getHost(), portOf(uri)));
+    }
+
+    private UpstreamPool createPool(String baseUrl, String host, int port) {
+        int maxConnections = properties.resolveMaxConnections(host, port);
+
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+            .setConnectTimeout(Timeout.of(properties.getConnectTimeout()))
+            .setSocketTimeout(Timeout.of(properties.getReadTimeout()))
+            .setTimeToLive(TimeValue.of(properties.getTimeToLive()))
+            .build();
+
+        // Один апстрим - один пул: медленный сервис не выбирает соединения у остальных
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+            .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
+            .setMaxConnTotal(maxConnections)
+            .setMaxConnPerRoute(maxConnections)
+            .setDefaultConnectionConfig(connectionConfig)
+            .build();
+
+        RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectionRequestTimeout(Timeout.of(properties.getConnectionRequestTimeout()))
+            .setResponseTimeout(Timeout.of(properties.getReadTimeout()))
+            .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            .disableAutomaticRetries()
+            // Тело апстрима идёт клиенту как есть, вместе с Content-Encoding: не распаковываем
+            .disableContentCompression()
+            .build();
+
+        registerMetrics(baseUrl, connectionManager);
+        logger.info("Created connection pool for upstream {} with max {} connections", baseUrl, maxConnections);
+        return new UpstreamPool(connectionManager, httpClient, new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+
+    private void registerMetrics(String baseUrl, PoolingHttpClientConnectionManager connectionManager) {
+        Gauge.builder("gateway.http.pool.leased", connectionManager, cm -> cm.getTotalStats().getLeased())
+            .tag("upstream", baseUrl)
+            .description("Connections currently leased to in-flight requests")
+            .register(meterRegistry);
+        Gauge.builder("gateway.http.pool.available", connectionManager, cm -> cm.getTotalStats().getAvailable())
+            .tag("upstream", baseUrl)
+            .description("Idle keep-alive connections in the pool")
+            .register(meterRegistry);
+        Gauge.builder("gateway.http.pool.pending", connectionManager, cm -> cm.getTotalStats().getPending())
+            .tag("upstream", baseUrl)
+            .description("Requests waiting for a connection")
+            .register(meterRegistry);
+        Gauge.builder("gateway.http.pool.max", connectionManager, cm -> cm.getTotalStats().getMax())
+            .tag("upstream", baseUrl)
+            .description("Maximum connections allowed for the upstream")
+            .register(meterRegistry);
+        Gauge.builder("gateway.http.pool.utilization", connectionManager, cm -> {
+                PoolStats stats = cm.getTotalStats();
+                return stats.getMax() > 0 ? (double) stats.getLeased() / stats.getMax() : 0.0;
+            })
+            .tag("upstream", baseUrl)
+            .description("Share of the pool currently leased")
+            .register(meterRegistry);
+    }
+
+    private void evictIdleConnections() {
+        TimeValue idleTimeout = TimeValue.of(properties.getIdleTimeout());
+        pools.values().forEach(pool -> {
+            try {
+                pool.connectionManager.closeExpired();
+                pool.connectionManager.closeIdle(idleTimeout);
+            } catch (Exception e) {
+                logger.warn("Failed to evict idle connections", e);
+            }
+        });
+    }
+
+    private static String baseUrlOf(URI uri) {
+        return uri.getScheme() + "://" + uri.getHost() + ":" + portOf(uri);
+    }
+
+    private static int portOf(URI uri) {
+        if (uri.getPort() != -1) {
+            return uri.getPort();
+        }
+        return "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+    }
+
+    @Override
+    public void destroy() {
+        evictionScheduler.shutdownNow();
+        pools.values().forEach(pool -> pool.httpClient.close(CloseMode.GRACEFUL));
+        pools.clear();
+        synchronized (this) {
+            if (http2Client != null) {
+                http2Client.close();
+            }
+        }
+        logger.info("Upstream connection pools closed");
+    }
+
+    private record UpstreamPool(PoolingHttpClientConnectionManager connectionManager,
+                                CloseableHttpClient httpClient,
+                                ClientHttpRequestFactory requestFactory) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.apigateway.kafka;
+
+import com.example.apigateway.circuitbreaker.CircuitBreakerStateReplica;
+import org.example.common.event.CircuitBreakerStateEvent;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+@Component
+public class CircuitBreakerStateConsumer {
+
+    private final CircuitBreakerStateReplica stateReplica;
+
+    public CircuitBreakerStateConsumer(CircuitBreakerStateReplica stateReplica) {
+        this.stateReplica = stateReplica;
+    }
+
+    // Каждая реплика шлюза читает compacted-топик целиком со своей группой
+    @KafkaListener(
+        topics = "circuit-breaker-state",
+        groupId = "#{'api-gateway-breakers-' + T(java.util.UUID).randomUUID()}",
+        properties = "auto.offset.reset=earliest")
+    public void handleStateChange(CircuitBreakerStateEvent event) {
+        stateReplica.apply(event);
+    }
+}
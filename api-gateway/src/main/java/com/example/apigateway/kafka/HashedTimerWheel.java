@@ -0,0 +1,120 @@
+package com.example.apigateway.kafka;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Хешированное колесо таймеров: O(1) на постановку таймаута и один поток на все таймауты
+ * вместо отдельной задачи в планировщике на каждый запрос. Точность — один тик.
+ */
+class HashedTimerWheel {
+    private static final Logger logger = LoggerFactory.getLogger(HashedTimerWheel.class);
+
+    private final long tickNanos;
+    private final int mask;
+    private final Queue<Timeout>[] buckets;
+    // Новые таймауты попадают в колесо только из рабочего потока, бакеты не нужно синхронизировать
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+    private final long startNanos;
+    private volatile boolean running = true;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    HashedTimerWheel(String name, long tick, TimeUnit unit, int wheelSize) {
+        this.tickNanos = unit.toNanos(tick);
+        int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+        this.mask = size - 1;
+        this.buckets = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() + unit.toNanos(delay));
+        pending.add(timeout);
+        return timeout;
+    }
+
+    void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        long tick = 0;
+        while (running) {
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            long sleepNanos = deadline - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        return;
+                    }
+                }
+            }
+            transferPending(tick);
+            expire(buckets[(int) (tick & mask)], System.nanoTime());
+            tick++;
+        }
+    }
+
+    private void transferPending(long currentTick) {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            long targetTick = Math.max(currentTick, (timeout.deadlineNanos - startNanos) / tickNanos);
+            timeout.remainingRounds = (targetTick - currentTick) / buckets.length;
+            buckets[(int) (targetTick & mask)].add(timeout);
+        }
+    }
+
+    private void expire(Queue<Timeout> bucket, long now) {
+        Iterator<Timeout> it = bucket.iterator();
+        while (it.hasNext()) {
+            Timeout timeout = it.next();
+            if (timeout.cancelled) {
+                it.remove();
+            } else if (timeout.remainingRounds <= 0 && timeout.deadlineNanos <= now + tickNanos) {
+                it.remove();
+                try {
+                    timeout.task.run();
+                } catch (Exception e) {
+                    logger.warn("Timer task failed", e);
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    static final class Timeout {
+        private final Runnable task;
+        private final long deadlineNanos;
+        private long remainingRounds;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.apigateway.kafka;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Корреляция запрос/ответ поверх Kafka. Ответы приходят в собственный топик реплики
+ * шлюза (getReplyTopic), ключ записи — идентификатор корреляции. Имя топика постоянно для
+ * реплики — gateway.kafka.reply.topic или имя хоста, — так что перезапуск продолжает читать
+ * тот же топик, а не создаёт новый. Число ожидающих ответов ограничено: при заполнении
+ * вызывающий ждёт освобождения слота не дольше acquire-timeout.
+ */
+@Component
+public class KafkaReplyCorrelator implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(KafkaReplyCorrelator.class);
+
+    private final ConcurrentHashMap<String, PendingReply<?>> pending = new ConcurrentHashMap<>();
+    private final Semaphore capacity;
+    private final long acquireTimeoutMs;
+    private final String replyTopic;
+    private final HashedTimerWheel timerWheel;
+    private final Counter timeouts;
+    private final Counter lateReplies;
+    private final Counter rejected;
+
+    public KafkaReplyCorrelator(MeterRegistry meterRegistry,
+                                @Value("${spring.application.name:api-gateway}") String applicationName,
+                                @Value("${gateway.kafka.reply.topic:}") String replyTopic,
+                                @Value("${gateway.kafka.reply.max-in-flight:10000}") int maxInFlight,
+                                @Value("${gateway.kafka.reply.acquire-timeout-ms:50}") long acquireTimeoutMs,
+                                @Value("${gateway.kafka.reply.tick-ms:10}") long tickMs) {
+        this.replyTopic = replyTopic.isBlank() ? "api-gateway-replies-" + hostName(applicationName) : replyTopic;
+        this.capacity = new Semaphore(maxInFlight);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.timerWheel = new HashedTimerWheel("kafka-reply-timeouts", tickMs, TimeUnit.MILLISECONDS, 1024);
+
+        Gauge.builder("gateway.kafka.reply.in-flight", pending, ConcurrentHashMap::size)
+            .description("Requests waiting for a Kafka reply")
+            .register(meterRegistry);
+        this.timeouts = Counter.builder("gateway.kafka.reply.timeouts").register(meterRegistry);
+        this.lateReplies = Counter.builder("gateway.kafka.reply.late").register(meterRegistry);
+        this.rejected = Counter.builder("gateway.kafka.reply.rejected").register(meterRegistry);
+    }
+
+    public String getReplyTopic() {
+        return replyTopic;
+    }
+
+    /**
+     * Регистрирует ожидание ответа. Если ответ не пришёл за timeoutMs, future завершается
+     * значением onTimeout. Если свободных слотов нет, future завершается RejectedExecutionException.
+     */
+    public <T> CompletableFuture<T> register(String correlationId, Class<T> replyType,
+                                             long timeoutMs, Supplier<T> onTimeout) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (!acquire()) {
+            rejected.increment();
+            future.completeExceptionally(new RejectedExecutionException("Too many pending Kafka replies"));
+            return future;
+        }
+
+        PendingReply<T> reply = new PendingReply<>(future, replyType);
+        if (pending.putIfAbsent(correlationId, reply) != null) {
+            capacity.release();
+            future.completeExceptionally(new IllegalStateException("Duplicate correlation id " + correlationId));
+            return future;
+        }
+
+        // Таймер ставится после вставки: сработав раньше неё, он не нашёл бы запись, и та
+        // осталась бы в pending вместе со слотом. Ответ, пришедший до таймера, снимает его здесь
+        reply.timeout = timerWheel.schedule(() -> {
+            if (pending.remove(correlationId, reply)) {
+                timeouts.increment();
+                capacity.release();
+                future.complete(onTimeout.get());
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+        if (pending.get(correlationId) != reply) {
+            reply.timeout.cancel();
+        }
+        return future;
+    }
+
+    // Отмена, например когда запрос не удалось отправить
+    public void cancel(String correlationId, Throwable cause) {
+        PendingReply<?> reply = pending.remove(correlationId);
+        if (reply != null) {
+            reply.cancelTimeout();
+            capacity.release();
+            reply.future.completeExceptionally(cause);
+        }
+    }
+
+    public void complete(String correlationId, Object value) {
+        PendingReply<?> reply = correlationId != null ? pending.remove(correlationId) : null;
+        if (reply == null) {
+            lateReplies.increment();
+            logger.debug("Late or unknown reply {}", correlationId);
+            return;
+        }
+        reply.cancelTimeout();
+        capacity.release();
+        reply.completeWith(value);
+    }
+
+    public int inFlight() {
+        return pending.size();
+    }
+
+    private boolean acquire() {
+        if (capacity.tryAcquire()) {
+            return true;
+        }
+        try {
+            return capacity.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // В docker-compose имя хоста задаётся явно, чтобы оно не менялось при пересоздании контейнера
+    private static String hostName(String fallback) {
+        String host = System.getenv("HOSTNAME");
+        if (host == null || host.isBlank()) {
+            try {
+                host = InetAddress.getLocalHost().getHostName();
+            } catch (Exception e) {
+                logger.warn("Cannot resolve host name, reply topic falls back to {}: {}", fallback, e.getMessage());
+                host = fallback;
+            }
+        }
+        return host.replaceAll("[^A-Za-z0-9._-]", "-");
+    }
+
+    @Override
+    public void destroy() {
+        timerWheel.stop();
+    }
+
+    private static final class PendingReply<T> {
+        private final CompletableFuture<T> future;
+        private final Class<T> replyType;
+        // Ставится после вставки в pending, поэтому ответ может застать его пустым
+        private volatile HashedTimerWheel.Timeout timeout;
+
+        private PendingReply(CompletableFuture<T> future, Class<T> replyType) {
+            this.future = future;
+            this.replyType = replyType;
+        }
+
+        private void cancelTimeout() {
+            HashedTimerWheel.Timeout scheduled = timeout;
+            if (scheduled != null) {
+                scheduled.cancel();
+            }
+        }
+
+        private void completeWith(Object value) {
+            if (replyType.isInstance(value)) {
+                future.complete(replyType.cast(value));
+            } else {
+                future.completeExceptionally(new IllegalArgumentException(
+                    "Unexpected reply type " + (value != null ? value.getClass().getName() : "null")));
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.apigateway.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+@Component
+public class KafkaReplyListener {
+
+    private final KafkaReplyCorrelator correlator;
+
+    public KafkaReplyListener(KafkaReplyCorrelator correlator) {
+        this.correlator = correlator;
+    }
+
+    // Топик принадлежит только этой реплике, поэтому читаем его своей группой и только новые записи
+    @KafkaListener(
+        topics = "#{@kafkaReplyCorrelator.replyTopic}",
+        groupId = "#{@kafkaReplyCorrelator.replyTopic}",
+        properties = "auto.offset.reset=latest")
+    public void handleReply(ConsumerRecord<String, Object> record) {
+        correlator.complete(record.key(), record.value());
+    }
+}
@@ -2,48 +2,72 @@ package com.example.apigateway.kafka;
 
 import org.example.common.event.RateLimitRequestEvent;
 import org.example.common.event.RateLimitResultEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
 @Component
 public class RateLimitProducer {
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitProducer.class);
 
     private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final KafkaReplyCorrelator correlator;
+    private final long timeoutMs;
 
-    public RateLimitProducer(KafkaTemplate<String, Object> kafkaTemplate) {
+    public RateLimitProducer(KafkaTemplate<String, Object> kafkaTemplate,
+                             KafkaReplyCorrelator correlator,
+                             @Value("${rate-limiter.timeout:5000}") long timeoutMs) {
         this.kafkaTemplate = kafkaTemplate;
+        this.correlator = correlator;
+        this.timeoutMs = timeoutMs;
     }
 
-    public CompletableFuture<RateLimitResultEvent> checkRateLimit(String clientId, String serviceName, String endpoint) {
+    /**
+     * Лимит и окно клиента выбирает rate-limiter-service по API-ключу, tier и адресу клиента.
+     * algorithm == null — алгоритм тоже выбирает rate-limiter-service.
+     */
+    public CompletableFuture<RateLimitResultEvent> checkRateLimit(String clientId, String clientIp, String tier,
+                                                                  String serviceName, String endpoint,
+                                                                  String algorithm) {
         RateLimitRequestEvent request = new RateLimitRequestEvent();
+        request.setRequestId(UUID.randomUUID().toString());
         request.setClientId(clientId);
+        request.setClientIp(clientIp);
+        request.setTier(tier);
         request.setServiceName(serviceName);
         request.setEndpoint(endpoint);
-        request.setLimit(100); // можно настраивать
-        request.setWindowMs(60000);
+        request.setAlgorithm(algorithm);
+        request.setReplyTopic(correlator.getReplyTopic());
 
-        CompletableFuture<RateLimitResultEvent> future = new CompletableFuture<>();
+        String requestId = request.getRequestId();
+        CompletableFuture<RateLimitResultEvent> future = correlator.register(
+            requestId, RateLimitResultEvent.class, timeoutMs, () -> allowedResult(requestId));
+        if (future.isDone()) {
+            return future;
+        }
 
-        // Сохраняем future для обработки ответа
-        RateLimitResponseCache.put(request.getRequestId(), future);
-
-        kafkaTemplate.send("rate-limit-requests", request.getRequestId(), request)
+        // Ключ по клиенту: все его запросы попадают в одну партицию и к одной реплике rate-limiter-service
+        kafkaTemplate.send("rate-limit-requests", serviceName + ":" + clientId, request)
             .whenComplete((result, exception) -> {
                 if (exception != null) {
-                    System.err.println("❌ Failed to send rate limit request: " + exception.getMessage());
-                    // При ошибке Kafka разрешаем запрос
-                    RateLimitResultEvent fallback = new RateLimitResultEvent();
-                    fallback.setRequestId(request.getRequestId());
-                    fallback.setAllowed(true);
-                    fallback.setRemainingRequests(100);
-                    future.complete(fallback);
-                } else {
-                    System.out.println("✅ Rate limit request sent: " + request.getRequestId());
+                    logger.warn("Failed to send rate limit request {}: {}", requestId, exception.getMessage());
+                    correlator.cancel(requestId, exception);
                 }
             });
 
         return future;
     }
+
+    // При таймауте разрешаем запрос; лимит клиента шлюзу неизвестен
+    private static RateLimitResultEvent allowedResult(String requestId) {
+        RateLimitResultEvent result = new RateLimitResultEvent();
+        result.setRequestId(requestId);
+        result.setAllowed(true);
+        return result;
+    }
 }
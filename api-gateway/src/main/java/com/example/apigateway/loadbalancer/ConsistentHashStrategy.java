@@ -0,0 +1,108 @@
+package com.example.apigateway.loadbalancer;
+
+import org.example.common.event.ServiceInstance;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Кольцо с виртуальными узлами: клиент с одним X-Client-ID попадает на один инстанс,
+// а при изменении состава переезжает только малая часть клиентов
+@Component
+public class ConsistentHashStrategy implements LoadBalancingStrategy {
+
+    private static final int VIRTUAL_NODES = 128;
+
+    private final ConcurrentHashMap<String, Ring> rings = new ConcurrentHashMap<>();
+
+    @Override
+    public String name() {
+        return "consistent-hash";
+    }
+
+    @Override
+    public ServiceInstance choose(String serviceName, List<ServiceInstance> instances, String clientId) {
+        if (instances.size() == 1 || clientId == null) {
+            return instances.get(0);
+        }
+
+        Ring ring = rings.get(serviceName);
+        // Кольцо зависит только от состава инстансов: список, который кеш заново фильтрует
+        // на каждый вызов, не должен перестраивать его
+        if (ring == null || !ring.matches(instances)) {
+            ring = new Ring(instances);
+            rings.put(serviceName, ring);
+        }
+        return instances.get(ring.locate(hash(clientId)));
+    }
+
+    static long hash(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        // Финальное перемешивание из SplitMix64
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+
+    // Владельцы точек — позиции в списке инстансов, по которому построено кольцо, так что
+    // выбор возвращает объект из текущего списка, а не из устаревшей версии таблицы
+    private static final class Ring {
+        private final String[] nodeKeys;
+        private final long[] points;
+        private final int[] owners;
+
+        Ring(List<ServiceInstance> instances) {
+            this.nodeKeys = new String[instances.size()];
+            int size = instances.size() * VIRTUAL_NODES;
+            long[] unsortedPoints = new long[size];
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < instances.size(); i++) {
+                String nodeKey = nodeKey(instances.get(i));
+                nodeKeys[i] = nodeKey;
+                for (int v = 0; v < VIRTUAL_NODES; v++) {
+                    int slot = i * VIRTUAL_NODES + v;
+                    unsortedPoints[slot] = hash(nodeKey + "#" + v);
+                    order[slot] = slot;
+                }
+            }
+            Arrays.sort(order, (left, right) -> Long.compare(unsortedPoints[left], unsortedPoints[right]));
+
+            this.points = new long[size];
+            this.owners = new int[size];
+            for (int i = 0; i < size; i++) {
+                points[i] = unsortedPoints[order[i]];
+                owners[i] = order[i] / VIRTUAL_NODES;
+            }
+        }
+
+        // Те же инстансы в том же порядке: порядок задаёт позиции владельцев
+        boolean matches(List<ServiceInstance> instances) {
+            if (instances.size() != nodeKeys.length) {
+                return false;
+            }
+            for (int i = 0; i < nodeKeys.length; i++) {
+                if (!nodeKeys[i].equals(nodeKey(instances.get(i)))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int locate(long hash) {
+            int index = Arrays.binarySearch(points, hash);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return owners[index == points.length ? 0 : index];
+        }
+
+        private static String nodeKey(ServiceInstance instance) {
+            return instance.getInstanceId() != null ? instance.getInstanceId() : instance.getBaseUrl();
+        }
+    }
+}
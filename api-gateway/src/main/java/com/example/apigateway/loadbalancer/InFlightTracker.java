@@ -0,0 +1,32 @@
+package com.example.apigateway.loadbalancer;
+
+import org.example.common.event.ServiceInstance;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class InFlightTracker {
+
+    private final ConcurrentHashMap<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    public void requestStarted(ServiceInstance instance) {
+        counter(instance).incrementAndGet();
+    }
+
+    public void requestFinished(ServiceInstance instance) {
+        counter(instance).decrementAndGet();
+    }
+
+    public int inFlight(ServiceInstance instance) {
+        AtomicInteger counter = inFlight.get(instance.getBaseUrl());
+        return counter != null ? counter.get() : 0;
+    }
+
+    private AtomicInteger counter(ServiceInstance instance) {
+        String key = instance.getBaseUrl();
+        AtomicInteger counter = inFlight.get(key);
+        return counter != null ? counter : inFlight.computeIfAbsent(key, k -> new AtomicInteger());
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.apigateway.loadbalancer;
+
+import com.example.apigateway.discovery.ServiceInstanceCache;
+import org.example.common.event.ServiceInstance;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class LoadBalancer {
+
+    private final ServiceInstanceCache serviceInstanceCache;
+    private final InFlightTracker inFlightTracker;
+    private final Environment environment;
+    private final Map<String, LoadBalancingStrategy> strategies = new HashMap<>();
+    private final LoadBalancingStrategy defaultStrategy;
+    private final ConcurrentHashMap<String, LoadBalancingStrategy> serviceStrategies = new ConcurrentHashMap<>();
+
+    public LoadBalancer(ServiceInstanceCache serviceInstanceCache,
+                        InFlightTracker inFlightTracker,
+                        List<LoadBalancingStrategy> strategies,
+                        Environment environment,
+                        @Value("${gateway.load-balancer.strategy:round-robin}") String defaultStrategy) {
+        this.serviceInstanceCache = serviceInstanceCache;
+        this.inFlightTracker = inFlightTracker;
+        this.environment = environment;
+        strategies.forEach(strategy -> this.strategies.put(strategy.name(), strategy));
+        this.defaultStrategy = resolve(defaultStrategy);
+    }
+
+    public Optional<ServiceInstance> choose(String serviceName, String clientId) {
+        List<ServiceInstance> instances = serviceInstanceCache.getInstances(serviceName);
+        if (instances.isEmpty()) {
+            return Optional.empty();
+        }
+        if (instances.size() == 1) {
+            return Optional.of(instances.get(0));
+        }
+        return Optional.of(strategyFor(serviceName).choose(serviceName, instances, clientId));
+    }
+
+    /**
+     * Запасной инстанс для повтора или хеджа: наименее загруженный среди ещё не использованных
+     * в этом запросе. Стратегия сервиса не применяется — её состояние (например, кольцо
+     * consistent-hash) рассчитано на полный список. Пусто, если других инстансов нет.
+     */
+    public Optional<ServiceInstance> chooseExcluding(String serviceName, Set<String> excludedBaseUrls) {
+        ServiceInstance best = null;
+        int bestInFlight = Integer.MAX_VALUE;
+        for (ServiceInstance instance : serviceInstanceCache.getInstances(serviceName)) {
+            if (excludedBaseUrls.contains(instance.getBaseUrl())) {
+                continue;
+            }
+            int inFlight = inFlightTracker.inFlight(instance);
+            if (inFlight < bestInFlight) {
+                best = instance;
+                bestInFlight = inFlight;
+            }
+        }
+        return Optional.ofNullable(best);
+    }
+
+    public void requestStarted(ServiceInstance instance) {
+        inFlightTracker.requestStarted(instance);
+    }
+
+    public void requestFinished(ServiceInstance instance) {
+        inFlightTracker.requestFinished(instance);
+    }
+
+    // gateway.load-balancer.services.<service>=<strategy> переопределяет стратегию для сервиса
+    private LoadBalancingStrategy strategyFor(String serviceName) {
+        LoadBalancingStrategy strategy = serviceStrategies.get(serviceName);
+        if (strategy == null) {
+            String configured = environment.getProperty("gateway.load-balancer.services." + serviceName);
+            strategy = configured != null ? resolve(configured) : defaultStrategy;
+            serviceStrategies.put(serviceName, strategy);
+        }
+        return strategy;
+    }
+
+    private LoadBalancingStrategy resolve(String name) {
+        LoadBalancingStrategy strategy = strategies.get(name);
+        if (strategy == null) {
+            throw new IllegalArgumentException("Unknown load balancing strategy: " + name
+                + ", available: " + strategies.keySet());
+        }
+        return strategy;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.apigateway.loadbalancer;
+
+import org.example.common.event.ServiceInstance;
+
+import java.util.List;
+
+public interface LoadBalancingStrategy {
+
+    String name();
+
+    /**
+     * @param instances непустой список здоровых инстансов сервиса
+     */
+    ServiceInstance choose(String serviceName, List<ServiceInstance> instances, String clientId);
+}
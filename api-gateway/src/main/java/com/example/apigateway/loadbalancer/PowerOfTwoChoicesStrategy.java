@@ -0,0 +1,42 @@
+package com.example.apigateway.loadbalancer;
+
+import org.example.common.event.ServiceInstance;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Два случайных инстанса, берём тот, у которого меньше запросов в полёте
+@Component
+public class PowerOfTwoChoicesStrategy implements LoadBalancingStrategy {
+
+    private final InFlightTracker inFlightTracker;
+
+    public PowerOfTwoChoicesStrategy(InFlightTracker inFlightTracker) {
+        this.inFlightTracker = inFlightTracker;
+    }
+
+    @Override
+    public String name() {
+        return "power-of-two";
+    }
+
+    @Override
+    public ServiceInstance choose(String serviceName, List<ServiceInstance> instances, String clientId) {
+        int size = instances.size();
+        if (size == 1) {
+            return instances.get(0);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        ServiceInstance a = instances.get(first);
+        ServiceInstance b = instances.get(second);
+        return inFlightTracker.inFlight(a) <= inFlightTracker.inFlight(b) ? a : b;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.apigateway.loadbalancer;
+
+import org.example.common.event.ServiceInstance;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class RoundRobinStrategy implements LoadBalancingStrategy {
+
+    private final ConcurrentHashMap<String, AtomicInteger> positions = new ConcurrentHashMap<>();
+
+    @Override
+    public String name() {
+        return "round-robin";
+    }
+
+    @Override
+    public ServiceInstance choose(String serviceName, List<ServiceInstance> instances, String clientId) {
+        AtomicInteger position = positions.get(serviceName);
+        if (position == null) {
+            position = positions.computeIfAbsent(serviceName, k -> new AtomicInteger());
+        }
+        int index = (position.getAndIncrement() & Integer.MAX_VALUE) % instances.size();
+        return instances.get(index);
+    }
+}
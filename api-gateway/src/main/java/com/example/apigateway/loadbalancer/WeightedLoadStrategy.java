@@ -0,0 +1,43 @@
+package com.example.apigateway.loadbalancer;
+
+import org.example.common.event.ServiceInstance;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Вес инстанса обратно пропорционален нагрузке из его heartbeat
+@Component
+public class WeightedLoadStrategy implements LoadBalancingStrategy {
+
+    @Override
+    public String name() {
+        return "weighted-load";
+    }
+
+    @Override
+    public ServiceInstance choose(String serviceName, List<ServiceInstance> instances, String clientId) {
+        int size = instances.size();
+        if (size == 1) {
+            return instances.get(0);
+        }
+
+        double totalWeight = 0;
+        for (ServiceInstance instance : instances) {
+            totalWeight += weight(instance);
+        }
+
+        double point = ThreadLocalRandom.current().nextDouble(totalWeight);
+        for (ServiceInstance instance : instances) {
+            point -= weight(instance);
+            if (point < 0) {
+                return instance;
+            }
+        }
+        return instances.get(size - 1);
+    }
+
+    private static double weight(ServiceInstance instance) {
+        return 1.0 / (1 + Math.max(0, instance.getLoad()));
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.apigateway.proxy;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Ответ апстрима, прочитанный целиком. Заголовки уже без hop-by-hop.
+ */
+public record BufferedResponse(int status, HttpHeaders headers, byte[] body) {
+}
@@ -0,0 +1,173 @@
+package com.example.apigateway.proxy;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Enumeration;
+import java.util.Set;
+
+@Component
+public class ProxyEngine {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    // Hop-by-hop заголовки не передаются дальше (RFC 7230, 6.1)
+    private static final Set<String> HOP_BY_HOP_HEADERS = Set.of(
+        "connection", "keep-alive", "proxy-authenticate", "proxy-authorization",
+        "te", "trailer", "transfer-encoding", "upgrade", "host"
+    );
+
+    private final ClientHttpRequestFactory requestFactory;
+
+    public ProxyEngine(ClientHttpRequestFactory requestFactory) {
+        this.requestFactory = requestFactory;
+    }
+
+    public int forward(HttpServletRequest request, HttpServletResponse response,
+                       String baseUrl, String upstreamPath) throws IOException {
+        URI targetUri = buildTargetUri(baseUrl, upstreamPath, request.getQueryString());
+        HttpMethod method = HttpMethod.valueOf(request.getMethod());
+
+        ClientHttpRequest upstreamRequest = requestFactory.createRequest(targetUri, method);
+        copyRequestHeaders(request, upstreamRequest.getHeaders());
+
+        if (hasBody(request)) {
+            InputStream requestBody = request.getInputStream();
+            if (upstreamRequest instanceof StreamingHttpOutputMessage streaming) {
+                streaming.setBody(outputStream -> copy(requestBody, outputStream, false));
+            } else {
+                copy(requestBody, upstreamRequest.getBody(), false);
+            }
+        }
+
+        try (ClientHttpResponse upstreamResponse = upstreamRequest.execute()) {
+            int status = upstreamResponse.getStatusCode().value();
+            response.setStatus(status);
+            copyResponseHeaders(upstreamResponse.getHeaders(), response);
+
+            InputStream responseBody = upstreamResponse.getBody();
+            ServletOutputStream outputStream = response.getOutputStream();
+            copy(responseBody, outputStream, true);
+            outputStream.flush();
+            return status;
+        }
+    }
+
+    public UpstreamRequest snapshot(HttpServletRequest request, String upstreamPath) {
+        HttpHeaders headers = new HttpHeaders();
+        copyRequestHeaders(request, headers);
+        return new UpstreamRequest(HttpMethod.valueOf(request.getMethod()), upstreamPath,
+            request.getQueryString(), HttpHeaders.readOnlyHttpHeaders(headers));
+    }
+
+    /**
+     * Запрос без тела с чтением ответа в память — для кеша, повторов и хеджирования.
+     *
+     * @throws ResponseTooLargeException если тело длиннее maxBodyBytes; ответ закрывается,
+     *                                   не дочитываясь
+     */
+    public BufferedResponse exchange(String baseUrl, UpstreamRequest request, int maxBodyBytes) throws IOException {
+        URI targetUri = buildTargetUri(baseUrl, request.path(), request.query());
+        ClientHttpRequest upstreamRequest = requestFactory.createRequest(targetUri, request.method());
+        upstreamRequest.getHeaders().putAll(request.headers());
+
+        try (ClientHttpResponse upstreamResponse = upstreamRequest.execute()) {
+            if (upstreamResponse.getHeaders().getContentLength() > maxBodyBytes) {
+                throw new ResponseTooLargeException("Response of " + targetUri + " is "
+                    + upstreamResponse.getHeaders().getContentLength() + " bytes");
+            }
+            // Длина может быть неизвестна (chunked): читаем на байт больше порога
+            byte[] body = upstreamResponse.getBody().readNBytes(maxBodyBytes + 1);
+            if (body.length > maxBodyBytes) {
+                throw new ResponseTooLargeException("Response of " + targetUri + " exceeds " + maxBodyBytes + " bytes");
+            }
+            HttpHeaders responseHeaders = new HttpHeaders();
+            upstreamResponse.getHeaders().forEach((headerName, headerValues) -> {
+                if (!isHopByHop(headerName) && !HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(headerName)) {
+                    responseHeaders.addAll(headerName, headerValues);
+                }
+            });
+            return new BufferedResponse(upstreamResponse.getStatusCode().value(),
+                HttpHeaders.readOnlyHttpHeaders(responseHeaders), body);
+        }
+    }
+
+    public void write(HttpServletRequest request, HttpServletResponse response,
+                      int status, HttpHeaders headers, byte[] body) throws IOException {
+        response.setStatus(status);
+        headers.forEach((headerName, headerValues) ->
+            headerValues.forEach(headerValue -> response.addHeader(headerName, headerValue)));
+        response.setContentLength(body.length);
+        if (!"HEAD".equals(request.getMethod())) {
+            ServletOutputStream outputStream = response.getOutputStream();
+            outputStream.write(body);
+            outputStream.flush();
+        }
+    }
+
+    private URI buildTargetUri(String baseUrl, String upstreamPath, String queryString) {
+        StringBuilder url = new StringBuilder(baseUrl.length() + upstreamPath.length() + 32)
+            .append(baseUrl)
+            .append(upstreamPath);
+        if (queryString != null && !queryString.isEmpty()) {
+            url.append('?').append(queryString);
+        }
+        return URI.create(url.toString());
+    }
+
+    private void copyRequestHeaders(HttpServletRequest request, HttpHeaders headers) {
+        Enumeration<String> headerNames = request.getHeaderNames();
+        while (headerNames.hasMoreElements()) {
+            String headerName = headerNames.nextElement();
+            if (isHopByHop(headerName)) {
+                continue;
+            }
+            Enumeration<String> headerValues = request.getHeaders(headerName);
+            while (headerValues.hasMoreElements()) {
+                headers.add(headerName, headerValues.nextElement());
+            }
+        }
+        headers.add("X-Forwarded-For", request.getRemoteAddr());
+        headers.add("X-Forwarded-Proto", request.getScheme());
+    }
+
+    private void copyResponseHeaders(HttpHeaders headers, HttpServletResponse response) {
+        headers.forEach((headerName, headerValues) -> {
+            if (!isHopByHop(headerName)) {
+                headerValues.forEach(headerValue -> response.addHeader(headerName, headerValue));
+            }
+        });
+    }
+
+    // Копируем поток кусками, не собирая тело целиком в памяти
+    private void copy(InputStream in, OutputStream out, boolean flushWhenDrained) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            if (flushWhenDrained && in.available() == 0) {
+                out.flush();
+            }
+        }
+    }
+
+    private boolean isHopByHop(String headerName) {
+        return HOP_BY_HOP_HEADERS.contains(headerName.toLowerCase());
+    }
+
+    private boolean hasBody(HttpServletRequest request) {
+        return request.getContentLengthLong() > 0 || request.getHeader("Transfer-Encoding") != null;
+    }
+}
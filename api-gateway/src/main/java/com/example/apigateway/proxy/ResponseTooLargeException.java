@@ -0,0 +1,14 @@
+package com.example.apigateway.proxy;
+
+import java.io.IOException;
+
+/**
+ * Тело ответа апстрима больше порога, до которого шлюз читает ответы в память. Это не отказ
+ * апстрима: такой ответ отдаётся клиенту потоком через {@link ProxyEngine#forward}.
+ */
+public class ResponseTooLargeException extends IOException {
+
+    public ResponseTooLargeException(String message) {
+        super(message);
+    }
+}
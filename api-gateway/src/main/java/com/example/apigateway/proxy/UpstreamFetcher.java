@@ -0,0 +1,12 @@
+package com.example.apigateway.proxy;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface UpstreamFetcher {
+
+    /**
+     * @param request запрос кеша шлюза: всегда GET, с его собственным If-None-Match
+     */
+    BufferedResponse fetch(UpstreamRequest request) throws IOException;
+}
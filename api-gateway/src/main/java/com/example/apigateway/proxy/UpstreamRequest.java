@@ -0,0 +1,25 @@
+package com.example.apigateway.proxy;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+
+/**
+ * Снимок запроса без тела, который можно отправить в апстрим несколько раз и из другого
+ * потока (повторы, хеджи): после ответа клиенту контейнер переиспользует HttpServletRequest.
+ */
+public record UpstreamRequest(HttpMethod method, String path, String query, HttpHeaders headers) {
+
+    /**
+     * Запрос для кеша шлюза: всегда GET, условные заголовки клиента заменены своими.
+     */
+    public UpstreamRequest revalidating(String ifNoneMatch) {
+        HttpHeaders copy = new HttpHeaders();
+        copy.putAll(headers);
+        copy.remove(HttpHeaders.IF_NONE_MATCH);
+        copy.remove(HttpHeaders.IF_MODIFIED_SINCE);
+        if (ifNoneMatch != null) {
+            copy.set(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return new UpstreamRequest(HttpMethod.GET, path, query, HttpHeaders.readOnlyHttpHeaders(copy));
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.apigateway.ratelimit;
+
+import com.example.apigateway.config.GatewayInstanceId;
+import jakarta.annotation.PostConstruct;
+import org.example.common.event.RateLimitResultEvent;
+import org.example.common.event.RateLimitSyncEvent;
+import org.example.common.event.RateLimitUsage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Локальное решение по rate limit без сетевых вызовов на пути запроса.
+ * Израсходованные квоты пачкой отправляются в rate-limiter-service, а в ответ приходит
+ * глобальный остаток: так лимит соблюдается суммарно по всем репликам шлюза.
+ */
+@Component
+public class LocalRateLimiter implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(LocalRateLimiter.class);
+
+    private static final ParameterizedTypeReference<List<RateLimitResultEvent>> SYNC_RESPONSE_TYPE =
+        new ParameterizedTypeReference<>() {
+        };
+
+    private final RestTemplate restTemplate;
+    private final int limit;
+    private final int windowMs;
+    private final long syncIntervalMs;
+    private final String syncUrl;
+    private final String gatewayId;
+    // serviceName -> clientId -> bucket, чтобы не склеивать строку ключа на каждый запрос
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, TokenBucket>> buckets = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService syncScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "rate-limit-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LocalRateLimiter(RestTemplate restTemplate,
+                            @Value("${rate-limiter.limit:100}") int limit,
+                            @Value("${rate-limiter.window-ms:60000}") int windowMs,
+                            @Value("${rate-limiter.sync-interval-ms:1000}") long syncIntervalMs,
+                            @Value("${rate-limiter.service-url:http://localhost:8085}") String serviceUrl,
+                            GatewayInstanceId gatewayInstanceId) {
+        this.restTemplate = restTemplate;
+        this.limit = limit;
+        this.windowMs = windowMs;
+        this.syncIntervalMs = syncIntervalMs;
+        this.syncUrl = serviceUrl + "/api/rate-limit/sync";
+        this.gatewayId = gatewayInstanceId.get();
+    }
+
+    @PostConstruct
+    public void init() {
+        syncScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                synchronize();
+            } catch (Exception e) {
+                logger.error("Rate limit synchronization failed", e);
+            }
+        }, syncIntervalMs, syncIntervalMs, TimeUnit.MILLISECONDS);
+        logger.info("Local rate limiter started: gatewayId={}, limit={}/{}ms, sync every {}ms",
+            gatewayId, limit, windowMs, syncIntervalMs);
+    }
+
+    public boolean tryAcquire(String clientId, String clientIp, String tier, String serviceName) {
+        return tryAcquire(clientId, clientIp, tier, serviceName, limit, windowMs);
+    }
+
+    // Лимит из политики маршрута; после смены политики бакет клиента создаётся заново.
+    // clientIp и tier уходят в синхронизацию: по ним rate-limiter-service выбирает политику клиента
+    public boolean tryAcquire(String clientId, String clientIp, String tier, String serviceName,
+                              int limit, int windowMs) {
+        long now = System.nanoTime();
+        ConcurrentHashMap<String, TokenBucket> serviceBuckets = buckets.get(serviceName);
+        if (serviceBuckets == null) {
+            serviceBuckets = buckets.computeIfAbsent(serviceName, k -> new ConcurrentHashMap<>());
+        }
+        TokenBucket bucket = serviceBuckets.get(clientId);
+        if (bucket == null || bucket.getLimit() != limit || bucket.getWindowMs() != windowMs) {
+            bucket = serviceBuckets.compute(clientId, (k, existing) ->
+                existing != null && existing.getLimit() == limit && existing.getWindowMs() == windowMs
+                    ? existing
+                    : new TokenBucket(clientId, serviceName, limit, windowMs, now));
+        }
+        bucket.observe(clientIp, tier);
+        return bucket.tryAcquire(now);
+    }
+
+    void synchronize() {
+        List<TokenBucket> reported = new ArrayList<>();
+        List<RateLimitUsage> usages = new ArrayList<>();
+        long now = System.nanoTime();
+
+        buckets.values().forEach(serviceBuckets -> {
+            serviceBuckets.values().removeIf(bucket -> bucket.isIdle(now));
+            serviceBuckets.values().forEach(bucket -> {
+                int consumed = bucket.drainUnsynced();
+                if (consumed > 0) {
+                    TokenBucket.Origin origin = bucket.getOrigin();
+                    reported.add(bucket);
+                    usages.add(new RateLimitUsage(bucket.getClientId(), origin.clientIp(), origin.tier(),
+                        bucket.getServiceName(), consumed, bucket.getLimit(), bucket.getWindowMs()));
+                }
+            });
+        });
+
+        if (usages.isEmpty()) {
+            return;
+        }
+
+        List<RateLimitResultEvent> results;
+        try {
+            results = restTemplate.exchange(syncUrl, HttpMethod.POST,
+                new HttpEntity<>(new RateLimitSyncEvent(gatewayId, usages)), SYNC_RESPONSE_TYPE).getBody();
+        } catch (Exception e) {
+            // Не потеряли расход: отправим его со следующей пачкой
+            for (int i = 0; i < reported.size(); i++) {
+                reported.get(i).restoreUnsynced(usages.get(i).getConsumed());
+            }
+            logger.warn("Rate limiter service unavailable, {} usage reports postponed: {}",
+                usages.size(), e.getMessage());
+            return;
+        }
+
+        if (results == null || results.size() != reported.size()) {
+            logger.warn("Unexpected rate limit sync response for {} reports", reported.size());
+            return;
+        }
+
+        long syncedAt = System.nanoTime();
+        long wallClock = System.currentTimeMillis();
+        for (int i = 0; i < results.size(); i++) {
+            RateLimitResultEvent result = results.get(i);
+            TokenBucket bucket = reported.get(i);
+            // Лимит клиента задаёт его политика в rate-limiter-service, а не маршрут
+            bucket.resize(result.getLimit(), result.getWindowMs(), result.getRemainingRequests(), syncedAt);
+            if (!result.isAllowed()) {
+                long waitMs = Math.max(0, result.getResetTime() - wallClock);
+                bucket.blockUntil(syncedAt + TimeUnit.MILLISECONDS.toNanos(waitMs));
+            }
+        }
+        logger.debug("Synchronized {} rate limit buckets", results.size());
+    }
+
+    @Override
+    public void destroy() {
+        syncScheduler.shutdown();
+        try {
+            synchronize();
+        } catch (Exception e) {
+            logger.warn("Final rate limit synchronization failed", e);
+        }
+        buckets.clear();
+    }
+}
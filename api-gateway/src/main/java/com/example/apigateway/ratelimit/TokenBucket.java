@@ -0,0 +1,159 @@
+package com.example.apigateway.ratelimit;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token bucket в форме GCRA: всё состояние - одно число (теоретическое время прихода
+ * следующего запроса), поэтому проверка - один CAS без блокировок.
+ * <p>
+ * Ведро создаётся по лимиту маршрута ({@link #getLimit}, {@link #getWindowMs}), а после
+ * синхронизации принимает лимит и окно, которые rate-limiter-service назначил клиенту по его
+ * политике ({@link #resize}): лимит клиента может быть как меньше, так и больше лимита маршрута.
+ */
+class TokenBucket {
+
+    private final String clientId;
+    private final String serviceName;
+    private final int limit;
+    private final int windowMs;
+    // Действующие лимит и окно, подменяются одной записью
+    private volatile Shape shape;
+    private final AtomicLong theoreticalArrival;
+    private final LongAdder unsyncedRequests = new LongAdder();
+    private volatile long blockedUntilNanos;
+    private volatile long lastAccessNanos;
+    // Адрес и tier последнего запроса клиента, уходят в отчёт синхронизации
+    private volatile Origin origin = Origin.UNKNOWN;
+
+    TokenBucket(String clientId, String serviceName, int limit, int windowMs, long nowNanos) {
+        this.clientId = clientId;
+        this.serviceName = serviceName;
+        this.limit = limit;
+        this.windowMs = windowMs;
+        this.shape = new Shape(limit, windowMs);
+        this.theoreticalArrival = new AtomicLong(nowNanos);
+        this.blockedUntilNanos = nowNanos;
+        this.lastAccessNanos = nowNanos;
+    }
+
+    boolean tryAcquire(long nowNanos) {
+        lastAccessNanos = nowNanos;
+        if (nowNanos - blockedUntilNanos < 0) {
+            return false;
+        }
+
+        Shape current = shape;
+        while (true) {
+            long arrival = theoreticalArrival.get();
+            long next = (arrival - nowNanos > 0 ? arrival : nowNanos) + current.emissionIntervalNanos();
+            if (next - nowNanos > current.capacityNanos()) {
+                return false;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, next)) {
+                unsyncedRequests.increment();
+                return true;
+            }
+        }
+    }
+
+    int availableTokens(long nowNanos) {
+        Shape current = shape;
+        long arrival = theoreticalArrival.get();
+        long backlog = arrival - nowNanos > 0 ? arrival - nowNanos : 0;
+        return (int) Math.max(0, (current.capacityNanos() - backlog) / current.emissionIntervalNanos());
+    }
+
+    // Глобальная квота меньше локальной - урезаем локальное ведро до неё
+    void limitTo(int remaining, long nowNanos) {
+        Shape current = shape;
+        long target = nowNanos + current.capacityNanos()
+            - (long) Math.max(0, remaining) * current.emissionIntervalNanos();
+        while (true) {
+            long arrival = theoreticalArrival.get();
+            if (arrival - target >= 0 || theoreticalArrival.compareAndSet(arrival, target)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Принимает лимит и окно клиента из ответа синхронизации. Если они не изменились, это
+     * {@link #limitTo}; иначе ведро перестраивается под них, и в нём остаётся глобальный остаток
+     * за вычетом запросов, пропущенных после отправки отчёта. limit или windowMs не больше
+     * нуля (ответ без них) оставляют текущие.
+     */
+    void resize(int limit, int windowMs, int remaining, long nowNanos) {
+        Shape current = shape;
+        Shape target = new Shape(limit > 0 ? limit : current.limit(), windowMs > 0 ? windowMs : current.windowMs());
+        if (target.equals(current)) {
+            limitTo(remaining, nowNanos);
+            return;
+        }
+        shape = target;
+        while (true) {
+            long arrival = theoreticalArrival.get();
+            long available = Math.max(0, Math.min(target.limit(), (long) remaining - unsyncedRequests.sum()));
+            long next = nowNanos + target.capacityNanos() - available * target.emissionIntervalNanos();
+            if (theoreticalArrival.compareAndSet(arrival, next)) {
+                return;
+            }
+        }
+    }
+
+    void observe(String clientIp, String tier) {
+        Origin current = origin;
+        if (!Objects.equals(current.clientIp(), clientIp) || !Objects.equals(current.tier(), tier)) {
+            origin = new Origin(clientIp, tier);
+        }
+    }
+
+    void blockUntil(long untilNanos) {
+        blockedUntilNanos = untilNanos;
+    }
+
+    int drainUnsynced() {
+        return (int) unsyncedRequests.sumThenReset();
+    }
+
+    void restoreUnsynced(int requests) {
+        unsyncedRequests.add(requests);
+    }
+
+    boolean isIdle(long nowNanos) {
+        return nowNanos - lastAccessNanos > shape.capacityNanos() && unsyncedRequests.sum() == 0;
+    }
+
+    String getClientId() {
+        return clientId;
+    }
+
+    Origin getOrigin() {
+        return origin;
+    }
+
+    String getServiceName() {
+        return serviceName;
+    }
+
+    // Лимит маршрута, по которому ведро создано; действующий может отличаться после resize
+    int getLimit() {
+        return limit;
+    }
+
+    int getWindowMs() {
+        return windowMs;
+    }
+
+    record Origin(String clientIp, String tier) {
+        static final Origin UNKNOWN = new Origin(null, null);
+    }
+
+    private record Shape(int limit, int windowMs, long emissionIntervalNanos, long capacityNanos) {
+
+        Shape(int limit, int windowMs) {
+            this(limit, windowMs, Math.max(1, windowMs * 1_000_000L / limit), windowMs * 1_000_000L);
+        }
+    }
+}
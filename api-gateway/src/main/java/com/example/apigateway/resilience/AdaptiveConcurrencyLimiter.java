@@ -0,0 +1,161 @@
+package com.example.apigateway.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Адаптивный лимит одновременных запросов к каждому сервису (алгоритм gradient, как в
+ * Netflix concurrency-limits). Лимит растёт, пока текущая задержка близка к долгосрочной,
+ * и сжимается, когда задержка растёт — то есть когда у апстрима начинает копиться очередь.
+ * Запросы сверх лимита сразу получают 503, не добавляя нагрузки тормозящему сервису.
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double rttTolerance;
+    private final int longWindow;
+    private final ConcurrentHashMap<String, ServiceLimit> limits = new ConcurrentHashMap<>();
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+                                      @Value("${gateway.concurrency.enabled:true}") boolean enabled,
+                                      @Value("${gateway.concurrency.initial-limit:20}") int initialLimit,
+                                      @Value("${gateway.concurrency.min-limit:5}") int minLimit,
+                                      @Value("${gateway.concurrency.max-limit:1000}") int maxLimit,
+                                      @Value("${gateway.concurrency.smoothing:0.2}") double smoothing,
+                                      @Value("${gateway.concurrency.rtt-tolerance:1.5}") double rttTolerance,
+                                      @Value("${gateway.concurrency.long-window:600}") int longWindow) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.rttTolerance = rttTolerance;
+        this.longWindow = longWindow;
+    }
+
+    /**
+     * @return разрешение, которое нужно вернуть через {@link Permit#release(boolean)},
+     * или {@code null}, если лимит сервиса исчерпан
+     */
+    public Permit tryAcquire(String serviceName) {
+        if (!enabled) {
+            return Permit.NOOP;
+        }
+        ServiceLimit limit = limits.get(serviceName);
+        if (limit == null) {
+            limit = limits.computeIfAbsent(serviceName, this::createLimit);
+        }
+        return limit.tryAcquire();
+    }
+
+    public int currentLimit(String serviceName) {
+        ServiceLimit limit = limits.get(serviceName);
+        return limit != null ? limit.limit() : initialLimit;
+    }
+
+    private ServiceLimit createLimit(String serviceName) {
+        ServiceLimit limit = new ServiceLimit();
+        Gauge.builder("gateway.concurrency.limit", limit, ServiceLimit::limit)
+            .tag("service", serviceName)
+            .register(meterRegistry);
+        Gauge.builder("gateway.concurrency.in-flight", limit.inFlight, AtomicInteger::get)
+            .tag("service", serviceName)
+            .register(meterRegistry);
+        limit.rejected = Counter.builder("gateway.concurrency.rejected")
+            .tag("service", serviceName)
+            .register(meterRegistry);
+        return limit;
+    }
+
+    public interface Permit {
+        Permit NOOP = dropped -> {
+        };
+
+        /**
+         * @param dropped запрос завершился ошибкой или 5xx — признак перегрузки, лимит уменьшается
+         */
+        void release(boolean dropped);
+    }
+
+    private final class ServiceLimit {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final ReentrantLock updateLock = new ReentrantLock();
+        private volatile double estimatedLimit = initialLimit;
+        private double longRttNanos;
+        private Counter rejected;
+
+        int limit() {
+            return (int) estimatedLimit;
+        }
+
+        Permit tryAcquire() {
+            int current;
+            do {
+                current = inFlight.get();
+                if (current >= (int) estimatedLimit) {
+                    rejected.increment();
+                    return null;
+                }
+            } while (!inFlight.compareAndSet(current, current + 1));
+
+            long startNanos = System.nanoTime();
+            int inFlightAtStart = current + 1;
+            return dropped -> {
+                inFlight.decrementAndGet();
+                onSample(System.nanoTime() - startNanos, inFlightAtStart, dropped);
+            };
+        }
+
+        // Замеры с пересекающихся запросов: если обновление уже идёт, этот замер пропускаем
+        private void onSample(long rttNanos, int inFlightAtStart, boolean dropped) {
+            if (!updateLock.tryLock()) {
+                return;
+            }
+            try {
+                double limit = estimatedLimit;
+                if (dropped) {
+                    estimatedLimit = Math.max(minLimit, limit * 0.9);
+                    return;
+                }
+                long rtt = Math.max(1, rttNanos);
+                longRttNanos = longRttNanos == 0 ? rtt : ema(longRttNanos, rtt);
+                // Сервис не нагружен до лимита — задержка ничего не говорит о его запасе
+                if (inFlightAtStart < limit / 2) {
+                    return;
+                }
+
+                // Долгосрочная оценка не должна отставать от восстановившегося после перегрузки сервиса
+                if (longRttNanos / rtt > 2) {
+                    longRttNanos *= 0.95;
+                }
+
+                double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longRttNanos / rtt));
+                double queueSize = Math.sqrt(limit);
+                double newLimit = limit * gradient + queueSize;
+                newLimit = limit * (1 - smoothing) + newLimit * smoothing;
+                estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+            } finally {
+                updateLock.unlock();
+            }
+        }
+
+        private double ema(double average, long sample) {
+            double factor = 2.0 / (longWindow + 1);
+            return average * (1 - factor) + sample * factor;
+        }
+    }
+}
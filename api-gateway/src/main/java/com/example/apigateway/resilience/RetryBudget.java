@@ -0,0 +1,82 @@
+package com.example.apigateway.resilience;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Бюджет повторов на сервис: каждый запрос добавляет ratio токена, повтор или хедж тратит
+ * целый токен. Так дополнительная нагрузка не превышает ratio от основной, даже когда
+ * апстрим перегружен и падает каждый запрос. Чтобы редкие запросы тоже могли повторяться,
+ * бюджет пополняется не медленнее minPerSecond.
+ */
+class RetryBudget {
+
+    private static final long SCALE = 1000;
+
+    private final long depositPerRequest;
+    private final long minPerSecond;
+    private final long capacity;
+    private final ConcurrentHashMap<String, Balance> balances = new ConcurrentHashMap<>();
+
+    RetryBudget(double ratio, int minPerSecond) {
+        this.depositPerRequest = Math.round(ratio * SCALE);
+        this.minPerSecond = minPerSecond * SCALE;
+        this.capacity = Math.max(this.minPerSecond, 10 * SCALE);
+    }
+
+    void deposit(String serviceName) {
+        balance(serviceName).add(depositPerRequest, capacity);
+    }
+
+    boolean tryWithdraw(String serviceName) {
+        Balance balance = balance(serviceName);
+        balance.refill(minPerSecond, capacity);
+        return balance.tryTake(SCALE);
+    }
+
+    private Balance balance(String serviceName) {
+        Balance balance = balances.get(serviceName);
+        return balance != null ? balance : balances.computeIfAbsent(serviceName, k -> new Balance(capacity));
+    }
+
+    private static final class Balance {
+        private final AtomicLong tokens;
+        private final AtomicLong lastRefillNanos = new AtomicLong(System.nanoTime());
+
+        private Balance(long initial) {
+            this.tokens = new AtomicLong(initial);
+        }
+
+        void add(long amount, long capacity) {
+            long current;
+            do {
+                current = tokens.get();
+                if (current >= capacity) {
+                    return;
+                }
+            } while (!tokens.compareAndSet(current, Math.min(capacity, current + amount)));
+        }
+
+        void refill(long perSecond, long capacity) {
+            long now = System.nanoTime();
+            long last = lastRefillNanos.get();
+            long elapsed = now - last;
+            if (elapsed < TimeUnit.MILLISECONDS.toNanos(100) || !lastRefillNanos.compareAndSet(last, now)) {
+                return;
+            }
+            add(perSecond * elapsed / TimeUnit.SECONDS.toNanos(1), capacity);
+        }
+
+        boolean tryTake(long amount) {
+            long current;
+            do {
+                current = tokens.get();
+                if (current < amount) {
+                    return false;
+                }
+            } while (!tokens.compareAndSet(current, current - amount));
+            return true;
+        }
+    }
+}
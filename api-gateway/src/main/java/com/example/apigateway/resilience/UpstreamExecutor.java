@@ -0,0 +1,279 @@
+package com.example.apigateway.resilience;
+
+import com.example.apigateway.gateway.Route;
+import com.example.apigateway.loadbalancer.LoadBalancer;
+import com.example.apigateway.proxy.BufferedResponse;
+import com.example.apigateway.proxy.ProxyEngine;
+import com.example.apigateway.proxy.ResponseTooLargeException;
+import com.example.apigateway.proxy.UpstreamRequest;
+import com.example.apigateway.telemetry.GatewayTelemetry;
+import org.example.common.event.ServiceInstance;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Выполнение идемпотентных запросов к апстриму в пределах бюджета задержки маршрута.
+ * <p>
+ * Если попытка не ответила за p95 сервиса (по последнему окну телеметрии), тот же запрос
+ * уходит на другой инстанс из discovery и берётся первый успешный ответ. Ошибки соединения
+ * и 502/503/504 повторяются с jittered backoff на другом инстансе. Хеджи и повторы тратят
+ * общий {@link RetryBudget}, поэтому при перегрузке апстрима они не умножают нагрузку.
+ * <p>
+ * Ради повторов ответ читается в память, но не больше max-buffered-bytes: более длинный
+ * ответ завершает запрос {@link ResponseTooLargeException}, и вызывающий отдаёт его потоком.
+ * <p>
+ * Итог запроса учитывает вызывающий. Здесь в телеметрию попадают только отказы попыток,
+ * которые итогом не стали. Проигравшая гонку попытка, ответившая успешно, не учитывается совсем.
+ */
+@Component
+public class UpstreamExecutor implements DisposableBean {
+
+    private final ProxyEngine proxyEngine;
+    private final LoadBalancer loadBalancer;
+    private final GatewayTelemetry telemetry;
+    private final RetryBudget retryBudget;
+    private final ExecutorService attempts = Executors.newVirtualThreadPerTaskExecutor();
+    private final boolean hedgingEnabled;
+    private final long defaultHedgeDelayNanos;
+    private final long minHedgeDelayNanos;
+    private final int maxAttempts;
+    private final long backoffBaseNanos;
+    private final long backoffMaxNanos;
+    private final long defaultBudgetNanos;
+    private final int maxBufferedBytes;
+
+    public UpstreamExecutor(ProxyEngine proxyEngine,
+                            LoadBalancer loadBalancer,
+                            GatewayTelemetry telemetry,
+                            @Value("${gateway.hedging.enabled:true}") boolean hedgingEnabled,
+                            @Value("${gateway.hedging.default-delay-ms:50}") long defaultHedgeDelayMs,
+                            @Value("${gateway.hedging.min-delay-ms:5}") long minHedgeDelayMs,
+                            @Value("${gateway.retry.max-attempts:2}") int maxAttempts,
+                            @Value("${gateway.retry.backoff-base-ms:20}") long backoffBaseMs,
+                            @Value("${gateway.retry.backoff-max-ms:200}") long backoffMaxMs,
+                            @Value("${gateway.retry.budget-ratio:0.1}") double budgetRatio,
+                            @Value("${gateway.retry.budget-min-per-second:10}") int budgetMinPerSecond,
+                            @Value("${gateway.latency-budget-ms:5000}") long defaultBudgetMs,
+                            @Value("${gateway.proxy.max-buffered-bytes:1048576}") int maxBufferedBytes) {
+        this.proxyEngine = proxyEngine;
+        this.loadBalancer = loadBalancer;
+        this.telemetry = telemetry;
+        this.retryBudget = new RetryBudget(budgetRatio, budgetMinPerSecond);
+        this.hedgingEnabled = hedgingEnabled;
+        this.defaultHedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(defaultHedgeDelayMs);
+        this.minHedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(minHedgeDelayMs);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffBaseNanos = TimeUnit.MILLISECONDS.toNanos(backoffBaseMs);
+        this.backoffMaxNanos = TimeUnit.MILLISECONDS.toNanos(backoffMaxMs);
+        this.defaultBudgetNanos = TimeUnit.MILLISECONDS.toNanos(defaultBudgetMs);
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    // Без хеджей и повторов буферизация ничего не даёт, и запрос лучше проксировать потоком
+    public boolean replaysRequests() {
+        return hedgingEnabled || maxAttempts > 1;
+    }
+
+    public BufferedResponse execute(Route route, ServiceInstance primary, UpstreamRequest request) throws IOException {
+        String serviceName = route.serviceName();
+        long deadline = System.nanoTime() + budgetNanos(route);
+        retryBudget.deposit(serviceName);
+
+        Set<String> used = new HashSet<>();
+        ServiceInstance instance = primary;
+        BufferedResponse lastResponse = null;
+        IOException lastError = null;
+        for (int attempt = 1; ; attempt++) {
+            used.add(instance.getBaseUrl());
+            try {
+                BufferedResponse response = race(serviceName, instance, request, deadline, used);
+                if (!isRetryable(response.status())) {
+                    return response;
+                }
+                lastResponse = response;
+                lastError = null;
+            } catch (ResponseTooLargeException e) {
+                throw e;
+            } catch (IOException e) {
+                lastResponse = null;
+                lastError = e;
+            }
+
+            if (attempt >= maxAttempts) {
+                break;
+            }
+            long backoff = backoffNanos(attempt);
+            if (System.nanoTime() + backoff >= deadline || !retryBudget.tryWithdraw(serviceName)) {
+                break;
+            }
+            // Неудача перестаёт быть итогом запроса, поэтому учитывается как отказ попытки
+            telemetry.attemptFailed(serviceName);
+            telemetry.retried(serviceName);
+            sleep(backoff);
+            instance = loadBalancer.chooseExcluding(serviceName, used).orElse(instance);
+        }
+
+        if (lastResponse != null) {
+            return lastResponse;
+        }
+        throw lastError;
+    }
+
+    private BufferedResponse race(String serviceName, ServiceInstance primary, UpstreamRequest request,
+                                  long deadline, Set<String> used) throws IOException {
+        Race race = new Race(serviceName, request);
+        race.launch(primary);
+
+        long hedgeAt = System.nanoTime() + hedgeDelayNanos(serviceName);
+        if (hedgingEnabled && hedgeAt < deadline) {
+            if (race.awaitUntil(hedgeAt)) {
+                return race.result();
+            }
+            Optional<ServiceInstance> backup = loadBalancer.chooseExcluding(serviceName, used);
+            if (backup.isPresent() && !race.isDone() && retryBudget.tryWithdraw(serviceName)) {
+                used.add(backup.get().getBaseUrl());
+                telemetry.hedged(serviceName);
+                race.launch(backup.get());
+            }
+        }
+
+        if (!race.awaitUntil(deadline)) {
+            throw new IOException("Latency budget exceeded for " + serviceName);
+        }
+        return race.result();
+    }
+
+    private long budgetNanos(Route route) {
+        return route.latencyBudget().isZero() ? defaultBudgetNanos : route.latencyBudget().toNanos();
+    }
+
+    private long hedgeDelayNanos(String serviceName) {
+        double p95Ms = telemetry.latencyPercentileMs(serviceName, 0.95);
+        if (p95Ms <= 0) {
+            return defaultHedgeDelayNanos;
+        }
+        return Math.max(minHedgeDelayNanos, (long) (p95Ms * 1_000_000));
+    }
+
+    // Full jitter: случайная пауза от 0 до base * 2^(attempt-1), не больше max
+    private long backoffNanos(int attempt) {
+        long ceiling = Math.min(backoffMaxNanos, backoffBaseNanos << Math.min(attempt - 1, 20));
+        return ceiling > 0 ? ThreadLocalRandom.current().nextLong(ceiling + 1) : 0;
+    }
+
+    private static boolean isRetryable(int status) {
+        return status == 502 || status == 503 || status == 504;
+    }
+
+    private static void sleep(long nanos) throws IOException {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during retry backoff");
+        }
+    }
+
+    @Override
+    public void destroy() {
+        attempts.shutdownNow();
+    }
+
+    /**
+     * Параллельные попытки одного запроса. Результат — первый успешный ответ или, если все
+     * попытки неудачны, неудача последней из них.
+     */
+    private final class Race {
+        private final String serviceName;
+        private final UpstreamRequest request;
+        private final CompletableFuture<BufferedResponse> winner = new CompletableFuture<>();
+        private final AtomicInteger running = new AtomicInteger();
+
+        private Race(String serviceName, UpstreamRequest request) {
+            this.serviceName = serviceName;
+            this.request = request;
+        }
+
+        void launch(ServiceInstance instance) {
+            running.incrementAndGet();
+            attempts.execute(() -> run(instance));
+        }
+
+        boolean isDone() {
+            return winner.isDone();
+        }
+
+        boolean awaitUntil(long deadlineNanos) throws IOException {
+            try {
+                winner.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+                return true;
+            } catch (TimeoutException e) {
+                return false;
+            } catch (ExecutionException e) {
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for upstream");
+            }
+        }
+
+        BufferedResponse result() throws IOException {
+            try {
+                return winner.join();
+            } catch (Exception e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                throw cause instanceof IOException io ? io : new IOException(cause);
+            }
+        }
+
+        private void run(ServiceInstance instance) {
+            BufferedResponse response = null;
+            IOException error = null;
+            loadBalancer.requestStarted(instance);
+            try {
+                response = proxyEngine.exchange(instance.getBaseUrl(), request, maxBufferedBytes);
+            } catch (ResponseTooLargeException e) {
+                // Апстрим ответил, просто слишком длинно: хедж тут не поможет
+                running.decrementAndGet();
+                winner.completeExceptionally(e);
+                return;
+            } catch (IOException e) {
+                error = e;
+            } catch (RuntimeException e) {
+                error = new IOException(e);
+            } finally {
+                loadBalancer.requestFinished(instance);
+            }
+
+            boolean failed = error != null || isRetryable(response.status());
+            boolean last = running.decrementAndGet() == 0;
+            if (!failed) {
+                winner.complete(response);
+            } else if (last && !winner.isDone()) {
+                // Все попытки неудачны: эта неудача станет итогом гонки
+                if (error != null) {
+                    winner.completeExceptionally(error);
+                } else {
+                    winner.complete(response);
+                }
+            } else {
+                telemetry.attemptFailed(serviceName);
+            }
+        }
+    }
+}
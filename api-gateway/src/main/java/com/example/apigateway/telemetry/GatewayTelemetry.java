@@ -0,0 +1,191 @@
+package com.example.apigateway.telemetry;
+
+import com.example.apigateway.config.GatewayInstanceId;
+import jakarta.annotation.PostConstruct;
+import org.example.common.event.ApiGatewayEvent;
+import org.example.common.event.CircuitBreakerEvent;
+import org.example.common.event.GatewayMetricsEvent;
+import org.example.common.event.ServiceMetricsSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Телеметрия шлюза: счётчики и гистограммы задержек по сервисам копятся в памяти и раз
+ * в интервал уходят одной сводкой. Отдельные события по запросам отправляются только
+ * для ошибок и для доли запросов gateway.telemetry.sample-rate.
+ */
+@Component
+public class GatewayTelemetry implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(GatewayTelemetry.class);
+
+    private static final String METRICS_TOPIC = "api-gateway-metrics";
+    private static final String EVENTS_TOPIC = "api-gateway-events";
+    private static final String CIRCUIT_BREAKER_TOPIC = "circuit-breaker-events";
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final String gatewayId;
+    private final double sampleRate;
+    private final long flushIntervalMs;
+    private final ConcurrentHashMap<String, AtomicReference<ServiceWindow>> windows = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ServiceWindow> completedWindows = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "gateway-telemetry-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile long windowStart = System.currentTimeMillis();
+
+    public GatewayTelemetry(KafkaTemplate<String, Object> kafkaTemplate,
+                            GatewayInstanceId gatewayInstanceId,
+                            @Value("${gateway.telemetry.sample-rate:0.01}") double sampleRate,
+                            @Value("${gateway.telemetry.flush-interval-ms:1000}") long flushIntervalMs) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.gatewayId = gatewayInstanceId.get();
+        this.sampleRate = sampleRate;
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    @PostConstruct
+    public void init() {
+        flushScheduler.scheduleAtFixedRate(() -> {
+            try {
+                flush();
+            } catch (Exception e) {
+                logger.error("Failed to flush gateway telemetry", e);
+            }
+        }, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void requestSucceeded(String serviceName, String path, String method, long latencyNanos) {
+        window(serviceName).recordSuccess(latencyNanos);
+        if (sampled()) {
+            sendApiGatewayEvent(serviceName, "REQUEST_SUCCESS", path, method);
+        }
+    }
+
+    public void requestFailed(String serviceName, String path, String method, long latencyNanos) {
+        window(serviceName).recordFailure(latencyNanos);
+        sendApiGatewayEvent(serviceName, "REQUEST_FAILED", path, method);
+    }
+
+    public void rateLimited(String serviceName, String path, String method) {
+        window(serviceName).recordRateLimited();
+        if (sampled()) {
+            sendApiGatewayEvent(serviceName, "RATE_LIMIT_EXCEEDED", path, method);
+        }
+    }
+
+    public void circuitBlocked(String serviceName, String path, String method) {
+        window(serviceName).recordCircuitBlocked();
+        if (sampled()) {
+            sendApiGatewayEvent(serviceName, "REQUEST_BLOCKED", path, method);
+        }
+    }
+
+    public void concurrencyLimited(String serviceName, String path, String method) {
+        window(serviceName).recordConcurrencyLimited();
+        if (sampled()) {
+            sendApiGatewayEvent(serviceName, "CONCURRENCY_LIMITED", path, method);
+        }
+    }
+
+    public void attemptFailed(String serviceName) {
+        window(serviceName).recordAttemptFailure();
+    }
+
+    public void retried(String serviceName) {
+        window(serviceName).recordRetry();
+    }
+
+    public void hedged(String serviceName) {
+        window(serviceName).recordHedge();
+    }
+
+    // Перцентиль задержки за последнее завершённое окно, 0 если данных нет
+    public double latencyPercentileMs(String serviceName, double percentile) {
+        ServiceWindow completed = completedWindows.get(serviceName);
+        return completed != null ? completed.latencyPercentileMs(percentile) : 0;
+    }
+
+    void flush() {
+        long windowEnd = System.currentTimeMillis();
+        long start = windowStart;
+        windowStart = windowEnd;
+
+        List<ServiceMetricsSummary> summaries = new ArrayList<>();
+        windows.forEach((serviceName, current) -> {
+            ServiceWindow completed = current.getAndSet(new ServiceWindow(serviceName));
+            if (completed.isEmpty()) {
+                return;
+            }
+            completedWindows.put(serviceName, completed);
+            summaries.add(completed.toSummary());
+            sendCircuitBreakerOutcomes(serviceName, completed);
+        });
+
+        if (!summaries.isEmpty()) {
+            kafkaTemplate.send(METRICS_TOPIC, gatewayId, new GatewayMetricsEvent(gatewayId, start, windowEnd, summaries));
+        }
+    }
+
+    private void sendCircuitBreakerOutcomes(String serviceName, ServiceWindow window) {
+        int successes = window.successCount();
+        int failures = window.failureCount();
+        if (successes == 0 && failures == 0) {
+            return;
+        }
+
+        CircuitBreakerEvent event = new CircuitBreakerEvent();
+        event.setBreakerName(serviceName);
+        event.setServiceName(serviceName);
+        event.setEventType("OUTCOMES_RECORDED");
+        event.setSuccessCount(successes);
+        event.setFailureCount(failures);
+        event.setTimestamp(LocalDateTime.now());
+        kafkaTemplate.send(CIRCUIT_BREAKER_TOPIC, serviceName, event);
+    }
+
+    private void sendApiGatewayEvent(String serviceName, String eventType, String path, String method) {
+        try {
+            kafkaTemplate.send(EVENTS_TOPIC, serviceName, new ApiGatewayEvent(serviceName, eventType, path, method));
+        } catch (Exception e) {
+            logger.warn("Failed to send API Gateway event: {}", e.getMessage());
+        }
+    }
+
+    private ServiceWindow window(String serviceName) {
+        AtomicReference<ServiceWindow> current = windows.get(serviceName);
+        if (current == null) {
+            current = windows.computeIfAbsent(serviceName, k -> new AtomicReference<>(new ServiceWindow(k)));
+        }
+        return current.get();
+    }
+
+    private boolean sampled() {
+        return sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    @Override
+    public void destroy() {
+        flushScheduler.shutdown();
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.warn("Final telemetry flush failed", e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.apigateway.telemetry;
+
+import org.example.common.event.ServiceMetricsSummary;
+
+import java.util.concurrent.atomic.LongAdder;
+
+class ServiceWindow {
+
+    private final String serviceName;
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder circuitBlocked = new LongAdder();
+    private final LongAdder concurrencyLimited = new LongAdder();
+    // Неудачные попытки, после которых был повтор или победил хедж
+    private final LongAdder attemptFailures = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    ServiceWindow(String serviceName) {
+        this.serviceName = serviceName;
+    }
+
+    void recordSuccess(long latencyNanos) {
+        successes.increment();
+        latency.record(latencyNanos);
+    }
+
+    void recordFailure(long latencyNanos) {
+        failures.increment();
+        latency.record(latencyNanos);
+    }
+
+    void recordRateLimited() {
+        rateLimited.increment();
+    }
+
+    void recordCircuitBlocked() {
+        circuitBlocked.increment();
+    }
+
+    void recordConcurrencyLimited() {
+        concurrencyLimited.increment();
+    }
+
+    void recordAttemptFailure() {
+        attemptFailures.increment();
+    }
+
+    void recordRetry() {
+        retries.increment();
+    }
+
+    void recordHedge() {
+        hedges.increment();
+    }
+
+    int successCount() {
+        return successes.intValue();
+    }
+
+    // Для circuit breaker важны все наблюдённые отказы апстрима, а не только итог запроса
+    int failureCount() {
+        return failures.intValue() + attemptFailures.intValue();
+    }
+
+    boolean isEmpty() {
+        return successes.sum() == 0 && failures.sum() == 0
+            && rateLimited.sum() == 0 && circuitBlocked.sum() == 0
+            && concurrencyLimited.sum() == 0 && attemptFailures.sum() == 0;
+    }
+
+    double latencyPercentileMs(double percentile) {
+        return latency.percentileMs(percentile);
+    }
+
+    ServiceMetricsSummary toSummary() {
+        ServiceMetricsSummary summary = new ServiceMetricsSummary();
+        summary.setServiceName(serviceName);
+        summary.setSuccesses(successes.sum());
+        summary.setFailures(failures.sum());
+        summary.setRequests(summary.getSuccesses() + summary.getFailures());
+        summary.setRateLimited(rateLimited.sum());
+        summary.setCircuitBlocked(circuitBlocked.sum());
+        summary.setConcurrencyLimited(concurrencyLimited.sum());
+        summary.setRetries(retries.sum());
+        summary.setHedges(hedges.sum());
+        summary.setAttemptFailures(attemptFailures.sum());
+        summary.setLatencyP50Ms(latency.percentileMs(0.50));
+        summary.setLatencyP95Ms(latency.percentileMs(0.95));
+        summary.setLatencyP99Ms(latency.percentileMs(0.99));
+        summary.setLatencyMaxMs(latency.maxMs());
+        return summary;
+    }
+}
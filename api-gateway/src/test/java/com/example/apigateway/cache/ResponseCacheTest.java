@@ -0,0 +1,84 @@
+package com.example.apigateway.cache;
+
+import com.example.apigateway.gateway.Route;
+import com.example.apigateway.proxy.BufferedResponse;
+import com.example.apigateway.proxy.ProxyEngine;
+import com.example.apigateway.proxy.UpstreamFetcher;
+import com.example.apigateway.proxy.UpstreamRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheTest {
+
+    private static final String PATH = "/api/users/1";
+    private static final byte[] BODY = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+
+    private final Route route = new Route("/api/users/**", "user-service").withCacheTtl(Duration.ofMinutes(1));
+    private final ResponseCache cache = new ResponseCache(new ProxyEngine(null), new SimpleMeterRegistry(),
+        true, 1 << 20, 1 << 16, 60000);
+    private final List<HttpMethod> upstreamMethods = new CopyOnWriteArrayList<>();
+    private final UpstreamFetcher upstream = request -> {
+        upstreamMethods.add(request.method());
+        return new BufferedResponse(200, HttpHeaders.EMPTY, BODY);
+    };
+
+    @Test
+    void headMissIsFetchedAsGetAndServedWithoutBody() throws Exception {
+        MockHttpServletResponse head = fetch("HEAD");
+
+        assertEquals(List.of(HttpMethod.GET), upstreamMethods);
+        assertEquals(200, head.getStatus());
+        assertEquals(BODY.length, head.getContentLength());
+        assertEquals(0, head.getContentAsByteArray().length);
+    }
+
+    @Test
+    void getAfterHeadMissIsServedWithFullBody() throws Exception {
+        fetch("HEAD");
+
+        MockHttpServletResponse get = serveFresh("GET");
+
+        assertEquals("HIT", get.getHeader("X-Cache"));
+        assertArrayEquals(BODY, get.getContentAsByteArray());
+        assertEquals(BODY.length, get.getContentLength());
+        assertEquals(1, upstreamMethods.size());
+    }
+
+    @Test
+    void headAfterGetMissIsServedFromTheSameEntry() throws Exception {
+        fetch("GET");
+
+        MockHttpServletResponse head = serveFresh("HEAD");
+
+        assertEquals("HIT", head.getHeader("X-Cache"));
+        assertEquals(BODY.length, head.getContentLength());
+        assertEquals(0, head.getContentAsByteArray().length);
+        assertEquals(1, upstreamMethods.size());
+    }
+
+    private MockHttpServletResponse fetch(String method) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, PATH);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        UpstreamRequest snapshot = new UpstreamRequest(HttpMethod.valueOf(method), PATH, null, HttpHeaders.EMPTY);
+        cache.fetch(request, response, route, snapshot, upstream);
+        return response;
+    }
+
+    private MockHttpServletResponse serveFresh(String method) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, PATH);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertTrue(cache.serveFresh(request, response, route, PATH));
+        return response;
+    }
+}
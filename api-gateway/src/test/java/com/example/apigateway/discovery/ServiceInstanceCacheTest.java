@@ -0,0 +1,205 @@
+package com.example.apigateway.discovery;
+
+import org.example.common.event.ServiceInstance;
+import org.example.common.event.ServiceRegistrationEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServiceInstanceCacheTest {
+
+    private static final String SERVICE = "user-service";
+    private static final String OTHER_SERVICE = "notification-service";
+    private static final int CALLERS = 1000;
+    private static final long LOOKUP_DELAY_MS = 300;
+
+    private final CountingDiscovery discovery = new CountingDiscovery();
+    private ServiceInstanceCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ServiceInstanceCache(discovery, "http://discovery", 60000, 30000, 10000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.destroy();
+    }
+
+    @Test
+    void coldStartCallersShareOneLookup() throws Exception {
+        List<List<ServiceInstance>> results = callConcurrently();
+
+        assertEquals(1, discovery.lookups.get());
+        for (List<ServiceInstance> instances : results) {
+            assertEquals(1, instances.size());
+            assertEquals("fresh-1", instances.get(0).getInstanceId());
+        }
+    }
+
+    @Test
+    void expiredInstancesAreServedStaleWhileOneRefreshRuns() throws Exception {
+        registerWithHeartbeatAge(46000);
+
+        List<List<ServiceInstance>> results = callConcurrently();
+
+        // Никто не ждал discovery: все получили прежний инстанс
+        for (List<ServiceInstance> instances : results) {
+            assertEquals("registered-1", instances.get(0).getInstanceId());
+        }
+        awaitRefresh();
+        assertEquals(1, discovery.lookups.get());
+        assertEquals("fresh-1", cache.getInstances(SERVICE).get(0).getInstanceId());
+        assertEquals(1, discovery.lookups.get());
+    }
+
+    @Test
+    void instancesCloseToExpiryAreRefreshedAhead() throws Exception {
+        registerWithHeartbeatAge(40000);
+
+        List<List<ServiceInstance>> results = callConcurrently();
+
+        for (List<ServiceInstance> instances : results) {
+            assertEquals("registered-1", instances.get(0).getInstanceId());
+        }
+        awaitRefresh();
+        assertEquals(1, discovery.lookups.get());
+        assertEquals("fresh-1", cache.getInstances(SERVICE).get(0).getInstanceId());
+    }
+
+    @Test
+    void refreshAheadQueuedDuringReconcileDoesNotStallIt() throws Exception {
+        cache.destroy();
+        ReconcileBlockingDiscovery blocking = new ReconcileBlockingDiscovery();
+        cache = new ServiceInstanceCache(blocking, "http://discovery", 100, 30000, 10000);
+        registerWithHeartbeatAge(SERVICE, 40000);
+        registerWithHeartbeatAge(OTHER_SERVICE, 40000);
+
+        // reconcile занял поток планировщика сверкой первого сервиса
+        assertTrue(blocking.reconcileStarted.await(5, TimeUnit.SECONDS));
+        String pending = SERVICE.equals(blocking.firstReconciled) ? OTHER_SERVICE : SERVICE;
+        // ...а тем временем запрос ко второму сервису ставит обновление заранее
+        assertEquals("registered-" + pending, cache.getInstances(pending).get(0).getInstanceId());
+        blocking.releaseReconcile.countDown();
+
+        // Обновление выполнилось, и reconcile продолжает сверяться по расписанию
+        blocking.awaitLookups(pending, 1);
+        int reconciled = blocking.lookups(blocking.firstReconciled);
+        blocking.awaitLookups(blocking.firstReconciled, reconciled + 1);
+        assertEquals("fresh-" + pending, cache.getInstances(pending).get(0).getInstanceId());
+    }
+
+    private void registerWithHeartbeatAge(long ageMs) {
+        cache.onRegistration(new ServiceRegistrationEvent("registered-1", SERVICE, "localhost", 8080));
+        // Имитируем давно не приходивший heartbeat
+        cache.getInstances(SERVICE).get(0).setLastHeartbeat(System.currentTimeMillis() - ageMs);
+    }
+
+    private void registerWithHeartbeatAge(String serviceName, long ageMs) {
+        cache.onRegistration(new ServiceRegistrationEvent("registered-" + serviceName, serviceName, "localhost", 8080));
+        cache.getInstances(serviceName).get(0).setLastHeartbeat(System.currentTimeMillis() - ageMs);
+    }
+
+    private List<List<ServiceInstance>> callConcurrently() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<ServiceInstance>>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CALLERS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return cache.getInstances(SERVICE);
+                }));
+            }
+            start.countDown();
+            List<List<ServiceInstance>> results = new ArrayList<>();
+            for (Future<List<ServiceInstance>> future : futures) {
+                results.add(future.get(10, TimeUnit.SECONDS));
+            }
+            return results;
+        }
+    }
+
+    private void awaitRefresh() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (discovery.completed.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // Таблица обновляется сразу после ответа discovery
+        Thread.sleep(50);
+    }
+
+    private static class CountingDiscovery extends RestTemplate {
+        final AtomicInteger lookups = new AtomicInteger();
+        final AtomicInteger completed = new AtomicInteger();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> ResponseEntity<T> getForEntity(String url, Class<T> responseType, Object... uriVariables) {
+            lookups.incrementAndGet();
+            try {
+                Thread.sleep(LOOKUP_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ServiceInstance instance = new ServiceInstance("fresh-1", SERVICE, "localhost", 8081);
+            instance.updateHeartbeat();
+            completed.incrementAndGet();
+            return (ResponseEntity<T>) ResponseEntity.ok(new ServiceInstance[]{instance});
+        }
+    }
+
+    // Первая сверка reconcile держит поток планировщика, пока тест не отпустит её
+    private static class ReconcileBlockingDiscovery extends RestTemplate {
+        final CountDownLatch reconcileStarted = new CountDownLatch(1);
+        final CountDownLatch releaseReconcile = new CountDownLatch(1);
+        final Map<String, AtomicInteger> completed = new ConcurrentHashMap<>();
+        volatile String firstReconciled;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> ResponseEntity<T> getForEntity(String url, Class<T> responseType, Object... uriVariables) {
+            String serviceName = url.substring(url.lastIndexOf('/') + 1);
+            if ("service-instance-refresh".equals(Thread.currentThread().getName()) && firstReconciled == null) {
+                firstReconciled = serviceName;
+                reconcileStarted.countDown();
+                try {
+                    releaseReconcile.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            ServiceInstance instance = new ServiceInstance("fresh-" + serviceName, serviceName, "localhost", 8081);
+            instance.updateHeartbeat();
+            completed.computeIfAbsent(serviceName, k -> new AtomicInteger()).incrementAndGet();
+            return (ResponseEntity<T>) ResponseEntity.ok(new ServiceInstance[]{instance});
+        }
+
+        int lookups(String serviceName) {
+            AtomicInteger count = completed.get(serviceName);
+            return count != null ? count.get() : 0;
+        }
+
+        void awaitLookups(String serviceName, int expected) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (lookups(serviceName) < expected && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(lookups(serviceName) >= expected, "no discovery lookup of " + serviceName);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.apigateway.gateway;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {
+        "spring.threads.virtual.enabled=true",
+        "server.tomcat.threads.max=" + ApiGatewayConcurrencyTest.PLATFORM_THREADS,
+        "spring.kafka.listener.auto-startup=false",
+        "spring.kafka.admin.auto-create=false",
+        "gateway.cache.enabled=false",
+        "gateway.concurrency.enabled=false",
+        "gateway.http-client.max-connections-per-route=1000",
+        "gateway.http-client.connection-request-timeout=10s",
+        "rate-limiter.limit=100000"
+    })
+class ApiGatewayConcurrencyTest {
+
+    static final int PLATFORM_THREADS = 20;
+    private static final int CONCURRENT_REQUESTS = 200;
+    // Апстрим держит запросы, пока одновременно их не станет больше, чем потоков Tomcat
+    private static final long UPSTREAM_WAIT_MS = 10_000;
+
+    private static final AtomicInteger inFlight = new AtomicInteger();
+    private static final AtomicInteger maxInFlight = new AtomicInteger();
+    private static volatile CountDownLatch moreThanPlatformThreads;
+    private static final HttpServer upstream = startUpstream();
+
+    @LocalServerPort
+    private int port;
+
+    @MockBean
+    @SuppressWarnings("rawtypes")
+    private KafkaTemplate kafkaTemplate;
+
+    @DynamicPropertySource
+    static void upstreamProperties(DynamicPropertyRegistry registry) {
+        String upstreamUrl = "http://localhost:" + upstream.getAddress().getPort();
+        registry.add("service-discovery.url", () -> upstreamUrl);
+        registry.add("rate-limiter.service-url", () -> upstreamUrl);
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstream.stop(0);
+    }
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(kafkaTemplate.send(anyString(), any(), any())).thenReturn(new CompletableFuture<>());
+        inFlight.set(0);
+        maxInFlight.set(0);
+        moreThanPlatformThreads = new CountDownLatch(PLATFORM_THREADS + 1);
+    }
+
+    @Test
+    void slowUpstream_ShouldNotBeLimitedByPlatformThreadPool() throws Exception {
+        // Given
+        HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/users/slow"))
+            .header("X-Client-ID", "load-test")
+            .timeout(Duration.ofSeconds(30))
+            .build();
+
+        // When
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+        CompletableFuture.allOf(responses.toArray(new CompletableFuture[0])).join();
+
+        // Then
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertEquals(200, response.join().statusCode());
+            assertEquals("slow-ok", response.join().body());
+        }
+        // На пуле из 20 потоков до апстрима дошло бы не больше 20 запросов сразу, и ни один не получил бы ответ
+        assertTrue(maxInFlight.get() > PLATFORM_THREADS,
+            "Upstream concurrency " + maxInFlight.get() + " did not exceed the thread pool size");
+    }
+
+    private static HttpServer startUpstream() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 1000);
+            server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            server.createContext("/api/discovery/services/", exchange -> respond(exchange, 200,
+                "[{\"instanceId\":\"user-service-1\",\"serviceName\":\"user-service\",\"host\":\"localhost\","
+                    + "\"port\":" + server.getAddress().getPort() + ",\"lastHeartbeat\":" + System.currentTimeMillis() + "}]",
+                "application/json"));
+            server.createContext("/api/users/slow", exchange -> {
+                int current = inFlight.incrementAndGet();
+                maxInFlight.accumulateAndGet(current, Math::max);
+                CountDownLatch latch = moreThanPlatformThreads;
+                latch.countDown();
+                boolean released = false;
+                try {
+                    released = latch.await(UPSTREAM_WAIT_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+                respond(exchange, released ? 200 : 504, released ? "slow-ok" : "not-concurrent", "text/plain");
+            });
+            server.createContext("/", exchange -> respond(exchange, 404, "", "text/plain"));
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to start upstream stub", e);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body, String contentType) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.getRequestBody().readAllBytes();
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.apigateway.gateway;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteIndexTest {
+
+    private static String service(RouteIndex index, String path) {
+        RouteMatch match = index.match(path);
+        return match != null ? match.route().serviceName() : null;
+    }
+
+    // Проверка предикатов как в RouteTable, но по одному методу без запроса
+    private static Predicate<Route> method(String method) {
+        return route -> route.predicate().methods().isEmpty() || route.predicate().methods().contains(method);
+    }
+
+    private static RoutePredicate methods(String... methods) {
+        return new RoutePredicate(Set.of(methods), Map.of());
+    }
+
+    @Test
+    void literalSegmentWinsOverWildcardRegardlessOfOrder() {
+        RouteIndex index = RouteIndex.build(List.of(
+            new Route("/api/*/profile", "any-profile"),
+            new Route("/api/users/profile", "user-profile")));
+
+        assertEquals("user-profile", service(index, "/api/users/profile"));
+        assertEquals("any-profile", service(index, "/api/orders/profile"));
+        assertNull(service(index, "/api/users/profile/photo"));
+    }
+
+    @Test
+    void backtracksToWildcardWhenLiteralBranchHasNoRoute() {
+        RouteIndex index = RouteIndex.build(List.of(
+            new Route("/api/users/settings", "settings"),
+            new Route("/api/*/orders", "orders")));
+
+        assertEquals("orders", service(index, "/api/users/orders"));
+        assertEquals("settings", service(index, "/api/users/settings"));
+    }
+
+    @Test
+    void longestTailPrefixWins() {
+        RouteIndex index = RouteIndex.build(List.of(
+            new Route("/api/.*", "api"),
+            new Route("/api/users/**", "user-service")));
+
+        assertEquals("user-service", service(index, "/api/users/1/orders"));
+        assertEquals("api", service(index, "/api/orders/1"));
+        assertEquals("api", service(index, "/api/usersx"));
+        assertNull(service(index, "/health"));
+    }
+
+    @Test
+    void tailWildcardMatchesBarePrefixAndTrailingSlash() {
+        RouteIndex index = RouteIndex.build(List.of(new Route("/api/users/.*", "user-service")));
+
+        assertEquals("user-service", service(index, "/api/users"));
+        assertEquals("user-service", service(index, "/api/users/"));
+        assertEquals("user-service", service(index, "/api/users/1"));
+        assertNull(service(index, "/api/user"));
+    }
+
+    @Test
+    void exactRouteDoesNotMatchNestedPaths() {
+        RouteIndex index = RouteIndex.build(List.of(new Route("/api/health", "health")));
+
+        assertEquals("health", service(index, "/api/health"));
+        assertEquals("health", service(index, "/api/health/"));
+        assertNull(service(index, "/api/health/details"));
+    }
+
+    @Test
+    void regexRoutesAreCheckedOnlyAfterTrie() {
+        RouteIndex index = RouteIndex.build(List.of(
+            new Route("/api/v[0-9]+/items", "versioned"),
+            new Route("/api/v2/**", "v2")));
+
+        // Регулярка объявлена первой, но дерево нашло маршрут раньше
+        assertEquals("v2", service(index, "/api/v2/items"));
+        assertEquals("versioned", service(index, "/api/v1/items"));
+        assertNull(service(index, "/api/vx/items"));
+    }
+
+    @Test
+    void firstAcceptedRouteWithSamePathWins() {
+        RouteIndex index = RouteIndex.build(List.of(
+            new Route("/api/users/.*", "user-writer").withPredicate(methods("POST", "PUT")),
+            new Route("/api/users/.*", "user-reader")));
+
+        assertEquals("user-writer", index.match("/api/users/1", method("POST")).route().serviceName());
+        assertEquals("user-reader", index.match("/api/users/1", method("GET")).route().serviceName());
+    }
+
+    @Test
+    void rejectedPredicateFallsThroughToLessSpecificRoute() {
+        RouteIndex index = RouteIndex.build(List.of(
+            new Route("/api/users/1", "exact-delete").withPredicate(methods("DELETE")),
+            new Route("/api/users/*", "any-user").withPredicate(methods("DELETE", "GET")),
+            new Route("/api/.*", "api"),
+            new Route("/admin/[a-z]+", "admin").withPredicate(methods("GET"))));
+
+        assertEquals("exact-delete", index.match("/api/users/1", method("DELETE")).route().serviceName());
+        assertEquals("any-user", index.match("/api/users/1", method("GET")).route().serviceName());
+        assertEquals("api", index.match("/api/users/1", method("POST")).route().serviceName());
+        assertNull(index.match("/admin/stats", method("POST")));
+    }
+
+    @Test
+    void stripPrefixCutsMatchedPrefix() {
+        RouteIndex index = RouteIndex.build(List.of(
+            new Route("/api/users/.*", "user-service", true),
+            new Route("/api/orders/*", "order-service", true)));
+
+        assertEquals("/1/orders", index.match("/api/users/1/orders").upstreamPath());
+        assertEquals("/", index.match("/api/users").upstreamPath());
+        assertEquals("/", index.match("/api/users/").upstreamPath());
+        // Маршрут без хвоста совпал целиком: от пути остаётся корень
+        assertEquals("/", index.match("/api/orders/1").upstreamPath());
+    }
+
+    @Test
+    void rewriteAppliesAfterStripPrefix() {
+        RouteIndex index = RouteIndex.build(List.of(
+            new Route("/api/users/.*", "user-service", true).withRewrite(RewriteRule.of("^/v1/", "/v2/")),
+            new Route("/legacy/[a-z]+/.*", "legacy", true).withRewrite(RewriteRule.of("^/legacy", "")),
+            new Route("/api/notifications/.*", "notification-service").withRewrite(RewriteRule.of("^/api", "")),
+            new Route("/api/status", "status").withRewrite(RewriteRule.of("^/api/status$", ""))));
+
+        assertEquals("/v2/list", index.match("/api/users/v1/list").upstreamPath());
+        // У регулярки нет префикса в дереве: переписывается весь путь
+        assertEquals("/users/1", index.match("/legacy/users/1").upstreamPath());
+        assertEquals("/notifications/1", index.match("/api/notifications/1").upstreamPath());
+        // Пустой результат переписывания превращается в корень
+        assertEquals("/", index.match("/api/status").upstreamPath());
+    }
+
+    @Test
+    void manyLiteralChildrenSurviveResize() {
+        List<Route> routes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            routes.add(new Route("/api/service-" + i + "/.*", "service-" + i));
+        }
+        RouteIndex index = RouteIndex.build(routes);
+
+        assertEquals(100, index.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("service-" + i, service(index, "/api/service-" + i + "/items"));
+        }
+        assertNull(service(index, "/api/service-100/items"));
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.apigateway.gateway;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteTableTest {
+
+    private static final String ROUTES = """
+        routes:
+          - path: /api/orders/.*
+            service: order-writer
+            strip-prefix: true
+            methods: [post, put]
+            headers:
+              X-Tenant: acme
+          - path: /api/orders/.*
+            service: order-service
+            strip-prefix: true
+            cache-ttl: 10s
+            rewrite:
+              pattern: ^/v1/
+              replacement: /v2/
+        """;
+
+    @TempDir
+    Path directory;
+
+    private RouteTable table;
+
+    private RouteTable table(Path file) {
+        // Без таймера: перечитываем только явным reload()
+        table = new RouteTable(new DefaultResourceLoader(), "file:" + file, 0);
+        table.init();
+        return table;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (table != null) {
+            table.destroy();
+        }
+    }
+
+    private RouteMatch match(String method, String path, String tenant) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        if (tenant != null) {
+            request.addHeader("X-Tenant", tenant);
+        }
+        return table.match(path, request);
+    }
+
+    @Test
+    void builtInRoutesAreUsedWithoutLocation() {
+        table = new RouteTable(new DefaultResourceLoader(), "", 0);
+        table.init();
+
+        assertEquals(0, table.snapshot().version());
+        assertEquals("user-service", match("GET", "/api/users/1", null).route().serviceName());
+        assertTrue(match("GET", "/api/users/1", null).route().cacheable());
+    }
+
+    @Test
+    void loadsRoutesWithPredicatesStripPrefixAndRewrite() throws IOException {
+        Path file = Files.writeString(directory.resolve("routes.yml"), ROUTES);
+        table(file);
+
+        assertEquals(1, table.snapshot().version());
+        assertEquals(2, table.routes().size());
+        // Методы из файла приводятся к верхнему регистру
+        RouteMatch write = match("POST", "/api/orders/1", "acme");
+        assertEquals("order-writer", write.route().serviceName());
+        assertEquals("/1", write.upstreamPath());
+        // Без нужного заголовка запрос проваливается к следующему маршруту
+        assertEquals("order-service", match("POST", "/api/orders/1", "other").route().serviceName());
+        RouteMatch read = match("POST", "/api/orders/v1/list", null);
+        assertEquals("order-service", read.route().serviceName());
+        assertEquals("/v2/list", read.upstreamPath());
+        assertEquals(Duration.ofSeconds(10), read.route().cacheTtl());
+        assertNull(match("GET", "/api/users/1", null));
+    }
+
+    @Test
+    void unchangedFileIsNotRepublished() throws IOException {
+        Path file = Files.writeString(directory.resolve("routes.yml"), ROUTES);
+        table(file);
+        RouteTable.Snapshot loaded = table.snapshot();
+
+        assertFalse(table.reload());
+        assertSame(loaded, table.snapshot());
+
+        Files.writeString(file, ROUTES + """
+              - path: /api/users/.*
+                service: user-service
+            """);
+        assertTrue(table.reload());
+        assertEquals(2, table.snapshot().version());
+        assertEquals("user-service", match("GET", "/api/users/1", null).route().serviceName());
+    }
+
+    @Test
+    void invalidFileKeepsLastGoodTable() throws IOException {
+        Path file = Files.writeString(directory.resolve("routes.yml"), ROUTES);
+        table(file);
+        RouteTable.Snapshot loaded = table.snapshot();
+
+        for (String broken : List.of(
+            "routes:\n  - path: /api/users/.*\n",
+            "routes:\n  - path: /api/users/.*\n    service: user-service\n    rate-limit:\n      limit: 0\n",
+            "routes: []\n",
+            "routes:\n  - path: [unclosed\n")) {
+            Files.writeString(file, broken);
+            assertFalse(table.reload(), broken);
+            assertSame(loaded, table.snapshot());
+        }
+        assertEquals("order-service", match("GET", "/api/orders/1", null).route().serviceName());
+
+        Files.delete(file);
+        assertFalse(table.reload());
+        assertSame(loaded, table.snapshot());
+    }
+
+    @Test
+    void missingFileAtStartupKeepsBuiltInRoutes() {
+        table(directory.resolve("missing.yml"));
+
+        assertEquals(0, table.snapshot().version());
+        assertEquals("notification-service", match("GET", "/api/notifications/1", null).route().serviceName());
+    }
+
+    @Test
+    void replacePublishesNewVersionAtomically() {
+        table = new RouteTable(new DefaultResourceLoader(), "", 0);
+        RouteTable.Snapshot builtin = table.snapshot();
+
+        table.replace(List.of(new Route("/api/v2/.*", "gateway-v2", true)));
+
+        assertNotSame(builtin, table.snapshot());
+        assertEquals(1, table.snapshot().version());
+        assertNull(table.snapshot().source());
+        assertEquals("/users", match("GET", "/api/v2/users", null).upstreamPath());
+        assertNull(match("GET", "/api/users/1", null));
+    }
+}
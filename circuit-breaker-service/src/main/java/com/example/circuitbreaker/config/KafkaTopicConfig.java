@@ -0,0 +1,20 @@
+package com.example.circuitbreaker.config;
+
+import com.example.circuitbreaker.kafka.CircuitBreakerStatePublisher;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+
+@Configuration
+public class KafkaTopicConfig {
+
+    @Bean
+    public NewTopic circuitBreakerStateTopic() {
+        return TopicBuilder.name(CircuitBreakerStatePublisher.STATE_TOPIC)
+            .partitions(3)
+            .replicas(1)
+            .compact()
+            .build();
+    }
+}
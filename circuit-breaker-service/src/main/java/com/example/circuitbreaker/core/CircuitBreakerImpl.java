@@ -9,6 +9,8 @@ import java.util.concurrent.locks.ReentrantLock;
 
 public class CircuitBreakerImpl {
     private static final Logger logger = LoggerFactory.getLogger(CircuitBreakerImpl.class);
+    // Окно итогов шлюза, в котором ошибок не меньше этой доли, считается неудачным
+    private static final double WINDOW_FAILURE_RATE = 0.5;
     private final String name;
     private final int failureThreshold;
     private final long timeoutMs;
@@ -17,11 +19,24 @@ public class CircuitBreakerImpl {
     private final AtomicLong lastFailureTime = new AtomicLong(0);
     private volatile State state = State.CLOSED;
     private final ReentrantLock lock = new ReentrantLock();
+    private final StateChangeListener stateChangeListener;
+    // Переход, который нужно опубликовать после снятия lock; пишется и читается под lock
+    private Transition pendingTransition;
+    private long transitions;
+    // Публикации идут вне lock, поэтому устаревший переход из другого потока отбрасывается
+    private final Object publishLock = new Object();
+    private long publishedTransition;
 
     public CircuitBreakerImpl(String name, int failureThreshold, long timeoutMs) {
+        this(name, failureThreshold, timeoutMs, null);
+    }
+
+    public CircuitBreakerImpl(String name, int failureThreshold, long timeoutMs,
+                              StateChangeListener stateChangeListener) {
         this.name = name;
         this.failureThreshold = failureThreshold;
         this.timeoutMs = timeoutMs;
+        this.stateChangeListener = stateChangeListener;
         logger.debug("CircuitBreaker initialized: name={}, failureThreshold={}, timeoutMs={}",
             name, failureThreshold, timeoutMs);
     }
@@ -31,13 +46,9 @@ public class CircuitBreakerImpl {
             if (System.currentTimeMillis() - lastFailureTime.get() > timeoutMs) {
                 lock.lock();
                 try {
-                    if (state == State.OPEN) {
-                        state = State.HALF_OPEN;
-                        successes.set(0);
-                        logger.info("Circuit breaker {} moved to HALF_OPEN state", name);
-                    }
+                    moveToHalfOpenIfTimeoutElapsed();
                 } finally {
-                    lock.unlock();
+                    unlockAndPublish();
                 }
                 return true;
             }
@@ -50,13 +61,14 @@ public class CircuitBreakerImpl {
     public void recordSuccess() {
         lock.lock();
         try {
+            moveToHalfOpenIfTimeoutElapsed();
             if (state == State.HALF_OPEN) {
                 successes.incrementAndGet();
                 logger.debug("Circuit breaker {} recorded success in HALF_OPEN state: {}/{}",
                     name, successes.get(), failureThreshold);
                 if (successes.get() >= failureThreshold) {
-                    state = State.CLOSED;
                     failures.set(0);
+                    transitionTo(State.CLOSED);
                     logger.info("Circuit breaker {} moved to CLOSED state after {} successful requests",
                         name, successes.get());
                 }
@@ -65,28 +77,120 @@ public class CircuitBreakerImpl {
                 logger.debug("Circuit breaker {} reset failure count on success", name);
             }
         } finally {
-            lock.unlock();
+            unlockAndPublish();
         }
     }
 
     public void recordFailure() {
         lock.lock();
         try {
+            moveToHalfOpenIfTimeoutElapsed();
             failures.incrementAndGet();
-            lastFailureTime.set(System.currentTimeMillis());
             logger.debug("Circuit breaker {} recorded failure: {}/{}",
                 name, failures.get(), failureThreshold);
 
             if (state == State.HALF_OPEN || failures.get() >= failureThreshold) {
-                state = State.OPEN;
-                logger.warn("Circuit breaker {} moved to OPEN state. Total failures: {}",
-                    name, failures.get());
+                open();
+            }
+        } finally {
+            unlockAndPublish();
+        }
+    }
+
+    // Итоги окна от шлюза. Порядок вызовов внутри окна неизвестен, поэтому решает доля ошибок:
+    // ошибки неудачных окон подряд копятся до failureThreshold, удачное окно сбрасывает счётчик
+    public void recordOutcomes(int successCount, int failureCount) {
+        lock.lock();
+        try {
+            moveToHalfOpenIfTimeoutElapsed();
+            if (state == State.HALF_OPEN) {
+                if (failureCount > 0) {
+                    failures.addAndGet(failureCount);
+                    open();
+                    return;
+                }
+                if (successes.addAndGet(successCount) >= failureThreshold) {
+                    failures.set(0);
+                    transitionTo(State.CLOSED);
+                    logger.info("Circuit breaker {} moved to CLOSED state after {} successful requests",
+                        name, successes.get());
+                }
+                return;
+            }
+
+            if (failureCount == 0 || failureCount < (successCount + failureCount) * WINDOW_FAILURE_RATE) {
+                failures.set(0);
+                return;
+            }
+
+            failures.addAndGet(failureCount);
+            logger.debug("Circuit breaker {} recorded {} failures: {}/{}",
+                name, failureCount, failures.get(), failureThreshold);
+            if (failures.get() >= failureThreshold) {
+                open();
             }
         } finally {
-            lock.unlock();
+            unlockAndPublish();
         }
     }
 
+    // Вызывается под lock: запросы теперь пропускает шлюз, поэтому OPEN -> HALF_OPEN
+    // должен происходить и по приходу результатов, а не только в allowRequest()
+    private void moveToHalfOpenIfTimeoutElapsed() {
+        if (state == State.OPEN && System.currentTimeMillis() - lastFailureTime.get() > timeoutMs) {
+            successes.set(0);
+            transitionTo(State.HALF_OPEN);
+            logger.info("Circuit breaker {} moved to HALF_OPEN state", name);
+        }
+    }
+
+    // Вызывается под lock. Время пробы отсчитывается от открытия: ошибки запросов, которые
+    // шлюз пропустил до того, как узнал об OPEN, его не сдвигают, и опубликованный retryAt
+    // остаётся верным без повторных публикаций
+    private void open() {
+        if (state != State.OPEN) {
+            lastFailureTime.set(System.currentTimeMillis());
+            logger.warn("Circuit breaker {} moved to OPEN state. Total failures: {}", name, failures.get());
+            transitionTo(State.OPEN);
+        }
+    }
+
+    // Вызывается под lock: переход только запоминается, публикует его unlockAndPublish()
+    private void transitionTo(State newState) {
+        if (state != newState) {
+            state = newState;
+            pendingTransition = new Transition(newState, lastFailureTime.get() + timeoutMs, failures.get(),
+                ++transitions);
+        }
+    }
+
+    // Отправка в Kafka может ждать метаданных брокера, поэтому вне lock: иначе на ней стоят
+    // все записи результатов этого breaker'а
+    private void unlockAndPublish() {
+        Transition transition = pendingTransition;
+        pendingTransition = null;
+        lock.unlock();
+        if (transition == null || stateChangeListener == null) {
+            return;
+        }
+        synchronized (publishLock) {
+            if (transition.sequence() <= publishedTransition) {
+                return;
+            }
+            publishedTransition = transition.sequence();
+            try {
+                stateChangeListener.onStateChange(name, transition.state(), transition.retryAt(),
+                    transition.failureCount());
+            } catch (Exception e) {
+                logger.error("Failed to publish state change of circuit breaker {}", name, e);
+            }
+        }
+    }
+
+    public long getRetryAt() {
+        return lastFailureTime.get() + timeoutMs;
+    }
+
     public boolean isOpen() {
         return state == State.OPEN;
     }
@@ -106,4 +210,7 @@ public class CircuitBreakerImpl {
     public enum State {
         CLOSED, OPEN, HALF_OPEN
     }
+
+    private record Transition(State state, long retryAt, int failureCount, long sequence) {
+    }
 }
@@ -6,15 +6,20 @@ import java.util.concurrent.ConcurrentHashMap;
 @Component
 public class CircuitBreakerRegistry {
     private final ConcurrentHashMap<String, CircuitBreakerImpl> breakers = new ConcurrentHashMap<>();
+    private final StateChangeListener stateChangeListener;
+
+    public CircuitBreakerRegistry(StateChangeListener stateChangeListener) {
+        this.stateChangeListener = stateChangeListener;
+    }
 
     public CircuitBreakerImpl getCircuitBreaker(String name) {
         return breakers.computeIfAbsent(name,
-            k -> new CircuitBreakerImpl(name, 5, 30000));
+            k -> new CircuitBreakerImpl(name, 5, 30000, stateChangeListener));
     }
 
     public CircuitBreakerImpl getCircuitBreaker(String name, int failureThreshold, long timeoutMs) {
         return breakers.computeIfAbsent(name,
-            k -> new CircuitBreakerImpl(name, failureThreshold, timeoutMs));
+            k -> new CircuitBreakerImpl(name, failureThreshold, timeoutMs, stateChangeListener));
     }
 
     public CircuitBreakerImpl.State getCircuitBreakerState(String name) {
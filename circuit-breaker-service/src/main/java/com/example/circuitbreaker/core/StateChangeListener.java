@@ -0,0 +1,6 @@
+package com.example.circuitbreaker.core;
+
+@FunctionalInterface
+public interface StateChangeListener {
+    void onStateChange(String breakerName, CircuitBreakerImpl.State state, long retryAt, int failureCount);
+}
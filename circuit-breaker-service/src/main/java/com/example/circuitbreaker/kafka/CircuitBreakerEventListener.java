@@ -26,6 +26,9 @@ public class CircuitBreakerEventListener {
             case "FAILURE_RECORDED":
                 breaker.recordFailure();
                 break;
+            case "OUTCOMES_RECORDED":
+                breaker.recordOutcomes(event.getSuccessCount(), event.getFailureCount());
+                break;
             default:
                 System.out.println("Unknown event type: " + event.getEventType());
         }
@@ -0,0 +1,35 @@
+package com.example.circuitbreaker.kafka;
+
+import com.example.circuitbreaker.core.CircuitBreakerImpl;
+import com.example.circuitbreaker.core.StateChangeListener;
+import org.example.common.event.CircuitBreakerStateEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+@Component
+public class CircuitBreakerStatePublisher implements StateChangeListener {
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreakerStatePublisher.class);
+
+    public static final String STATE_TOPIC = "circuit-breaker-state";
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+
+    public CircuitBreakerStatePublisher(KafkaTemplate<String, Object> kafkaTemplate) {
+        this.kafkaTemplate = kafkaTemplate;
+    }
+
+    @Override
+    public void onStateChange(String breakerName, CircuitBreakerImpl.State state, long retryAt, int failureCount) {
+        CircuitBreakerStateEvent event = new CircuitBreakerStateEvent(breakerName, state.name(), retryAt, failureCount);
+        // Ключ - имя breaker'а: в compacted-топике остаётся последнее состояние каждого
+        kafkaTemplate.send(STATE_TOPIC, breakerName, event)
+            .whenComplete((result, exception) -> {
+                if (exception != null) {
+                    logger.error("Failed to publish state {} of circuit breaker {}", state, breakerName, exception);
+                }
+            });
+        logger.info("Published circuit breaker state: {} -> {}", breakerName, state);
+    }
+}
@@ -8,6 +8,8 @@ public class CircuitBreakerEvent {
     private String serviceName;
     private String path;
     private String method;
+    private int successCount;
+    private int failureCount;
     private LocalDateTime timestamp;
 
     public CircuitBreakerEvent() {
@@ -60,6 +62,22 @@ public class CircuitBreakerEvent {
         this.method = method;
     }
 
+    public int getSuccessCount() {
+        return successCount;
+    }
+
+    public void setSuccessCount(int successCount) {
+        this.successCount = successCount;
+    }
+
+    public int getFailureCount() {
+        return failureCount;
+    }
+
+    public void setFailureCount(int failureCount) {
+        this.failureCount = failureCount;
+    }
+
     public LocalDateTime getTimestamp() {
         return timestamp;
     }
@@ -0,0 +1,74 @@
+package org.example.common.event;
+
+import java.time.LocalDateTime;
+
+public class CircuitBreakerStateEvent {
+    private String breakerName;
+    private String state;
+    private long retryAt;
+    private int failureCount;
+    private LocalDateTime timestamp;
+
+    public CircuitBreakerStateEvent() {
+        this.timestamp = LocalDateTime.now();
+    }
+
+    public CircuitBreakerStateEvent(String breakerName, String state, long retryAt, int failureCount) {
+        this();
+        this.breakerName = breakerName;
+        this.state = state;
+        this.retryAt = retryAt;
+        this.failureCount = failureCount;
+    }
+
+    public String getBreakerName() {
+        return breakerName;
+    }
+
+    public void setBreakerName(String breakerName) {
+        this.breakerName = breakerName;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public long getRetryAt() {
+        return retryAt;
+    }
+
+    public void setRetryAt(long retryAt) {
+        this.retryAt = retryAt;
+    }
+
+    public int getFailureCount() {
+        return failureCount;
+    }
+
+    public void setFailureCount(int failureCount) {
+        this.failureCount = failureCount;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreakerStateEvent{" +
+            "breakerName='" + breakerName + '\'' +
+            ", state='" + state + '\'' +
+            ", retryAt=" + retryAt +
+            ", failureCount=" + failureCount +
+            ", timestamp=" + timestamp +
+            '}';
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.common.event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class GatewayMetricsEvent {
+    private String gatewayId;
+    private long windowStart;
+    private long windowEnd;
+    private List<ServiceMetricsSummary> services = new ArrayList<>();
+
+    public GatewayMetricsEvent() {
+    }
+
+    public GatewayMetricsEvent(String gatewayId, long windowStart, long windowEnd,
+                               List<ServiceMetricsSummary> services) {
+        this.gatewayId = gatewayId;
+        this.windowStart = windowStart;
+        this.windowEnd = windowEnd;
+        this.services = services;
+    }
+
+    public String getGatewayId() {
+        return gatewayId;
+    }
+
+    public void setGatewayId(String gatewayId) {
+        this.gatewayId = gatewayId;
+    }
+
+    public long getWindowStart() {
+        return windowStart;
+    }
+
+    public void setWindowStart(long windowStart) {
+        this.windowStart = windowStart;
+    }
+
+    public long getWindowEnd() {
+        return windowEnd;
+    }
+
+    public void setWindowEnd(long windowEnd) {
+        this.windowEnd = windowEnd;
+    }
+
+    public List<ServiceMetricsSummary> getServices() {
+        return services;
+    }
+
+    public void setServices(List<ServiceMetricsSummary> services) {
+        this.services = services;
+    }
+
+    @Override
+    public String toString() {
+        return "GatewayMetricsEvent{" +
+            "gatewayId='" + gatewayId + '\'' +
+            ", windowStart=" + windowStart +
+            ", windowEnd=" + windowEnd +
+            ", services=" + services +
+            '}';
+    }
+}
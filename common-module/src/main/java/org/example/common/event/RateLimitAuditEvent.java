@@ -0,0 +1,110 @@
+package org.example.common.event;
+
+/**
+ * Сводка решений rate-limiter-service по клиенту за интервал [from, to) в audit-топике.
+ * rejectedBy — уровень, отклонивший последний запрет: client, endpoint, service или global.
+ * Ключ записи — "serviceName:clientId".
+ */
+public class RateLimitAuditEvent {
+    private String serviceName;
+    private String clientId;
+    private long checks;
+    private long allowed;
+    private long denied;
+    private String rejectedBy;
+    private long from;
+    private long to;
+
+    public RateLimitAuditEvent() {
+    }
+
+    public RateLimitAuditEvent(String serviceName, String clientId, long checks, long allowed, long denied,
+                               String rejectedBy, long from, long to) {
+        this.serviceName = serviceName;
+        this.clientId = clientId;
+        this.checks = checks;
+        this.allowed = allowed;
+        this.denied = denied;
+        this.rejectedBy = rejectedBy;
+        this.from = from;
+        this.to = to;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public void setServiceName(String serviceName) {
+        this.serviceName = serviceName;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public void setClientId(String clientId) {
+        this.clientId = clientId;
+    }
+
+    public long getChecks() {
+        return checks;
+    }
+
+    public void setChecks(long checks) {
+        this.checks = checks;
+    }
+
+    public long getAllowed() {
+        return allowed;
+    }
+
+    public void setAllowed(long allowed) {
+        this.allowed = allowed;
+    }
+
+    public long getDenied() {
+        return denied;
+    }
+
+    public void setDenied(long denied) {
+        this.denied = denied;
+    }
+
+    public String getRejectedBy() {
+        return rejectedBy;
+    }
+
+    public void setRejectedBy(String rejectedBy) {
+        this.rejectedBy = rejectedBy;
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public void setFrom(long from) {
+        this.from = from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    public void setTo(long to) {
+        this.to = to;
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimitAuditEvent{" +
+            "serviceName='" + serviceName + '\'' +
+            ", clientId='" + clientId + '\'' +
+            ", checks=" + checks +
+            ", allowed=" + allowed +
+            ", denied=" + denied +
+            ", rejectedBy='" + rejectedBy + '\'' +
+            ", from=" + from +
+            ", to=" + to +
+            '}';
+    }
+}
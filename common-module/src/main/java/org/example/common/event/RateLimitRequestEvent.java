@@ -7,8 +7,12 @@ public class RateLimitRequestEvent {
     private String clientId;
     private String serviceName;
     private String endpoint;
-    private int limit = 100;
-    private int windowMs = 60000;
+    // Адрес клиента и tier из доверенного заголовка шлюза; лимит по ним выбирает rate-limiter-service
+    private String clientIp;
+    private String tier;
+    // token-bucket, sliding-window, gcra, sliding-log; null - по настройкам rate-limiter-service
+    private String algorithm;
+    private String replyTopic;
     private LocalDateTime timestamp;
 
     public RateLimitRequestEvent() {
@@ -55,20 +59,36 @@ public class RateLimitRequestEvent {
         this.endpoint = endpoint;
     }
 
-    public int getLimit() {
-        return limit;
+    public String getClientIp() {
+        return clientIp;
     }
 
-    public void setLimit(int limit) {
-        this.limit = limit;
+    public void setClientIp(String clientIp) {
+        this.clientIp = clientIp;
     }
 
-    public int getWindowMs() {
-        return windowMs;
+    public String getTier() {
+        return tier;
     }
 
-    public void setWindowMs(int windowMs) {
-        this.windowMs = windowMs;
+    public void setTier(String tier) {
+        this.tier = tier;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public String getReplyTopic() {
+        return replyTopic;
+    }
+
+    public void setReplyTopic(String replyTopic) {
+        this.replyTopic = replyTopic;
     }
 
     public LocalDateTime getTimestamp() {
@@ -90,8 +110,10 @@ public class RateLimitRequestEvent {
             ", clientId='" + clientId + '\'' +
             ", serviceName='" + serviceName + '\'' +
             ", endpoint='" + endpoint + '\'' +
-            ", limit=" + limit +
-            ", windowMs=" + windowMs +
+            ", clientIp='" + clientIp + '\'' +
+            ", tier='" + tier + '\'' +
+            ", algorithm='" + algorithm + '\'' +
+            ", replyTopic='" + replyTopic + '\'' +
             ", timestamp=" + timestamp +
             '}';
     }
@@ -10,7 +10,11 @@ public class RateLimitResultEvent {
     private boolean allowed;
     private int remainingRequests;
     private int limit;
+    // Окно лимита в мс; 0, если не передано
+    private int windowMs;
     private long resetTime;
+    // Уровень квоты, отклонивший запрос: client, endpoint, service или global; null, если пропущен
+    private String rejectedBy;
     private LocalDateTime timestamp;
 
     public RateLimitResultEvent() {
@@ -80,6 +84,14 @@ public class RateLimitResultEvent {
         this.limit = limit;
     }
 
+    public int getWindowMs() {
+        return windowMs;
+    }
+
+    public void setWindowMs(int windowMs) {
+        this.windowMs = windowMs;
+    }
+
     public long getResetTime() {
         return resetTime;
     }
@@ -88,6 +100,14 @@ public class RateLimitResultEvent {
         this.resetTime = resetTime;
     }
 
+    public String getRejectedBy() {
+        return rejectedBy;
+    }
+
+    public void setRejectedBy(String rejectedBy) {
+        this.rejectedBy = rejectedBy;
+    }
+
     public LocalDateTime getTimestamp() {
         return timestamp;
     }
@@ -104,7 +124,9 @@ public class RateLimitResultEvent {
             ", allowed=" + allowed +
             ", remainingRequests=" + remainingRequests +
             ", limit=" + limit +
+            ", windowMs=" + windowMs +
             ", resetTime=" + resetTime +
+            ", rejectedBy='" + rejectedBy + '\'' +
             ", timestamp=" + timestamp +
             '}';
     }
@@ -0,0 +1,98 @@
+package org.example.common.event;
+
+/**
+ * Снимок состояния лимита клиента в changelog-топике rate-limiter-service.
+ * Ключ записи — "serviceName:clientId", как у запросов на проверку лимита.
+ */
+public class RateLimitStateEvent {
+    private String serviceName;
+    private String clientId;
+    private String algorithm;
+    private int limit;
+    private int windowMs;
+    private long state;
+    private long updatedAt;
+
+    public RateLimitStateEvent() {
+    }
+
+    public RateLimitStateEvent(String serviceName, String clientId, String algorithm, int limit, int windowMs,
+                               long state, long updatedAt) {
+        this.serviceName = serviceName;
+        this.clientId = clientId;
+        this.algorithm = algorithm;
+        this.limit = limit;
+        this.windowMs = windowMs;
+        this.state = state;
+        this.updatedAt = updatedAt;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public void setServiceName(String serviceName) {
+        this.serviceName = serviceName;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public void setClientId(String clientId) {
+        this.clientId = clientId;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public int getWindowMs() {
+        return windowMs;
+    }
+
+    public void setWindowMs(int windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    public long getState() {
+        return state;
+    }
+
+    public void setState(long state) {
+        this.state = state;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimitStateEvent{" +
+            "serviceName='" + serviceName + '\'' +
+            ", clientId='" + clientId + '\'' +
+            ", algorithm='" + algorithm + '\'' +
+            ", limit=" + limit +
+            ", windowMs=" + windowMs +
+            ", state=" + state +
+            ", updatedAt=" + updatedAt +
+            '}';
+    }
+}
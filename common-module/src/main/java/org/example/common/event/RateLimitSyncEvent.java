@@ -0,0 +1,54 @@
+package org.example.common.event;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RateLimitSyncEvent {
+    private String gatewayId;
+    private List<RateLimitUsage> usages = new ArrayList<>();
+    private LocalDateTime timestamp;
+
+    public RateLimitSyncEvent() {
+        this.timestamp = LocalDateTime.now();
+    }
+
+    public RateLimitSyncEvent(String gatewayId, List<RateLimitUsage> usages) {
+        this();
+        this.gatewayId = gatewayId;
+        this.usages = usages;
+    }
+
+    public String getGatewayId() {
+        return gatewayId;
+    }
+
+    public void setGatewayId(String gatewayId) {
+        this.gatewayId = gatewayId;
+    }
+
+    public List<RateLimitUsage> getUsages() {
+        return usages;
+    }
+
+    public void setUsages(List<RateLimitUsage> usages) {
+        this.usages = usages;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimitSyncEvent{" +
+            "gatewayId='" + gatewayId + '\'' +
+            ", usages=" + usages.size() +
+            ", timestamp=" + timestamp +
+            '}';
+    }
+}
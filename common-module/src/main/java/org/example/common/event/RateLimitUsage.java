@@ -0,0 +1,99 @@
+package org.example.common.event;
+
+public class RateLimitUsage {
+    private String clientId;
+    // Адрес клиента и tier из доверенного заголовка: по ним rate-limiter-service выбирает политику
+    private String clientIp;
+    private String tier;
+    private String serviceName;
+    private int consumed;
+    private int limit;
+    private int windowMs;
+
+    public RateLimitUsage() {
+    }
+
+    public RateLimitUsage(String clientId, String serviceName, int consumed, int limit, int windowMs) {
+        this.clientId = clientId;
+        this.serviceName = serviceName;
+        this.consumed = consumed;
+        this.limit = limit;
+        this.windowMs = windowMs;
+    }
+
+    public RateLimitUsage(String clientId, String clientIp, String tier, String serviceName,
+                          int consumed, int limit, int windowMs) {
+        this(clientId, serviceName, consumed, limit, windowMs);
+        this.clientIp = clientIp;
+        this.tier = tier;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public void setClientId(String clientId) {
+        this.clientId = clientId;
+    }
+
+    public String getClientIp() {
+        return clientIp;
+    }
+
+    public void setClientIp(String clientIp) {
+        this.clientIp = clientIp;
+    }
+
+    public String getTier() {
+        return tier;
+    }
+
+    public void setTier(String tier) {
+        this.tier = tier;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public void setServiceName(String serviceName) {
+        this.serviceName = serviceName;
+    }
+
+    public int getConsumed() {
+        return consumed;
+    }
+
+    public void setConsumed(int consumed) {
+        this.consumed = consumed;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public int getWindowMs() {
+        return windowMs;
+    }
+
+    public void setWindowMs(int windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimitUsage{" +
+            "clientId='" + clientId + '\'' +
+            ", clientIp='" + clientIp + '\'' +
+            ", tier='" + tier + '\'' +
+            ", serviceName='" + serviceName + '\'' +
+            ", consumed=" + consumed +
+            ", limit=" + limit +
+            ", windowMs=" + windowMs +
+            '}';
+    }
+}
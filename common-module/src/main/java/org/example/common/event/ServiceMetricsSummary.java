@@ -0,0 +1,148 @@
+package org.example.common.event;
+
+public class ServiceMetricsSummary {
+    private String serviceName;
+    private long requests;
+    private long successes;
+    private long failures;
+    private long rateLimited;
+    private long circuitBlocked;
+    private long concurrencyLimited;
+    private long retries;
+    private long hedges;
+    private long attemptFailures;
+    private double latencyP50Ms;
+    private double latencyP95Ms;
+    private double latencyP99Ms;
+    private double latencyMaxMs;
+
+    public ServiceMetricsSummary() {
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public void setServiceName(String serviceName) {
+        this.serviceName = serviceName;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public void setRequests(long requests) {
+        this.requests = requests;
+    }
+
+    public long getSuccesses() {
+        return successes;
+    }
+
+    public void setSuccesses(long successes) {
+        this.successes = successes;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public void setFailures(long failures) {
+        this.failures = failures;
+    }
+
+    public long getRateLimited() {
+        return rateLimited;
+    }
+
+    public void setRateLimited(long rateLimited) {
+        this.rateLimited = rateLimited;
+    }
+
+    public long getCircuitBlocked() {
+        return circuitBlocked;
+    }
+
+    public void setCircuitBlocked(long circuitBlocked) {
+        this.circuitBlocked = circuitBlocked;
+    }
+
+    public long getConcurrencyLimited() {
+        return concurrencyLimited;
+    }
+
+    public void setConcurrencyLimited(long concurrencyLimited) {
+        this.concurrencyLimited = concurrencyLimited;
+    }
+
+    public long getRetries() {
+        return retries;
+    }
+
+    public void setRetries(long retries) {
+        this.retries = retries;
+    }
+
+    public long getHedges() {
+        return hedges;
+    }
+
+    public void setHedges(long hedges) {
+        this.hedges = hedges;
+    }
+
+    public long getAttemptFailures() {
+        return attemptFailures;
+    }
+
+    public void setAttemptFailures(long attemptFailures) {
+        this.attemptFailures = attemptFailures;
+    }
+
+    public double getLatencyP50Ms() {
+        return latencyP50Ms;
+    }
+
+    public void setLatencyP50Ms(double latencyP50Ms) {
+        this.latencyP50Ms = latencyP50Ms;
+    }
+
+    public double getLatencyP95Ms() {
+        return latencyP95Ms;
+    }
+
+    public void setLatencyP95Ms(double latencyP95Ms) {
+        this.latencyP95Ms = latencyP95Ms;
+    }
+
+    public double getLatencyP99Ms() {
+        return latencyP99Ms;
+    }
+
+    public void setLatencyP99Ms(double latencyP99Ms) {
+        this.latencyP99Ms = latencyP99Ms;
+    }
+
+    public double getLatencyMaxMs() {
+        return latencyMaxMs;
+    }
+
+    public void setLatencyMaxMs(double latencyMaxMs) {
+        this.latencyMaxMs = latencyMaxMs;
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceMetricsSummary{" +
+            "serviceName='" + serviceName + '\'' +
+            ", requests=" + requests +
+            ", failures=" + failures +
+            ", rateLimited=" + rateLimited +
+            ", circuitBlocked=" + circuitBlocked +
+            ", concurrencyLimited=" + concurrencyLimited +
+            ", retries=" + retries +
+            ", hedges=" + hedges +
+            ", latencyP95Ms=" + latencyP95Ms +
+            '}';
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.ratelimiter.algorithm;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.LongPredicate;
+
+/**
+ * Пропускная способность tryAcquire одного клиента под конкуренцией 8 потоков и точность:
+ * после каждой итерации печатается максимум пропущенных запросов в любом окне из WINDOW_MS.
+ * fixed-window — прежняя реализация RateLimitService (synchronized + AtomicInteger) для сравнения.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+public class RateLimitAlgorithmBenchmark {
+
+    private static final int WINDOW_MS = 100;
+    private static final int MAX_ITERATION_MS = 120_000;
+
+    @Param({"fixed-window", "token-bucket", "sliding-window", "gcra", "sliding-log"})
+    private String algorithm;
+
+    @Param({"100", "10000"})
+    private int limit;
+
+    private LongPredicate limiter;
+    private long startMs;
+    private AtomicIntegerArray admittedPerMs;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        startMs = System.currentTimeMillis();
+        admittedPerMs = new AtomicIntegerArray(MAX_ITERATION_MS);
+        limiter = "fixed-window".equals(algorithm)
+            ? new FixedWindow(limit, WINDOW_MS, startMs)::allowRequest
+            : RateLimitAlgorithm.fromId(algorithm).create(limit, WINDOW_MS, startMs)::tryAcquire;
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportAccuracy() {
+        int elapsed = (int) Math.min(MAX_ITERATION_MS, System.currentTimeMillis() - startMs + 1);
+        long inWindow = 0;
+        long peak = 0;
+        for (int ms = 0; ms < elapsed; ms++) {
+            inWindow += admittedPerMs.get(ms);
+            if (ms >= WINDOW_MS) {
+                inWindow -= admittedPerMs.get(ms - WINDOW_MS);
+            }
+            peak = Math.max(peak, inWindow);
+        }
+        System.out.printf("%n%s limit=%d: peak %d admitted in any %d ms window (%.2fx limit)%n",
+            algorithm, limit, peak, WINDOW_MS, (double) peak / limit);
+    }
+
+    @Benchmark
+    public boolean tryAcquire(Admissions admissions) {
+        long now = System.currentTimeMillis();
+        boolean allowed = limiter.test(now);
+        if (allowed) {
+            admissions.allowed++;
+            int ms = (int) (now - startMs);
+            if (ms < MAX_ITERATION_MS) {
+                admittedPerMs.incrementAndGet(ms);
+            }
+        } else {
+            admissions.rejected++;
+        }
+        return allowed;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Admissions {
+        public long allowed;
+        public long rejected;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            allowed = 0;
+            rejected = 0;
+        }
+    }
+
+    private static final class FixedWindow {
+        private final int limit;
+        private final int windowMs;
+        private final AtomicInteger requests = new AtomicInteger(0);
+        private volatile long windowStart;
+
+        FixedWindow(int limit, int windowMs, long nowMs) {
+            this.limit = limit;
+            this.windowMs = windowMs;
+            this.windowStart = nowMs;
+        }
+
+        boolean allowRequest(long currentTime) {
+            synchronized (this) {
+                if (currentTime - windowStart > windowMs) {
+                    requests.set(0);
+                    windowStart = currentTime;
+                }
+                return requests.incrementAndGet() <= limit;
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.ratelimiter.audit;
+
+import com.example.ratelimiter.policy.PolicyEngine;
+import com.example.ratelimiter.service.RateLimitService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.common.event.RateLimitRequestEvent;
+import org.example.common.event.RateLimitResultEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пропускная способность RateLimitService.checkRateLimit под 8 потоками. console — прежнее
+ * поведение: строка на каждое решение в System.out (перенаправлен в файл, чтобы замер не зависел
+ * от терминала). ring — решение пишется в кольцо аудита, которое каждые 100 мс разбирает
+ * фоновый поток, как drain по расписанию в сервисе.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+public class DecisionAuditBenchmark {
+
+    private static final int CLIENTS_PER_THREAD = 4096;
+
+    @Param({"console", "ring"})
+    private String audit;
+
+    private boolean console;
+    private RateLimitService service;
+    private DecisionAuditor auditor;
+    private ScheduledExecutorService drainer;
+    private PrintStream originalOut;
+    private Path consoleFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        console = "console".equals(audit);
+        StandardEnvironment environment = new StandardEnvironment();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        auditor = new DecisionAuditor(null, registry, !console, 131072, "", 0.001, 1000, 20, 100000, 1000);
+        PolicyEngine policies = new PolicyEngine(new DefaultResourceLoader(), environment, registry, "",
+            100000, 100, 60000);
+        // Поля @Value без Spring не заполняются, поэтому алгоритм задаётся в запросе
+        service = new RateLimitService(environment, registry, policies, auditor, 1 << 20, 0, 600000, 100, 4096,
+            120000, true, false, "unused");
+
+        if (console) {
+            originalOut = System.out;
+            consoleFile = Files.createTempFile("rate-limiter-console", ".log");
+            System.setOut(new PrintStream(new BufferedOutputStream(new FileOutputStream(consoleFile.toFile())), true));
+        } else {
+            drainer = Executors.newSingleThreadScheduledExecutor();
+            drainer.scheduleWithFixedDelay(auditor::drain, 100, 100, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (console) {
+            System.out.close();
+            System.setOut(originalOut);
+            Files.deleteIfExists(consoleFile);
+        } else {
+            drainer.shutdownNow();
+            System.out.printf("%naudit ring: %d decisions dropped%n", auditor.dropped());
+        }
+    }
+
+    @Benchmark
+    public RateLimitResultEvent checkRateLimit(Clients clients) {
+        RateLimitRequestEvent request = clients.next();
+        RateLimitResultEvent result = service.checkRateLimit(request);
+        if (console) {
+            System.out.println("🔒 Rate limit check: " + request.getServiceName() + ":" + request.getClientId() +
+                " - Allowed: " + result.isAllowed() +
+                " - Remaining: " + result.getRemainingRequests() + "/" + result.getLimit());
+        }
+        return result;
+    }
+
+    // Свои клиенты у каждого потока: сравниваем вывод решений, а не конкуренцию за один слот
+    @State(Scope.Thread)
+    public static class Clients {
+        private static final AtomicInteger threads = new AtomicInteger();
+
+        private RateLimitRequestEvent[] requests;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            int thread = threads.incrementAndGet();
+            requests = new RateLimitRequestEvent[CLIENTS_PER_THREAD];
+            for (int i = 0; i < requests.length; i++) {
+                RateLimitRequestEvent request = new RateLimitRequestEvent("client-" + thread + "-" + i,
+                    "user-service", "/api/users/" + i);
+                request.setAlgorithm("token-bucket");
+                requests[i] = request;
+            }
+        }
+
+        RateLimitRequestEvent next() {
+            RateLimitRequestEvent request = requests[next];
+            next = (next + 1) & (requests.length - 1);
+            return request;
+        }
+    }
+}
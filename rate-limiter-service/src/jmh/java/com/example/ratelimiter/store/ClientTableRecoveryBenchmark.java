@@ -0,0 +1,109 @@
+package com.example.ratelimiter.store;
+
+import com.example.ratelimiter.algorithm.PackedAlgorithm;
+import com.example.ratelimiter.algorithm.RateLimitAlgorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Время восстановления таблицы клиентов при старте: снимок плюс WAL, в котором изменения
+ * десятой части клиентов после последнего снимка. same — таблица той же ёмкости (копирование
+ * страниц), resized — ёмкость увеличена вдвое (перевставка по слотам). Файлы перед каждым
+ * замером копируются заново, так что они в page cache, как при обычном рестарте.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ClientTableRecoveryBenchmark {
+
+    @Param({"1000000", "3000000"})
+    private int clients;
+
+    @Param({"same", "resized"})
+    private String layout;
+
+    private Path saved;
+    private Path working;
+    private int capacity;
+
+    @Setup(Level.Trial)
+    public void saveState() throws IOException {
+        capacity = clients * 4 / 3;
+        saved = Files.createTempDirectory("client-table-saved");
+        PackedAlgorithm algorithm = RateLimitAlgorithm.TOKEN_BUCKET.packed(100, 60000);
+        int config = ClientTable.config(algorithm);
+        long now = System.currentTimeMillis();
+
+        ClientTable table = new ClientTable(capacity);
+        try (ClientTableStore store = new ClientTableStore(saved, table)) {
+            store.recover();
+            for (int client = 0; client < clients; client++) {
+                acquire(table, algorithm, config, client, now);
+            }
+            store.logChanges();
+            store.checkpoint();
+            // Изменения после снимка остаются только в WAL
+            for (int client = 0; client < clients; client += 10) {
+                acquire(table, algorithm, config, client, now);
+            }
+            store.logChanges();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void copyState() throws IOException {
+        working = Files.createTempDirectory("client-table-recovery");
+        try (Stream<Path> files = Files.list(saved)) {
+            for (Path file : files.toList()) {
+                Files.copy(file, working.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteWorking() throws IOException {
+        delete(working);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteSaved() throws IOException {
+        delete(saved);
+    }
+
+    @Benchmark
+    public long recover() throws IOException {
+        ClientTable table = new ClientTable("same".equals(layout) ? capacity : capacity * 2);
+        try (ClientTableStore store = new ClientTableStore(working, table)) {
+            return store.recover();
+        }
+    }
+
+    private static void acquire(ClientTable table, PackedAlgorithm algorithm, int config, int client, long now) {
+        int slot = table.slotFor(ClientTable.fingerprint("user-service", "client-" + client), config, now);
+        table.tryAcquire(slot, algorithm, now);
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.ratelimiter.algorithm;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+final class AtomicRateLimiter implements RateLimiter {
+
+    private final PackedAlgorithm algorithm;
+    private final AtomicLong state = new AtomicLong();
+
+    AtomicRateLimiter(PackedAlgorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    @Override
+    public RateLimitAlgorithm algorithm() {
+        return algorithm.algorithm();
+    }
+
+    @Override
+    public int limit() {
+        return algorithm.limit();
+    }
+
+    @Override
+    public int windowMs() {
+        return algorithm.windowMs();
+    }
+
+    @Override
+    public boolean tryAcquire(long nowMs) {
+        while (true) {
+            long current = state.get();
+            long updated = algorithm.acquire(current, nowMs);
+            if (updated == current) {
+                return false;
+            }
+            if (state.compareAndSet(current, updated)) {
+                return true;
+            }
+        }
+    }
+
+    // Пачка запросов одного клиента — одно обновление состояния
+    @Override
+    public int tryAcquire(int permits, long nowMs) {
+        while (true) {
+            long current = state.get();
+            int granted = Math.min(permits, algorithm.remaining(current, nowMs));
+            if (granted <= 0) {
+                return 0;
+            }
+            if (state.compareAndSet(current, algorithm.record(current, granted, nowMs))) {
+                return granted;
+            }
+        }
+    }
+
+    @Override
+    public void record(int permits, long nowMs) {
+        state.getAndUpdate(current -> algorithm.record(current, permits, nowMs));
+    }
+
+    @Override
+    public int remaining(long nowMs) {
+        return algorithm.remaining(state.get(), nowMs);
+    }
+
+    @Override
+    public long resetTime(long nowMs) {
+        return algorithm.resetTime(state.get(), nowMs);
+    }
+}
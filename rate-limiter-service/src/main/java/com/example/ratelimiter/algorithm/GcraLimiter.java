@@ -0,0 +1,69 @@
+package com.example.ratelimiter.algorithm;
+
+/**
+ * Generic Cell Rate Algorithm: состояние — теоретическое время прихода следующего запроса (TAT)
+ * в микросекундах. Каждый запрос сдвигает его на windowMs / limit; запрос проходит, пока TAT
+ * опережает текущее время не больше чем на окно, то есть всплеск не превышает limit.
+ */
+final class GcraLimiter implements PackedAlgorithm {
+
+    private final int limit;
+    private final int windowMs;
+    private final long windowMicros;
+    private final long emissionIntervalMicros;
+
+    GcraLimiter(int limit, int windowMs) {
+        this.limit = limit;
+        this.windowMs = windowMs;
+        this.windowMicros = windowMs * 1000L;
+        this.emissionIntervalMicros = Math.max(1, windowMicros / limit);
+    }
+
+    @Override
+    public RateLimitAlgorithm algorithm() {
+        return RateLimitAlgorithm.GCRA;
+    }
+
+    @Override
+    public int limit() {
+        return limit;
+    }
+
+    @Override
+    public int windowMs() {
+        return windowMs;
+    }
+
+    @Override
+    public long acquire(long state, long nowMs) {
+        long nowMicros = nowMs * 1000;
+        long next = Math.max(state, nowMicros) + emissionIntervalMicros;
+        return next - nowMicros > windowMicros ? state : next;
+    }
+
+    @Override
+    public long record(long state, int permits, long nowMs) {
+        long nowMicros = nowMs * 1000;
+        // Не уводим TAT дальше одного окна вперёд, иначе клиент будет заблокирован дольше окна
+        return Math.min(Math.max(state, nowMicros) + permits * emissionIntervalMicros, nowMicros + windowMicros);
+    }
+
+    // TAT в прошлом равносилен текущему времени, поэтому ниже него не опускаем
+    @Override
+    public long release(long state, int permits, long nowMs) {
+        long nowMicros = nowMs * 1000;
+        return state > nowMicros ? Math.max(nowMicros, state - permits * emissionIntervalMicros) : state;
+    }
+
+    @Override
+    public int remaining(long state, long nowMs) {
+        long nowMicros = nowMs * 1000;
+        long backlog = Math.max(state, nowMicros) - nowMicros;
+        return (int) Math.max(0, (windowMicros - backlog) / emissionIntervalMicros);
+    }
+
+    @Override
+    public long resetTime(long state, long nowMs) {
+        return Math.max(state / 1000, nowMs);
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.ratelimiter.algorithm;
+
+/**
+ * Алгоритм лимита, всё состояние клиента в котором — один long. Сам алгоритм хранит только
+ * лимит и окно, а состояние держит вызывающий: {@link AtomicRateLimiter} или слот
+ * {@code ClientTable}. Переходы — чистые функции, вызывающий применяет их CAS-ом.
+ * Начальное состояние любого алгоритма — 0.
+ */
+public interface PackedAlgorithm {
+
+    RateLimitAlgorithm algorithm();
+
+    int limit();
+
+    int windowMs();
+
+    /**
+     * Новое состояние после пропуска запроса или то же самое {@code state}, если лимит исчерпан.
+     */
+    long acquire(long state, long nowMs);
+
+    long record(long state, int permits, long nowMs);
+
+    /**
+     * Возвращает permits запросов, пропущенных только что по этому же состоянию: откат,
+     * когда запрос отклонён на другом уровне квот.
+     */
+    long release(long state, int permits, long nowMs);
+
+    /**
+     * Сколько запросов пройдёт подряд: acquire пропустит ровно столько, а record на это число
+     * равносилен стольким же acquire.
+     */
+    int remaining(long state, long nowMs);
+
+    long resetTime(long state, long nowMs);
+}
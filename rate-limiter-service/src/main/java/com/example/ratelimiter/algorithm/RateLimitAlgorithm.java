@@ -0,0 +1,50 @@
+package com.example.ratelimiter.algorithm;
+
+import java.util.Locale;
+
+public enum RateLimitAlgorithm {
+    TOKEN_BUCKET("token-bucket"),
+    SLIDING_WINDOW("sliding-window"),
+    GCRA("gcra"),
+    SLIDING_LOG("sliding-log");
+
+    private final String id;
+
+    RateLimitAlgorithm(String id) {
+        this.id = id;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    // Состояние sliding-log — журнал на limit отметок, в один long оно не помещается
+    public boolean isPacked() {
+        return this != SLIDING_LOG;
+    }
+
+    public PackedAlgorithm packed(int limit, int windowMs) {
+        return switch (this) {
+            case TOKEN_BUCKET -> new TokenBucketLimiter(limit, windowMs);
+            case SLIDING_WINDOW -> new SlidingWindowCounterLimiter(limit, windowMs);
+            case GCRA -> new GcraLimiter(limit, windowMs);
+            case SLIDING_LOG -> throw new UnsupportedOperationException("sliding-log has no packed state");
+        };
+    }
+
+    public RateLimiter create(int limit, int windowMs, long nowMs) {
+        return isPacked()
+            ? new AtomicRateLimiter(packed(limit, windowMs))
+            : new SlidingLogLimiter(limit, windowMs, nowMs);
+    }
+
+    public static RateLimitAlgorithm fromId(String id) {
+        String normalized = id.trim().toLowerCase(Locale.ROOT);
+        for (RateLimitAlgorithm algorithm : values()) {
+            if (algorithm.id.equals(normalized)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Unknown rate limit algorithm: " + id);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.ratelimiter.algorithm;
+
+/**
+ * Состояние лимита одного клиента. Все реализации без блокировок: состояние меняется только
+ * через CAS. Время передаёт вызывающий, чтобы один запрос видел одно и то же "сейчас".
+ */
+public interface RateLimiter {
+
+    RateLimitAlgorithm algorithm();
+
+    int limit();
+
+    int windowMs();
+
+    boolean tryAcquire(long nowMs);
+
+    /**
+     * Пропускает сколько получится из permits запросов, возвращает число пропущенных.
+     */
+    default int tryAcquire(int permits, long nowMs) {
+        int granted = 0;
+        while (granted < permits && tryAcquire(nowMs)) {
+            granted++;
+        }
+        return granted;
+    }
+
+    /**
+     * Учитывает уже пропущенные запросы (синхронизация локальных лимитеров шлюза) без проверки лимита.
+     */
+    void record(int permits, long nowMs);
+
+    int remaining(long nowMs);
+
+    /**
+     * Момент, когда лимит полностью восстановится.
+     */
+    long resetTime(long nowMs);
+}
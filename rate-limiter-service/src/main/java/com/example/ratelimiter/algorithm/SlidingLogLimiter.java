@@ -0,0 +1,114 @@
+package com.example.ratelimiter.algorithm;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Точный журнал времён последних limit запросов в кольцевом буфере. Запрос проходит, если самый
+ * старый из них вышел за окно. Память O(limit), поэтому только для небольших лимитов.
+ * <p>
+ * Ячейка хранит время запроса (старшие 40 бит, мс от создания) и номер его позиции в журнале
+ * (младшие 24 бита). Запрос занимает ячейку CAS-ом и только потом сдвигает голову; кто видит
+ * ячейку, уже занятую для текущей позиции, помогает сдвинуть голову и пробует снова.
+ */
+final class SlidingLogLimiter implements RateLimiter {
+
+    private static final int POSITION_BITS = 24;
+    private static final long POSITION_MASK = (1L << POSITION_BITS) - 1;
+    static final int MAX_LIMIT = (int) POSITION_MASK;
+
+    private final int limit;
+    private final int windowMs;
+    // Сдвинуто на окно назад, чтобы начальные нулевые отметки были уже вне окна
+    private final long baseMs;
+    private final AtomicLongArray log;
+    private final AtomicLong head = new AtomicLong();
+
+    SlidingLogLimiter(int limit, int windowMs, long nowMs) {
+        this.limit = Math.min(limit, MAX_LIMIT);
+        this.windowMs = windowMs;
+        this.baseMs = nowMs - windowMs;
+        this.log = new AtomicLongArray(this.limit);
+        for (int i = 0; i < this.limit; i++) {
+            log.set(i, pack(0, i - this.limit));
+        }
+    }
+
+    @Override
+    public RateLimitAlgorithm algorithm() {
+        return RateLimitAlgorithm.SLIDING_LOG;
+    }
+
+    @Override
+    public int limit() {
+        return limit;
+    }
+
+    @Override
+    public int windowMs() {
+        return windowMs;
+    }
+
+    @Override
+    public boolean tryAcquire(long nowMs) {
+        return claim(nowMs, false);
+    }
+
+    @Override
+    public void record(int permits, long nowMs) {
+        for (int i = 0; i < Math.min(permits, limit); i++) {
+            claim(nowMs, true);
+        }
+    }
+
+    @Override
+    public int remaining(long nowMs) {
+        int inWindow = 0;
+        for (int i = 0; i < limit; i++) {
+            if (nowMs - timeOf(log.get(i)) < windowMs) {
+                inWindow++;
+            }
+        }
+        return limit - inWindow;
+    }
+
+    @Override
+    public long resetTime(long nowMs) {
+        long newest = Long.MIN_VALUE;
+        for (int i = 0; i < limit; i++) {
+            newest = Math.max(newest, timeOf(log.get(i)));
+        }
+        return Math.max(nowMs, newest + windowMs);
+    }
+
+    private boolean claim(long nowMs, boolean force) {
+        while (true) {
+            long position = head.get();
+            int slot = (int) (position % limit);
+            long entry = log.get(slot);
+            if (positionOf(entry) == (position & POSITION_MASK)) {
+                head.compareAndSet(position, position + 1);
+                continue;
+            }
+            if (!force && nowMs - timeOf(entry) < windowMs) {
+                return false;
+            }
+            if (log.compareAndSet(slot, entry, pack(Math.max(0, nowMs - baseMs), position))) {
+                head.compareAndSet(position, position + 1);
+                return true;
+            }
+        }
+    }
+
+    private long timeOf(long entry) {
+        return baseMs + (entry >>> POSITION_BITS);
+    }
+
+    private static long positionOf(long entry) {
+        return entry & POSITION_MASK;
+    }
+
+    private static long pack(long offsetMs, long position) {
+        return (offsetMs << POSITION_BITS) | (position & POSITION_MASK);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.ratelimiter.algorithm;
+
+/**
+ * Скользящее окно по двум счётчикам: запросы предыдущего окна берутся с весом той его части,
+ * которая ещё попадает в последние windowMs. В отличие от фиксированного окна не пропускает
+ * двойной лимит на стыке окон. Состояние: номер окна (24 бита), счётчики текущего
+ * и предыдущего окна (по 20 бит).
+ */
+final class SlidingWindowCounterLimiter implements PackedAlgorithm {
+
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long WINDOW_MASK = (1L << 24) - 1;
+    static final int MAX_LIMIT = (int) COUNT_MASK;
+
+    private final int limit;
+    private final int windowMs;
+
+    SlidingWindowCounterLimiter(int limit, int windowMs) {
+        this.limit = Math.min(limit, MAX_LIMIT);
+        this.windowMs = windowMs;
+    }
+
+    @Override
+    public RateLimitAlgorithm algorithm() {
+        return RateLimitAlgorithm.SLIDING_WINDOW;
+    }
+
+    @Override
+    public int limit() {
+        return limit;
+    }
+
+    @Override
+    public int windowMs() {
+        return windowMs;
+    }
+
+    @Override
+    public long acquire(long state, long nowMs) {
+        long rolled = roll(state, nowMs);
+        // Сравниваем в единицах "запрос * мс", чтобы обойтись без деления на горячем пути
+        if (weightedCount(rolled, state, nowMs) + windowMs > (long) limit * windowMs) {
+            return state;
+        }
+        return pack(windowTag(rolled), currentCount(rolled) + 1, previousCount(rolled));
+    }
+
+    @Override
+    public long record(long state, int permits, long nowMs) {
+        long rolled = roll(state, nowMs);
+        long count = Math.min(COUNT_MASK, currentCount(rolled) + permits);
+        return pack(windowTag(rolled), count, previousCount(rolled));
+    }
+
+    // Окно успело смениться — пропущенные запросы уже в счётчике предыдущего
+    @Override
+    public long release(long state, int permits, long nowMs) {
+        long rolled = roll(state, nowMs);
+        if (windowTag(rolled) == windowTag(state)) {
+            return pack(windowTag(rolled), Math.max(0, currentCount(rolled) - permits), previousCount(rolled));
+        }
+        return pack(windowTag(rolled), currentCount(rolled), Math.max(0, previousCount(rolled) - permits));
+    }
+
+    @Override
+    public int remaining(long state, long nowMs) {
+        long used = (weightedCount(roll(state, nowMs), state, nowMs) + windowMs - 1) / windowMs;
+        return (int) Math.max(0, limit - used);
+    }
+
+    @Override
+    public long resetTime(long state, long nowMs) {
+        return (nowMs / windowMs + 1) * windowMs;
+    }
+
+    private long roll(long current, long nowMs) {
+        long ahead = ((nowMs / windowMs) - windowTag(current)) & WINDOW_MASK;
+        // Отставание на окно-два: другой поток уже перевёл окно по чуть более позднему времени
+        if (ahead == 0 || (ahead >= WINDOW_MASK - 1 && current != 0)) {
+            return current;
+        }
+        return pack((nowMs / windowMs) & WINDOW_MASK, 0, ahead == 1 ? currentCount(current) : 0);
+    }
+
+    // Время, отстающее от уже записанного окна, считаем его началом: вес предыдущего окна полный
+    private long weightedCount(long rolled, long current, long nowMs) {
+        boolean behind = rolled == current && windowTag(current) != ((nowMs / windowMs) & WINDOW_MASK);
+        long elapsed = behind ? 0 : nowMs % windowMs;
+        return previousCount(rolled) * (windowMs - elapsed) + currentCount(rolled) * windowMs;
+    }
+
+    private static long pack(long windowTag, long currentCount, long previousCount) {
+        return (windowTag << (2 * COUNT_BITS)) | (currentCount << COUNT_BITS) | previousCount;
+    }
+
+    private static long windowTag(long state) {
+        return state >>> (2 * COUNT_BITS);
+    }
+
+    private static long currentCount(long state) {
+        return (state >>> COUNT_BITS) & COUNT_MASK;
+    }
+
+    private static long previousCount(long state) {
+        return state & COUNT_MASK;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.ratelimiter.algorithm;
+
+/**
+ * Ведро на limit токенов, которое наполняется равномерно за windowMs.
+ * Состояние: старшие 40 бит — момент последнего пополнения в мс от EPOCH_MS,
+ * младшие 24 — израсходованные токены (0 — полное ведро).
+ */
+final class TokenBucketLimiter implements PackedAlgorithm {
+
+    private static final int USED_BITS = 24;
+    private static final long USED_MASK = (1L << USED_BITS) - 1;
+    // 2024-01-01T00:00:00Z, 40 бит миллисекунд хватает до 2058 года
+    private static final long EPOCH_MS = 1_704_067_200_000L;
+    static final int MAX_CAPACITY = (int) USED_MASK;
+
+    private final int capacity;
+    private final int windowMs;
+
+    TokenBucketLimiter(int limit, int windowMs) {
+        this.capacity = Math.min(limit, MAX_CAPACITY);
+        this.windowMs = windowMs;
+    }
+
+    @Override
+    public RateLimitAlgorithm algorithm() {
+        return RateLimitAlgorithm.TOKEN_BUCKET;
+    }
+
+    @Override
+    public int limit() {
+        return capacity;
+    }
+
+    @Override
+    public int windowMs() {
+        return windowMs;
+    }
+
+    @Override
+    public long acquire(long state, long nowMs) {
+        long refilled = refill(state, nowMs);
+        long used = used(refilled);
+        if (used >= capacity) {
+            return state;
+        }
+        return pack(refilledAt(refilled), used + 1);
+    }
+
+    @Override
+    public long record(long state, int permits, long nowMs) {
+        long refilled = refill(state, nowMs);
+        return pack(refilledAt(refilled), Math.min(capacity, used(refilled) + permits));
+    }
+
+    @Override
+    public long release(long state, int permits, long nowMs) {
+        long refilled = refill(state, nowMs);
+        return pack(refilledAt(refilled), Math.max(0, used(refilled) - permits));
+    }
+
+    @Override
+    public int remaining(long state, long nowMs) {
+        return (int) (capacity - used(refill(state, nowMs)));
+    }
+
+    @Override
+    public long resetTime(long state, long nowMs) {
+        return nowMs + used(refill(state, nowMs)) * windowMs / capacity;
+    }
+
+    // Возвращает токены за прошедшее время. Момент пополнения сдвигается на время возвращённых
+    // токенов с округлением вверх: дробный остаток может потеряться, но лишних токенов не будет
+    private long refill(long state, long nowMs) {
+        long offset = Math.max(0, nowMs - EPOCH_MS);
+        long refilledAt = refilledAt(state);
+        long used = used(state);
+        if (used == 0) {
+            return offset > refilledAt ? pack(offset, 0) : state;
+        }
+        long elapsed = offset - refilledAt;
+        if (elapsed <= 0) {
+            return state;
+        }
+        long restored = elapsed * capacity / windowMs;
+        if (restored == 0) {
+            return state;
+        }
+        if (restored >= used) {
+            return pack(offset, 0);
+        }
+        long advance = (restored * windowMs + capacity - 1) / capacity;
+        return pack(refilledAt + advance, used - restored);
+    }
+
+    private static long pack(long refilledAt, long used) {
+        return (refilledAt << USED_BITS) | used;
+    }
+
+    private static long refilledAt(long state) {
+        return state >>> USED_BITS;
+    }
+
+    private static long used(long state) {
+        return state & USED_MASK;
+    }
+}
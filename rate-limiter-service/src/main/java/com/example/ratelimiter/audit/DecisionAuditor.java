@@ -0,0 +1,225 @@
+package com.example.ratelimiter.audit;
+
+import com.example.ratelimiter.quota.QuotaLevel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.common.event.RateLimitAuditEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Аудит решений лимитера вне пути проверки. Проверка только кладёт решение в
+ * {@link DecisionRing}; фоновый drain разбирает кольцо, считает решения по клиентам
+ * и раз в flush-interval пишет сводку: клиентов с наибольшим числом запретов в лог,
+ * всех клиентов интервала — в rate-limiter.audit.topic, если он задан. Отдельные решения
+ * попадают в лог с вероятностью sample-rate, последние запреты доступны через
+ * {@link #recentDenials}.
+ */
+@Component
+public class DecisionAuditor {
+    private static final Logger logger = LoggerFactory.getLogger(DecisionAuditor.class);
+
+    private final DecisionRing ring;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final boolean enabled;
+    private final String topic;
+    private final double sampleRate;
+    private final long flushIntervalMs;
+    private final int topClients;
+    private final int maxClients;
+    private final Counter allowedDecisions;
+    private final Counter deniedDecisions;
+    // Последние запреты по кругу, под собственным монитором: пишет drain, читает endpoint
+    private final DecisionRing.Decision[] recentDenials;
+    private int recentNext;
+    private int recentCount;
+    // Сводка текущего интервала по сервису и клиенту, только для drain
+    private final Map<String, Map<String, ClientAudit>> window = new HashMap<>();
+    private int windowClients;
+    private long windowStart;
+    private long windowChecks;
+    private long windowDenied;
+    private long unaggregatedChecks;
+
+    public DecisionAuditor(KafkaTemplate<String, Object> kafkaTemplate,
+                           MeterRegistry meterRegistry,
+                           @Value("${rate-limiter.audit.enabled:true}") boolean enabled,
+                           @Value("${rate-limiter.audit.ring-capacity:131072}") int ringCapacity,
+                           @Value("${rate-limiter.audit.topic:}") String topic,
+                           @Value("${rate-limiter.audit.sample-rate:0.001}") double sampleRate,
+                           @Value("${rate-limiter.audit.flush-interval-ms:1000}") long flushIntervalMs,
+                           @Value("${rate-limiter.audit.top-clients:20}") int topClients,
+                           @Value("${rate-limiter.audit.max-clients:100000}") int maxClients,
+                           @Value("${rate-limiter.audit.recent-denials:1000}") int recentDenials) {
+        this.ring = new DecisionRing(ringCapacity);
+        this.kafkaTemplate = kafkaTemplate;
+        this.enabled = enabled;
+        this.topic = topic;
+        this.sampleRate = sampleRate;
+        this.flushIntervalMs = flushIntervalMs;
+        this.topClients = topClients;
+        this.maxClients = maxClients;
+        this.recentDenials = new DecisionRing.Decision[Math.max(1, recentDenials)];
+        this.allowedDecisions = Counter.builder("rate-limiter.decisions")
+            .description("Rate limit checks that reached the audit stream")
+            .tag("outcome", "allowed")
+            .register(meterRegistry);
+        this.deniedDecisions = Counter.builder("rate-limiter.decisions")
+            .description("Rate limit checks that reached the audit stream")
+            .tag("outcome", "denied")
+            .register(meterRegistry);
+        FunctionCounter.builder("rate-limiter.audit.dropped", ring, DecisionRing::dropped)
+            .description("Decisions dropped because the audit ring was full")
+            .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Записывает решение по checks проверкам клиента, из которых разрешено allowed. Не ждёт:
+     * при заполненном кольце решение отбрасывается.
+     */
+    public void record(long now, String serviceName, String clientId, String endpoint, int checks, int allowed,
+                       int remaining, int limit, QuotaLevel rejectedBy) {
+        if (enabled) {
+            ring.offer(now, serviceName, clientId, endpoint, checks, allowed, remaining, limit, rejectedBy);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${rate-limiter.audit.drain-interval-ms:100}")
+    public synchronized void drain() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (windowStart == 0) {
+            windowStart = now;
+        }
+        // Не больше одного круга за вызов, чтобы drain не зациклился под постоянной нагрузкой
+        ring.drain(this::accept, ring.capacity());
+        if (now - windowStart >= flushIntervalMs) {
+            flush(now);
+        }
+    }
+
+    // Последние запреты, новые первыми
+    public List<DecisionRing.Decision> recentDenials(int limit) {
+        synchronized (recentDenials) {
+            int count = Math.min(Math.max(limit, 0), recentCount);
+            List<DecisionRing.Decision> denials = new ArrayList<>(count);
+            for (int i = 1; i <= count; i++) {
+                denials.add(recentDenials[Math.floorMod(recentNext - i, recentDenials.length)]);
+            }
+            return denials;
+        }
+    }
+
+    public long dropped() {
+        return ring.dropped();
+    }
+
+    private void accept(DecisionRing.Decision decision) {
+        allowedDecisions.increment(decision.allowed());
+        windowChecks += decision.checks();
+        if (decision.denied() > 0) {
+            deniedDecisions.increment(decision.denied());
+            windowDenied += decision.denied();
+            synchronized (recentDenials) {
+                recentDenials[recentNext] = decision;
+                recentNext = (recentNext + 1) % recentDenials.length;
+                recentCount = Math.min(recentCount + 1, recentDenials.length);
+            }
+        }
+
+        if (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            logger.info("decision service={} client={} endpoint={} checks={} allowed={} remaining={} limit={} rejectedBy={}",
+                decision.serviceName(), decision.clientId(), decision.endpoint(), decision.checks(),
+                decision.allowed(), decision.remaining(), decision.limit(),
+                decision.rejectedBy() != null ? decision.rejectedBy().id() : null);
+        }
+
+        Map<String, ClientAudit> serviceClients = window.computeIfAbsent(decision.serviceName(),
+            service -> new HashMap<>());
+        ClientAudit client = serviceClients.get(decision.clientId());
+        if (client == null) {
+            if (windowClients >= maxClients) {
+                unaggregatedChecks += decision.checks();
+                return;
+            }
+            client = new ClientAudit(decision.serviceName(), decision.clientId());
+            serviceClients.put(decision.clientId(), client);
+            windowClients++;
+        }
+        client.add(decision);
+    }
+
+    private void flush(long now) {
+        if (windowChecks > 0) {
+            logger.info("decisions checks={} allowed={} denied={} clients={} unaggregated={} dropped={} intervalMs={}",
+                windowChecks, windowChecks - windowDenied, windowDenied, windowClients, unaggregatedChecks,
+                ring.dropped(), now - windowStart);
+            window.values().stream()
+                .flatMap(serviceClients -> serviceClients.values().stream())
+                .filter(client -> client.denied > 0)
+                .sorted(Comparator.comparingLong((ClientAudit client) -> client.denied).reversed())
+                .limit(topClients)
+                .forEach(client -> logger.info("denied service={} client={} checks={} denied={} rejectedBy={}",
+                    client.serviceName, client.clientId, client.checks, client.denied, client.rejectedBy));
+        }
+        if (!topic.isBlank()) {
+            try {
+                for (Map<String, ClientAudit> serviceClients : window.values()) {
+                    for (ClientAudit client : serviceClients.values()) {
+                        kafkaTemplate.send(topic, client.serviceName + ":" + client.clientId,
+                            new RateLimitAuditEvent(client.serviceName, client.clientId, client.checks,
+                                client.checks - client.denied, client.denied, client.rejectedBy, windowStart, now));
+                    }
+                }
+            } catch (Exception e) {
+                // Аудит не должен останавливать проверки: интервал пропадает только из топика
+                logger.warn("Failed to publish rate limit audit to {}: {}", topic, e.getMessage());
+            }
+        }
+        window.clear();
+        windowClients = 0;
+        windowStart = now;
+        windowChecks = 0;
+        windowDenied = 0;
+        unaggregatedChecks = 0;
+    }
+
+    private static final class ClientAudit {
+        private final String serviceName;
+        private final String clientId;
+        private long checks;
+        private long denied;
+        private String rejectedBy;
+
+        private ClientAudit(String serviceName, String clientId) {
+            this.serviceName = serviceName;
+            this.clientId = clientId;
+        }
+
+        private void add(DecisionRing.Decision decision) {
+            checks += decision.checks();
+            if (decision.denied() > 0) {
+                denied += decision.denied();
+                rejectedBy = decision.rejectedBy() != null ? decision.rejectedBy().id() : null;
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.ratelimiter.audit;
+
+import com.example.ratelimiter.quota.QuotaLevel;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Ограниченное кольцо решений: много писателей, один читатель, без блокировок. Писатель
+ * занимает позицию CAS-ом хвоста и публикует запись номером последовательности ячейки
+ * (release), читатель забирает ячейки по порядку, пока номер говорит, что запись готова.
+ * Поля хранятся в параллельных массивах, так что запись решения ничего не выделяет.
+ * <p>
+ * Полное кольцо не ждёт читателя: решение отбрасывается и учитывается в {@link #dropped}.
+ */
+public final class DecisionRing {
+
+    private final int mask;
+    // sequence == позиция — ячейка свободна для записи на этой позиции,
+    // позиция + 1 — запись опубликована и ждёт читателя
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final long[] timestamps;
+    private final String[] services;
+    private final String[] clients;
+    private final String[] endpoints;
+    private final int[] checks;
+    private final int[] allowed;
+    private final int[] remaining;
+    private final int[] limits;
+    private final QuotaLevel[] rejectedBy;
+    // Только для читателя
+    private long head;
+
+    public DecisionRing(int capacity) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.timestamps = new long[size];
+        this.services = new String[size];
+        this.clients = new String[size];
+        this.endpoints = new String[size];
+        this.checks = new int[size];
+        this.allowed = new int[size];
+        this.remaining = new int[size];
+        this.limits = new int[size];
+        this.rejectedBy = new QuotaLevel[size];
+    }
+
+    /**
+     * Записывает решение по checks проверкам клиента, из которых разрешено allowed.
+     *
+     * @return {@code false}, если кольцо заполнено и решение отброшено
+     */
+    public boolean offer(long timestamp, String serviceName, String clientId, String endpoint, int checks,
+                         int allowed, int remaining, int limit, QuotaLevel rejectedBy) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long sequence = sequences.getAcquire(index);
+            if (sequence == position) {
+                if (tail.weakCompareAndSetVolatile(position, position + 1)) {
+                    this.timestamps[index] = timestamp;
+                    this.services[index] = serviceName;
+                    this.clients[index] = clientId;
+                    this.endpoints[index] = endpoint;
+                    this.checks[index] = checks;
+                    this.allowed[index] = allowed;
+                    this.remaining[index] = remaining;
+                    this.limits[index] = limit;
+                    this.rejectedBy[index] = rejectedBy;
+                    sequences.setRelease(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (sequence < position) {
+                // Ячейку круг назад ещё не прочитали
+                dropped.increment();
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Передаёт consumer не больше max опубликованных решений по порядку. Вызывается
+     * из одного потока.
+     */
+    public int drain(Consumer<Decision> consumer, int max) {
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) head & mask;
+            if (sequences.getAcquire(index) != head + 1) {
+                break;
+            }
+            Decision decision = new Decision(timestamps[index], services[index], clients[index], endpoints[index],
+                checks[index], allowed[index], remaining[index], limits[index], rejectedBy[index]);
+            services[index] = null;
+            clients[index] = null;
+            endpoints[index] = null;
+            rejectedBy[index] = null;
+            sequences.setRelease(index, head + mask + 1);
+            head++;
+            drained++;
+            consumer.accept(decision);
+        }
+        return drained;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    public record Decision(long timestamp, String serviceName, String clientId, String endpoint, int checks,
+                           int allowed, int remaining, int limit, QuotaLevel rejectedBy) {
+
+        public int denied() {
+            return checks - allowed;
+        }
+    }
+}
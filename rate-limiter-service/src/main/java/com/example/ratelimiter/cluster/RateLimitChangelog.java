@@ -0,0 +1,203 @@
+package com.example.ratelimiter.cluster;
+
+import com.example.ratelimiter.service.RateLimitService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.example.common.event.RateLimitRequestEvent;
+import org.example.common.event.RateLimitStateEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+
+/**
+ * Кластерный режим: запросы партиционированы по "serviceName:clientId", поэтому у каждого
+ * клиента ровно одна реплика-владелец — та, которой группа отдала его партицию. Владелец
+ * периодически пишет снимки изменившихся клиентов в compacted changelog, в партицию с тем же
+ * номером, что и у запроса. При отзыве партиций реплика дописывает снимки их клиентов,
+ * а новый владелец перед первыми запросами дочитывает changelog этих партиций.
+ * <p>
+ * Снимки пишутся раз в snapshot-interval, так что при падении реплики теряется не больше
+ * одного интервала. Клиенты sliding-log в changelog не попадают и после смены владельца
+ * начинают с нуля.
+ */
+@Component
+public class RateLimitChangelog {
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitChangelog.class);
+
+    public static final String REQUEST_TOPIC = "rate-limit-requests";
+
+    private final RateLimitService rateLimitService;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final ConsumerFactory<String, Object> consumerFactory;
+    private final boolean enabled;
+    private final String topic;
+    private final long restoreTimeoutMs;
+    private final Counter snapshots;
+    private final Counter restored;
+    // Клиенты, менявшиеся с последнего снимка, по ключу changelog
+    private final ConcurrentHashMap<String, DirtyClient> dirty = new ConcurrentHashMap<>();
+
+    public RateLimitChangelog(RateLimitService rateLimitService,
+                              KafkaTemplate<String, Object> kafkaTemplate,
+                              ConsumerFactory<String, Object> consumerFactory,
+                              MeterRegistry meterRegistry,
+                              @Value("${rate-limiter.cluster.enabled:false}") boolean enabled,
+                              @Value("${rate-limiter.cluster.changelog-topic:rate-limiter-changelog}") String topic,
+                              @Value("${rate-limiter.cluster.restore-timeout-ms:30000}") long restoreTimeoutMs) {
+        this.rateLimitService = rateLimitService;
+        this.kafkaTemplate = kafkaTemplate;
+        this.consumerFactory = consumerFactory;
+        this.enabled = enabled;
+        this.topic = topic;
+        this.restoreTimeoutMs = restoreTimeoutMs;
+        this.snapshots = Counter.builder("rate-limiter.changelog.snapshots")
+            .description("Client states written to the changelog topic")
+            .register(meterRegistry);
+        this.restored = Counter.builder("rate-limiter.changelog.restored")
+            .description("Client states restored from the changelog topic after a rebalance")
+            .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public static String key(String serviceName, String clientId) {
+        return serviceName + ":" + clientId;
+    }
+
+    // partitions[i] — партиция, из которой пришёл requests[i]
+    public void markDirty(List<RateLimitRequestEvent> requests, List<Integer> partitions) {
+        if (!enabled) {
+            return;
+        }
+        for (int i = 0; i < requests.size(); i++) {
+            RateLimitRequestEvent request = requests.get(i);
+            dirty.put(key(request.getServiceName(), request.getClientId()),
+                new DirtyClient(partitions.get(i), request));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${rate-limiter.cluster.snapshot-interval-ms:1000}")
+    public void snapshot() {
+        if (enabled && !dirty.isEmpty()) {
+            flush(partition -> true);
+        }
+    }
+
+    /**
+     * Вызывается в потоке консьюмера до того, как партиции уйдут другой реплике: снимки их
+     * клиентов должны попасть в changelog раньше, чем новый владелец начнёт его читать.
+     */
+    public void handOff(Collection<TopicPartition> partitions) {
+        if (!enabled) {
+            return;
+        }
+        Set<Integer> revoked = requestPartitions(partitions);
+        if (!revoked.isEmpty()) {
+            int written = flush(revoked::contains);
+            logger.info("Handed off {} client states for partitions {}", written, revoked);
+        }
+    }
+
+    /**
+     * Вызывается в потоке консьюмера при назначении партиций, до первых записей из них:
+     * дочитывает changelog тех же партиций до конца и переносит снимки в таблицу клиентов.
+     */
+    public void restore(Collection<TopicPartition> partitions) {
+        if (!enabled) {
+            return;
+        }
+        List<TopicPartition> changelogPartitions = requestPartitions(partitions).stream()
+            .map(partition -> new TopicPartition(topic, partition))
+            .toList();
+        if (changelogPartitions.isEmpty()) {
+            return;
+        }
+
+        Properties overrides = new Properties();
+        overrides.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        long deadline = System.currentTimeMillis() + restoreTimeoutMs;
+        int count = 0;
+        try (Consumer<String, Object> consumer =
+                 consumerFactory.createConsumer(null, "rate-limiter-restore", null, overrides)) {
+            consumer.assign(changelogPartitions);
+            consumer.seekToBeginning(changelogPartitions);
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(changelogPartitions);
+            while (!caughtUp(consumer, endOffsets)) {
+                if (System.currentTimeMillis() > deadline) {
+                    logger.warn("Changelog restore timed out after {} ms, partitions {}", restoreTimeoutMs,
+                        changelogPartitions);
+                    break;
+                }
+                long now = System.currentTimeMillis();
+                for (ConsumerRecord<String, Object> record : consumer.poll(Duration.ofMillis(200))) {
+                    // Tombstone или чужая запись
+                    if (record.value() instanceof RateLimitStateEvent state && rateLimitService.restore(state, now)) {
+                        count++;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // Без changelog клиенты этих партиций начнут с нуля, но проверки не остановятся
+            logger.warn("Failed to restore rate limit state for {}: {}", changelogPartitions, e.getMessage());
+        }
+        restored.increment(count);
+        logger.info("Restored {} client states for partitions {}", count, changelogPartitions);
+    }
+
+    private int flush(IntPredicate partitions) {
+        int written = 0;
+        for (Map.Entry<String, DirtyClient> entry : dirty.entrySet()) {
+            DirtyClient client = entry.getValue();
+            if (!partitions.test(client.partition()) || !dirty.remove(entry.getKey(), client)) {
+                continue;
+            }
+            RateLimitStateEvent state = rateLimitService.snapshot(client.request());
+            if (state != null) {
+                kafkaTemplate.send(topic, client.partition(), entry.getKey(), state);
+                written++;
+            }
+        }
+        kafkaTemplate.flush();
+        snapshots.increment(written);
+        return written;
+    }
+
+    private static boolean caughtUp(Consumer<String, Object> consumer, Map<TopicPartition, Long> endOffsets) {
+        for (Map.Entry<TopicPartition, Long> end : endOffsets.entrySet()) {
+            if (consumer.position(end.getKey()) < end.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<Integer> requestPartitions(Collection<TopicPartition> partitions) {
+        return partitions.stream()
+            .filter(partition -> REQUEST_TOPIC.equals(partition.topic()))
+            .map(TopicPartition::partition)
+            .collect(Collectors.toSet());
+    }
+
+    private record DirtyClient(int partition, RateLimitRequestEvent request) {
+    }
+}
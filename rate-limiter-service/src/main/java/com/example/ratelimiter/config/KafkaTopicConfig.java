@@ -0,0 +1,50 @@
+package com.example.ratelimiter.config;
+
+import com.example.ratelimiter.cluster.RateLimitChangelog;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+
+@Configuration
+public class KafkaTopicConfig {
+
+    // Партиция — единица владения клиентами: реплик с работой не больше, чем партиций
+    @Bean
+    public NewTopic rateLimitRequestsTopic(@Value("${rate-limiter.cluster.partitions:12}") int partitions) {
+        return TopicBuilder.name(RateLimitChangelog.REQUEST_TOPIC)
+            .partitions(partitions)
+            .replicas(1)
+            .build();
+    }
+
+    // Снимок клиента пишется в партицию с номером партиции его запросов, поэтому число партиций совпадает;
+    // delete по retention убирает давно неактивных клиентов, которых compaction хранил бы вечно
+    @Bean
+    @ConditionalOnProperty(name = "rate-limiter.cluster.enabled", havingValue = "true")
+    public NewTopic rateLimitChangelogTopic(@Value("${rate-limiter.cluster.changelog-topic:rate-limiter-changelog}") String topic,
+                                            @Value("${rate-limiter.cluster.partitions:12}") int partitions,
+                                            @Value("${rate-limiter.cluster.changelog-retention-ms:3600000}") long retentionMs) {
+        return TopicBuilder.name(topic)
+            .partitions(partitions)
+            .replicas(1)
+            .config("cleanup.policy", "compact,delete")
+            .config("retention.ms", String.valueOf(retentionMs))
+            .build();
+    }
+
+    // Сводки аудита нужны для разбора инцидентов, а не навсегда
+    @Bean
+    @ConditionalOnExpression("!'${rate-limiter.audit.topic:}'.isBlank()")
+    public NewTopic rateLimitAuditTopic(@Value("${rate-limiter.audit.topic}") String topic,
+                                        @Value("${rate-limiter.audit.retention-ms:86400000}") long retentionMs) {
+        return TopicBuilder.name(topic)
+            .partitions(1)
+            .replicas(1)
+            .config("retention.ms", String.valueOf(retentionMs))
+            .build();
+    }
+}
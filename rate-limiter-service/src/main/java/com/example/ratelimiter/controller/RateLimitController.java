@@ -1,10 +1,14 @@
 package com.example.ratelimiter.controller;
 
+import com.example.ratelimiter.audit.DecisionAuditor;
+import com.example.ratelimiter.audit.DecisionRing;
 import com.example.ratelimiter.service.RateLimitService;
 import org.example.common.event.RateLimitRequestEvent;
 import org.example.common.event.RateLimitResultEvent;
+import org.example.common.event.RateLimitSyncEvent;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -12,9 +16,11 @@ import java.util.Map;
 public class RateLimitController {
 
     private final RateLimitService rateLimitService;
+    private final DecisionAuditor auditor;
 
-    public RateLimitController(RateLimitService rateLimitService) {
+    public RateLimitController(RateLimitService rateLimitService, DecisionAuditor auditor) {
         this.rateLimitService = rateLimitService;
+        this.auditor = auditor;
     }
 
     @PostMapping("/check")
@@ -22,6 +28,24 @@ public class RateLimitController {
         return rateLimitService.checkRateLimit(request);
     }
 
+    @PostMapping("/check-batch")
+    public List<RateLimitResultEvent> checkRateLimits(@RequestBody List<RateLimitRequestEvent> requests) {
+        return rateLimitService.checkRateLimits(requests);
+    }
+
+    @PostMapping("/sync")
+    public List<RateLimitResultEvent> sync(@RequestBody RateLimitSyncEvent syncEvent) {
+        return syncEvent.getUsages().stream()
+            .map(rateLimitService::applyUsage)
+            .toList();
+    }
+
+    // Последние запреты, новые первыми; появляются после очередного drain аудита
+    @GetMapping("/denials")
+    public List<DecisionRing.Decision> recentDenials(@RequestParam(defaultValue = "50") int limit) {
+        return auditor.recentDenials(limit);
+    }
+
     @GetMapping("/health")
     public Map<String, String> health() {
         return Map.of("status", "UP", "service", "rate-limiter-service");
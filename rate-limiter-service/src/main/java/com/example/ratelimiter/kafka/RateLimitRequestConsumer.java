@@ -1,37 +1,68 @@
 package com.example.ratelimiter.kafka;
 
+import com.example.ratelimiter.cluster.RateLimitChangelog;
 import com.example.ratelimiter.service.RateLimitService;
+import org.apache.kafka.common.TopicPartition;
 import org.example.common.event.RateLimitRequestEvent;
 import org.example.common.event.RateLimitResultEvent;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
 @Component
-public class RateLimitRequestConsumer {
+public class RateLimitRequestConsumer implements ConsumerSeekAware {
 
     private final RateLimitService rateLimitService;
     private final RateLimitResultProducer resultProducer;
+    private final RateLimitChangelog changelog;
 
     public RateLimitRequestConsumer(RateLimitService rateLimitService,
-                                    RateLimitResultProducer resultProducer) {
+                                    RateLimitResultProducer resultProducer,
+                                    RateLimitChangelog changelog) {
         this.rateLimitService = rateLimitService;
         this.resultProducer = resultProducer;
+        this.changelog = changelog;
     }
 
-    @KafkaListener(topics = "rate-limit-requests")
-    public void handleRateLimitRequest(RateLimitRequestEvent request) {
+    // Весь poll за раз: состояние каждого клиента обновляется один раз на пачку
+    @KafkaListener(topics = RateLimitChangelog.REQUEST_TOPIC, batch = "true")
+    public void handleRateLimitRequests(List<RateLimitRequestEvent> requests,
+                                        @Header(KafkaHeaders.RECEIVED_PARTITION) List<Integer> partitions) {
 
+        List<RateLimitResultEvent> results;
         try {
-            RateLimitResultEvent result = rateLimitService.checkRateLimit(request);
-            resultProducer.sendRateLimitResult(result);
+            results = rateLimitService.checkRateLimits(requests);
+            changelog.markDirty(requests, partitions);
         } catch (Exception e) {
-            RateLimitResultEvent fallbackResult = new RateLimitResultEvent();
-            fallbackResult.setRequestId(request.getRequestId());
-            fallbackResult.setClientId(request.getClientId());
-            fallbackResult.setAllowed(true);
-            fallbackResult.setRemainingRequests(request.getLimit());
-            fallbackResult.setLimit(request.getLimit());
-            resultProducer.sendRateLimitResult(fallbackResult);
+            results = requests.stream()
+                .map(RateLimitRequestConsumer::fallbackResult)
+                .toList();
         }
+        resultProducer.sendRateLimitResults(requests, results);
+    }
+
+    // Смена владельца клиентов: новый владелец дочитывает changelog до первых запросов
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        changelog.restore(assignments.keySet());
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        changelog.handOff(partitions);
+    }
+
+    private static RateLimitResultEvent fallbackResult(RateLimitRequestEvent request) {
+        RateLimitResultEvent fallbackResult = new RateLimitResultEvent();
+        fallbackResult.setRequestId(request.getRequestId());
+        fallbackResult.setClientId(request.getClientId());
+        fallbackResult.setAllowed(true);
+        return fallbackResult;
     }
 }
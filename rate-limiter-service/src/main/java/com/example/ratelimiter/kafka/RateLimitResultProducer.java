@@ -1,9 +1,12 @@
 package com.example.ratelimiter.kafka;
 
+import org.example.common.event.RateLimitRequestEvent;
 import org.example.common.event.RateLimitResultEvent;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 @Component
 public class RateLimitResultProducer {
 
@@ -13,9 +16,30 @@ public class RateLimitResultProducer {
         this.kafkaTemplate = kafkaTemplate;
     }
 
+    private static final String DEFAULT_RESULT_TOPIC = "rate-limit-results";
+
     public void sendRateLimitResult(RateLimitResultEvent result) {
-        kafkaTemplate.send("rate-limit-results", result.getRequestId(), result)
+        sendRateLimitResult(null, result);
+    }
+
+    // Отвечаем в топик запросившей реплики шлюза, ключ — идентификатор запроса
+    public void sendRateLimitResult(String replyTopic, RateLimitResultEvent result) {
+        kafkaTemplate.send(topicFor(replyTopic), result.getRequestId(), result)
             .whenComplete((sendResult, exception) -> {
             });
     }
+
+    // Ответы на пачку уходят без ожидания каждого, одним flush: продюсер соберёт их
+    // в один запрос на партицию, не дожидаясь linger.ms
+    public void sendRateLimitResults(List<RateLimitRequestEvent> requests, List<RateLimitResultEvent> results) {
+        for (int i = 0; i < results.size(); i++) {
+            RateLimitResultEvent result = results.get(i);
+            kafkaTemplate.send(topicFor(requests.get(i).getReplyTopic()), result.getRequestId(), result);
+        }
+        kafkaTemplate.flush();
+    }
+
+    private static String topicFor(String replyTopic) {
+        return replyTopic != null && !replyTopic.isBlank() ? replyTopic : DEFAULT_RESULT_TOPIC;
+    }
 }
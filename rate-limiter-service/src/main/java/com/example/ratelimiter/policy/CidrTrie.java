@@ -0,0 +1,219 @@
+package com.example.ratelimiter.policy;
+
+import java.util.Arrays;
+
+/**
+ * Двоичный префиксный бор по битам адреса: {@link #match} возвращает значение самой длинной
+ * сети, в которую входит адрес. IPv4 и IPv6 хранятся в разных корнях; IPv4-mapped IPv6
+ * адреса (::ffff:10.0.0.1) ищутся как IPv4. Заполняется до публикации и дальше только читается.
+ */
+public final class CidrTrie<V> {
+
+    private final Node<V> ipv4 = new Node<>();
+    private final Node<V> ipv6 = new Node<>();
+    private int size;
+
+    /**
+     * Добавляет сеть вида 10.0.0.0/8 или 2001:db8::/32; адрес без длины — сеть из одного адреса.
+     */
+    public void put(String cidr, V value) {
+        int slash = cidr.indexOf('/');
+        byte[] address = parse(slash >= 0 ? cidr.substring(0, slash) : cidr);
+        if (address == null) {
+            throw new IllegalArgumentException("Invalid network address: " + cidr);
+        }
+        int bits = address.length * 8;
+        int prefix;
+        try {
+            prefix = slash >= 0 ? Integer.parseInt(cidr.substring(slash + 1).trim()) : bits;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid prefix length: " + cidr);
+        }
+        if (prefix < 0 || prefix > bits) {
+            throw new IllegalArgumentException("Invalid prefix length: " + cidr);
+        }
+
+        Node<V> node = address.length == 4 ? ipv4 : ipv6;
+        for (int i = 0; i < prefix; i++) {
+            int bit = bit(address, i);
+            if (node.children[bit] == null) {
+                node.children[bit] = new Node<>();
+            }
+            node = node.children[bit];
+        }
+        if (node.value == null) {
+            size++;
+        }
+        node.value = value;
+    }
+
+    // null, если адрес не разбирается или не входит ни в одну сеть
+    public V match(String address) {
+        byte[] bytes = address != null ? parse(address) : null;
+        if (bytes == null) {
+            return null;
+        }
+        Node<V> node = bytes.length == 4 ? ipv4 : ipv6;
+        V best = node.value;
+        for (int i = 0; i < bytes.length * 8; i++) {
+            node = node.children[bit(bytes, i)];
+            if (node == null) {
+                break;
+            }
+            if (node.value != null) {
+                best = node.value;
+            }
+        }
+        return best;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Разбирает литерал IPv4 или IPv6 без обращения к DNS: идентификатор клиента, который
+     * не похож на адрес, даёт null, а не поиск имени. IPv4-mapped IPv6 адрес возвращается
+     * четырьмя байтами IPv4.
+     */
+    static byte[] parse(String address) {
+        String literal = address.trim();
+        if (literal.startsWith("[") && literal.endsWith("]")) {
+            literal = literal.substring(1, literal.length() - 1);
+        }
+        return literal.indexOf(':') >= 0 ? parseIpv6(literal) : parseIpv4(literal);
+    }
+
+    // Восемь групп до четырёх шестнадцатеричных цифр, одно "::" вместо нулевых групп,
+    // последние две группы можно записать как IPv4. Зона (%eth0) и прочие символы — null.
+    private static byte[] parseIpv6(String literal) {
+        byte[] address = new byte[16];
+        int compressed = -1;
+        int length = 0;
+        int i = 0;
+        if (literal.startsWith("::")) {
+            compressed = 0;
+            i = 2;
+        }
+        while (i < literal.length()) {
+            if (length == 16) {
+                return null;
+            }
+            int start = i;
+            int value = 0;
+            while (i < literal.length() && i - start < 5) {
+                int digit = hexDigit(literal.charAt(i));
+                if (digit < 0) {
+                    break;
+                }
+                value = (value << 4) | digit;
+                i++;
+            }
+            if (i < literal.length() && literal.charAt(i) == '.') {
+                // IPv4 в конце адреса занимает последние четыре байта
+                byte[] ipv4 = length <= 12 ? parseIpv4(literal.substring(start)) : null;
+                if (ipv4 == null) {
+                    return null;
+                }
+                System.arraycopy(ipv4, 0, address, length, 4);
+                length += 4;
+                break;
+            }
+            if (i == start || i - start > 4) {
+                return null;
+            }
+            address[length++] = (byte) (value >>> 8);
+            address[length++] = (byte) value;
+            if (i == literal.length()) {
+                break;
+            }
+            if (literal.charAt(i) != ':') {
+                return null;
+            }
+            i++;
+            if (i < literal.length() && literal.charAt(i) == ':') {
+                if (compressed >= 0) {
+                    return null;
+                }
+                compressed = length;
+                i++;
+            } else if (i == literal.length()) {
+                // Одиночное ':' в конце
+                return null;
+            }
+        }
+
+        if (compressed >= 0) {
+            if (length == 16) {
+                return null;
+            }
+            // Группы после "::" сдвигаются в конец, между ними остаются нули
+            int tail = length - compressed;
+            System.arraycopy(address, compressed, address, 16 - tail, tail);
+            Arrays.fill(address, compressed, 16 - tail, (byte) 0);
+        } else if (length != 16) {
+            return null;
+        }
+        return isIpv4Mapped(address) ? Arrays.copyOfRange(address, 12, 16) : address;
+    }
+
+    // Только ASCII: Character.digit принял бы и цифры других алфавитов
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static boolean isIpv4Mapped(byte[] address) {
+        for (int i = 0; i < 10; i++) {
+            if (address[i] != 0) {
+                return false;
+            }
+        }
+        return address[10] == (byte) 0xff && address[11] == (byte) 0xff;
+    }
+
+    private static byte[] parseIpv4(String literal) {
+        byte[] address = new byte[4];
+        int octet = 0;
+        int value = 0;
+        int digits = 0;
+        for (int i = 0; i <= literal.length(); i++) {
+            char c = i < literal.length() ? literal.charAt(i) : '.';
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (++digits > 3 || value > 255) {
+                    return null;
+                }
+            } else if (c == '.' && digits > 0 && octet < 4) {
+                address[octet++] = (byte) value;
+                value = 0;
+                digits = 0;
+            } else {
+                return null;
+            }
+        }
+        return octet == 4 ? address : null;
+    }
+
+    private static int bit(byte[] address, int index) {
+        return (address[index >>> 3] >>> (7 - (index & 7))) & 1;
+    }
+
+    private static final class Node<V> {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private final Node<V>[] children = new Node[2];
+        private V value;
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.ratelimiter.policy;
+
+/**
+ * Лимит клиента: tier, limit запросов за windowMs и алгоритм (null — по настройкам
+ * rate-limiter.algorithm).
+ */
+public record LimitPolicy(String tier, int limit, int windowMs, String algorithm) {
+}
@@ -0,0 +1,164 @@
+package com.example.ratelimiter.policy;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.common.event.RateLimitRequestEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Выбор лимита клиента. Политики ({@link PolicyRules}) читаются из файла
+ * rate-limiter.policy.location (YAML, ключ {@code policies}) и перечитываются по таймеру,
+ * если содержимое изменилось; без файла — из свойств rate-limiter.policy.*. Новый набор
+ * собирается и проверяется целиком, затем подменяется одной записью volatile-ссылки;
+ * некорректный файл оставляет последнюю удачную версию.
+ * <p>
+ * Результат поиска кешируется по клиенту в кеше текущей версии, так что проверка после
+ * первого запроса клиента — одно обращение к хеш-таблице. Публикация новой версии
+ * начинает кеш заново.
+ */
+@Component
+public class PolicyEngine {
+    private static final Logger logger = LoggerFactory.getLogger(PolicyEngine.class);
+
+    private final ResourceLoader resourceLoader;
+    private final String location;
+    private final int cacheSize;
+    private final LimitPolicy fallback;
+    private volatile Snapshot snapshot;
+
+    public PolicyEngine(ResourceLoader resourceLoader,
+                        Environment environment,
+                        MeterRegistry meterRegistry,
+                        @Value("${rate-limiter.policy.location:}") String location,
+                        @Value("${rate-limiter.policy.cache-size:100000}") int cacheSize,
+                        @Value("${rate-limiter.default.limit:100}") int defaultLimit,
+                        @Value("${rate-limiter.default.window-ms:60000}") int defaultWindowMs) {
+        this.resourceLoader = resourceLoader;
+        this.location = location;
+        this.cacheSize = cacheSize;
+        this.fallback = new LimitPolicy("default", defaultLimit, defaultWindowMs, null);
+        this.snapshot = new Snapshot(bindProperties(environment), 0, null);
+        // Политики нужны до первой проверки, иначе все клиенты успеют получить лимит по умолчанию
+        if (!location.isBlank()) {
+            reload();
+        }
+        Gauge.builder("rate-limiter.policy.version", this, engine -> engine.snapshot.version())
+            .description("Version of the published limit policies")
+            .register(meterRegistry);
+        Gauge.builder("rate-limiter.policy.cache.size", this, engine -> engine.snapshot.cache().size())
+            .description("Clients with a cached limit policy")
+            .register(meterRegistry);
+    }
+
+    public LimitPolicy resolve(RateLimitRequestEvent request) {
+        return resolve(request.getClientId(), request.getClientIp(), request.getTier());
+    }
+
+    public LimitPolicy resolve(String clientId, String clientIp, String tier) {
+        Snapshot current = snapshot;
+        ClientKey key = new ClientKey(clientId, clientIp, tier);
+        LimitPolicy policy = current.cache().get(key);
+        if (policy == null) {
+            policy = current.rules().resolve(clientId, clientIp, tier);
+            // Кеш ограничен: при переполнении начинаем заново, поиск по правилам всё равно дешёвый
+            if (current.cache().size() >= cacheSize) {
+                current.cache().clear();
+            }
+            current.cache().put(key, policy);
+        }
+        return policy;
+    }
+
+    public long version() {
+        return snapshot.version();
+    }
+
+    public PolicyRules rules() {
+        return snapshot.rules();
+    }
+
+    /**
+     * Перечитывает файл политик.
+     *
+     * @return {@code true}, если опубликована новая версия политик
+     */
+    @Scheduled(fixedDelayString = "${rate-limiter.policy.refresh-interval-ms:5000}")
+    public synchronized boolean reload() {
+        if (location.isBlank()) {
+            return false;
+        }
+        Resource resource = resourceLoader.getResource(location);
+        if (!resource.exists()) {
+            logger.warn("Policy file {} not found, keeping version {}", location, snapshot.version());
+            return false;
+        }
+        try {
+            byte[] content;
+            try (InputStream inputStream = resource.getInputStream()) {
+                content = inputStream.readAllBytes();
+            }
+            String checksum = DigestUtils.md5DigestAsHex(content);
+            if (checksum.equals(snapshot.checksum())) {
+                return false;
+            }
+            publish(parse(resource), checksum, location);
+            return true;
+        } catch (Exception e) {
+            logger.error("Failed to load limit policies from {}, keeping version {}: {}",
+                location, snapshot.version(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void publish(PolicyRules rules, String checksum, String source) {
+        Snapshot next = new Snapshot(rules, snapshot.version() + 1, checksum);
+        snapshot = next;
+        logger.info("Limit policies version {} published from {}: {} tiers, {} api keys, {} networks, default {}",
+            next.version(), source, rules.tierCount(), rules.apiKeyCount(), rules.networkCount(),
+            rules.defaultPolicy().tier());
+    }
+
+    private PolicyRules parse(Resource resource) throws IOException {
+        List<PropertySource<?>> sources = new YamlPropertySourceLoader().load(location, resource);
+        PolicyRules.Definition definition = new Binder(ConfigurationPropertySources.from(sources))
+            .bind("policies", PolicyRules.Definition.class)
+            .orElseThrow(() -> new IllegalArgumentException("no policies defined"));
+        return PolicyRules.compile(definition, fallback);
+    }
+
+    private PolicyRules bindProperties(Environment environment) {
+        return Binder.get(environment)
+            .bind("rate-limiter.policy", PolicyRules.Definition.class)
+            .map(definition -> PolicyRules.compile(definition, fallback))
+            .orElseGet(() -> PolicyRules.of(fallback));
+    }
+
+    private record ClientKey(String clientId, String clientIp, String tier) {
+    }
+
+    // Кеш принадлежит версии: новая версия публикуется вместе с пустым кешем
+    private record Snapshot(PolicyRules rules, long version, String checksum,
+                            ConcurrentHashMap<ClientKey, LimitPolicy> cache) {
+
+        Snapshot(PolicyRules rules, long version, String checksum) {
+            this(rules, version, checksum, new ConcurrentHashMap<>());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.ratelimiter.policy;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Разобранный и проверенный набор политик, неизменяемый после сборки:
+ * <pre>
+ * policies:
+ *   default-tier: free
+ *   tiers:
+ *     free: {limit: 100, window-ms: 60000}
+ *     premium: {limit: 1000, window-ms: 60000, algorithm: token-bucket}
+ *   api-keys:                    # X-Client-ID -> tier
+ *     "[partner-key]": premium
+ *   header-tiers:                # значение доверенного заголовка tier -> tier
+ *     gold: premium
+ *   networks:                    # самая длинная подходящая сеть
+ *     - {cidr: 10.0.0.0/8, tier: premium}
+ * </pre>
+ * Клиент ищется по API-ключу, затем по заголовку, затем по адресу соединения; иначе default-tier.
+ * window-ms по умолчанию — окно лимитера, algorithm — по настройкам rate-limiter.algorithm.
+ */
+public final class PolicyRules {
+
+    public record Tier(int limit, int windowMs, String algorithm) {
+    }
+
+    public record Network(String cidr, String tier) {
+    }
+
+    public record Definition(String defaultTier, Map<String, Tier> tiers, Map<String, String> apiKeys,
+                             Map<String, String> headerTiers, List<Network> networks) {
+    }
+
+    private final LimitPolicy defaultPolicy;
+    private final Map<String, LimitPolicy> apiKeys = new HashMap<>();
+    private final Map<String, LimitPolicy> headerTiers = new HashMap<>();
+    private final CidrTrie<LimitPolicy> networks = new CidrTrie<>();
+    private final int tierCount;
+
+    private PolicyRules(LimitPolicy defaultPolicy, int tierCount) {
+        this.defaultPolicy = defaultPolicy;
+        this.tierCount = tierCount;
+    }
+
+    /**
+     * Собирает политики из описания. Ссылка на несуществующий tier, неверный лимит или сеть —
+     * IllegalArgumentException: такой набор не публикуется целиком.
+     *
+     * @param fallback политика для клиентов без tier, если default-tier не задан
+     */
+    public static PolicyRules compile(Definition definition, LimitPolicy fallback) {
+        Map<String, Tier> definedTiers = definition.tiers() != null ? definition.tiers() : Map.of();
+        Map<String, LimitPolicy> tiers = new HashMap<>();
+        definedTiers.forEach((name, tier) -> {
+            if (tier == null || tier.limit() <= 0) {
+                throw new IllegalArgumentException("Tier " + name + " has invalid limit");
+            }
+            tiers.put(name, new LimitPolicy(name, tier.limit(),
+                tier.windowMs() > 0 ? tier.windowMs() : fallback.windowMs(), tier.algorithm()));
+        });
+
+        String defaultTier = definition.defaultTier();
+        PolicyRules rules = new PolicyRules(
+            defaultTier != null && !defaultTier.isBlank() ? tier(tiers, defaultTier, "default-tier") : fallback,
+            tiers.size());
+        if (definition.apiKeys() != null) {
+            definition.apiKeys().forEach((key, tier) ->
+                rules.apiKeys.put(key, tier(tiers, tier, "api key " + key)));
+        }
+        if (definition.headerTiers() != null) {
+            definition.headerTiers().forEach((value, tier) ->
+                rules.headerTiers.put(value, tier(tiers, tier, "header tier " + value)));
+        }
+        if (definition.networks() != null) {
+            for (Network network : definition.networks()) {
+                if (network == null || network.cidr() == null) {
+                    throw new IllegalArgumentException("Network without cidr");
+                }
+                rules.networks.put(network.cidr(), tier(tiers, network.tier(), "network " + network.cidr()));
+            }
+        }
+        return rules;
+    }
+
+    public static PolicyRules of(LimitPolicy defaultPolicy) {
+        return new PolicyRules(defaultPolicy, 0);
+    }
+
+    public LimitPolicy resolve(String clientId, String clientIp, String tier) {
+        LimitPolicy policy = clientId != null ? apiKeys.get(clientId) : null;
+        if (policy == null && tier != null) {
+            policy = headerTiers.get(tier);
+        }
+        if (policy == null && clientIp != null && !networks.isEmpty()) {
+            // Только настоящий адрес клиента: clientId приходит из заголовка и может быть любым
+            policy = networks.match(clientIp);
+        }
+        return policy != null ? policy : defaultPolicy;
+    }
+
+    public LimitPolicy defaultPolicy() {
+        return defaultPolicy;
+    }
+
+    public int tierCount() {
+        return tierCount;
+    }
+
+    public int apiKeyCount() {
+        return apiKeys.size();
+    }
+
+    public int networkCount() {
+        return networks.size();
+    }
+
+    private static LimitPolicy tier(Map<String, LimitPolicy> tiers, String name, String owner) {
+        LimitPolicy policy = name != null ? tiers.get(name) : null;
+        if (policy == null) {
+            throw new IllegalArgumentException("Unknown tier " + name + " for " + owner);
+        }
+        return policy;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.ratelimiter.quota;
+
+/**
+ * Уровни квот в порядке проверки: от узкого к широкому, чтобы запросы, упёршиеся в лимит
+ * клиента, не трогали общие ведра сервиса и всего лимитера.
+ */
+public enum QuotaLevel {
+    CLIENT("client"),
+    ENDPOINT("endpoint"),
+    SERVICE("service"),
+    GLOBAL("global");
+
+    private final String id;
+
+    QuotaLevel(String id) {
+        this.id = id;
+    }
+
+    public String id() {
+        return id;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.ratelimiter.quota;
+
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Квоты поверх лимита клиента:
+ * <pre>
+ * rate-limiter.quota.global.limit=50000                  # на весь лимитер
+ * rate-limiter.quota.services.user-service.limit=5000    # на сервис, все клиенты вместе
+ * rate-limiter.quota.endpoints[0].service=user-service   # на клиента для эндпоинта
+ * rate-limiter.quota.endpoints[0].path=/api/users/search
+ * rate-limiter.quota.endpoints[0].limit=10
+ * </pre>
+ * У каждой квоты есть window-ms (по умолчанию окно лимитера) и algorithm (по умолчанию
+ * sliding-window). Эндпоинт запроса сопоставляется с path по самому длинному префиксу.
+ */
+public final class QuotaRules {
+
+    public record Quota(int limit, int windowMs, String algorithm) {
+    }
+
+    public record EndpointQuota(String service, String path, int limit, int windowMs, String algorithm) {
+
+        public Quota quota() {
+            return new Quota(limit, windowMs, algorithm);
+        }
+    }
+
+    private final Quota global;
+    private final Map<String, Quota> services;
+    // Квоты эндпоинтов сервиса, длинные префиксы первыми
+    private final Map<String, List<EndpointQuota>> endpoints;
+
+    QuotaRules(Quota global, Map<String, Quota> services, List<EndpointQuota> endpoints) {
+        this.global = global != null && global.limit() > 0 ? global : null;
+        this.services = services;
+        this.endpoints = new HashMap<>();
+        for (EndpointQuota endpoint : endpoints) {
+            if (endpoint.limit() > 0 && endpoint.service() != null && endpoint.path() != null) {
+                this.endpoints.computeIfAbsent(endpoint.service(), service -> new ArrayList<>()).add(endpoint);
+            }
+        }
+        this.endpoints.values().forEach(list ->
+            list.sort(Comparator.comparingInt((EndpointQuota endpoint) -> endpoint.path().length()).reversed()));
+    }
+
+    public static QuotaRules bind(Environment environment) {
+        Binder binder = Binder.get(environment);
+        return new QuotaRules(
+            binder.bind("rate-limiter.quota.global", Quota.class).orElse(null),
+            binder.bind("rate-limiter.quota.services", Bindable.mapOf(String.class, Quota.class)).orElse(Map.of()),
+            binder.bind("rate-limiter.quota.endpoints", Bindable.listOf(EndpointQuota.class)).orElse(List.of()));
+    }
+
+    public boolean isEmpty() {
+        return global == null && services.isEmpty() && endpoints.isEmpty();
+    }
+
+    public Quota global() {
+        return global;
+    }
+
+    public Quota service(String serviceName) {
+        Quota quota = serviceName != null ? services.get(serviceName) : null;
+        return quota != null && quota.limit() > 0 ? quota : null;
+    }
+
+    public EndpointQuota endpoint(String serviceName, String endpoint) {
+        List<EndpointQuota> quotas = serviceName != null && endpoint != null ? endpoints.get(serviceName) : null;
+        if (quotas == null) {
+            return null;
+        }
+        for (EndpointQuota quota : quotas) {
+            if (endpoint.startsWith(quota.path())) {
+                return quota;
+            }
+        }
+        return null;
+    }
+}
@@ -1,38 +1,503 @@
 package com.example.ratelimiter.service;
 
+import com.example.ratelimiter.algorithm.PackedAlgorithm;
+import com.example.ratelimiter.algorithm.RateLimitAlgorithm;
+import com.example.ratelimiter.algorithm.RateLimiter;
+import com.example.ratelimiter.audit.DecisionAuditor;
+import com.example.ratelimiter.policy.LimitPolicy;
+import com.example.ratelimiter.policy.PolicyEngine;
+import com.example.ratelimiter.quota.QuotaLevel;
+import com.example.ratelimiter.quota.QuotaRules;
+import com.example.ratelimiter.store.ClientTable;
+import com.example.ratelimiter.store.ClientTableStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.example.common.event.RateLimitRequestEvent;
 import org.example.common.event.RateLimitResultEvent;
+import org.example.common.event.RateLimitStateEvent;
+import org.example.common.event.RateLimitUsage;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
-public class RateLimitService {
+public class RateLimitService implements DisposableBean {
 
-    private final ConcurrentHashMap<String, ClientRateLimit> clients = new ConcurrentHashMap<>();
+    // Ключи ведер сервиса, эндпоинта и всего лимитера; \0 не встречается в именах клиентов и сервисов
+    private static final String SERVICE_KEY = "\0service";
+    private static final String ENDPOINT_KEY = "\0endpoint\0";
+    private static final long GLOBAL_FINGERPRINT = ClientTable.fingerprint("\0global", null);
 
-    @Value("${rate-limiter.default.limit:100}")
-    private int defaultLimit;
+    // Клиенты с алгоритмами на одном long живут в компактной таблице,
+    // в map остаются только клиенты sliding-log с небольшими лимитами
+    private final ClientTable clientTable;
+    private final ConcurrentHashMap<String, ClientRateLimit> clients = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Policy, PolicyAlgorithm> policies = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, RateLimitAlgorithm> serviceAlgorithms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<QuotaRules.Quota, PolicyAlgorithm> quotaPolicies = new ConcurrentHashMap<>();
+    private final QuotaRules quotaRules;
+    private final PolicyEngine policyEngine;
+    private final DecisionAuditor auditor;
+    private final Map<String, String> clientAlgorithms;
+    private final Environment environment;
+    private final Counter expiredClients;
+    private final long idleTtlMs;
+    private final long sweepIntervalMs;
+    private final int sweepBatch;
+    private final long maxEntries;
+    // Клиенту не нашлось слота: пропускать уровень (true) или отказывать
+    private final boolean overflowFailOpen;
+    // null, если сохранение состояния на диск выключено
+    private final ClientTableStore store;
+    // Курсор инкрементальной очистки map клиентов sliding-log, только для потока очистки
+    private Iterator<Map.Entry<String, ClientRateLimit>> slidingLogSweep = Collections.emptyIterator();
 
     @Value("${rate-limiter.default.window-ms:60000}")
     private int defaultWindowMs;
 
+    @Value("${rate-limiter.algorithm:sliding-window}")
+    private String defaultAlgorithm;
+
+    // Журнал хранит по отметке на каждый запрос окна, для больших лимитов берём sliding-window
+    @Value("${rate-limiter.sliding-log.max-limit:100}")
+    private int slidingLogMaxLimit;
+
+    public RateLimitService(Environment environment,
+                            MeterRegistry meterRegistry,
+                            PolicyEngine policyEngine,
+                            DecisionAuditor auditor,
+                            @Value("${rate-limiter.clients.capacity:1048576}") int clientCapacity,
+                            @Value("${rate-limiter.clients.max-entries:0}") long maxEntries,
+                            @Value("${rate-limiter.clients.idle-ttl-ms:600000}") long idleTtlMs,
+                            @Value("${rate-limiter.clients.sweep-interval-ms:100}") long sweepIntervalMs,
+                            @Value("${rate-limiter.clients.sweep-batch:4096}") int sweepBatch,
+                            @Value("${rate-limiter.clients.evict-idle-ms:120000}") long evictIdleMs,
+                            @Value("${rate-limiter.clients.overflow-fail-open:true}") boolean overflowFailOpen,
+                            @Value("${rate-limiter.persistence.enabled:false}") boolean persistenceEnabled,
+                            @Value("${rate-limiter.persistence.dir:data/rate-limiter}") String persistenceDir) {
+        this.environment = environment;
+        this.policyEngine = policyEngine;
+        this.auditor = auditor;
+        this.clientTable = new ClientTable(clientCapacity, evictIdleMs);
+        this.overflowFailOpen = overflowFailOpen;
+        this.maxEntries = maxEntries > 0 ? maxEntries : clientTable.capacity() * 3L / 4;
+        this.idleTtlMs = idleTtlMs;
+        this.sweepIntervalMs = sweepIntervalMs;
+        this.sweepBatch = sweepBatch;
+        this.expiredClients = Counter.builder("rate-limiter.clients.expired")
+            .description("Idle clients removed by the incremental sweep")
+            .register(meterRegistry);
+        this.clientAlgorithms = Binder.get(environment)
+            .bind("rate-limiter.algorithm.clients", Bindable.mapOf(String.class, String.class))
+            .orElse(Map.of());
+        this.quotaRules = QuotaRules.bind(environment);
+        this.store = persistenceEnabled ? openStore(Path.of(persistenceDir)) : null;
+        registerMetrics(meterRegistry);
+    }
+
+    // Клиенты восстанавливаются до первой проверки, иначе после рестарта все получили бы полную квоту
+    private ClientTableStore openStore(Path directory) {
+        long start = System.nanoTime();
+        try {
+            ClientTableStore opened = new ClientTableStore(directory, clientTable);
+            long recovered = opened.recover();
+            System.out.println("💾 Restored " + recovered + " clients from " + directory + " in " +
+                (System.nanoTime() - start) / 1_000_000 + " ms");
+            return opened;
+        } catch (IOException e) {
+            System.out.println("⚠️ Rate limit state is not persisted, " + directory + ": " + e.getMessage());
+            return null;
+        }
+    }
+
     public RateLimitResultEvent checkRateLimit(RateLimitRequestEvent request) {
-        String clientKey = generateClientKey(request.getClientId(), request.getServiceName());
+        String clientId = request.getClientId();
+        String serviceName = request.getServiceName();
 
-        int limit = request.getLimit() > 0 ? request.getLimit() : defaultLimit;
-        int windowMs = request.getWindowMs() > 0 ? request.getWindowMs() : defaultWindowMs;
+        LimitPolicy policy = policyEngine.resolve(request);
+        int limit = policy.limit();
+        int windowMs = policy.windowMs();
+        RateLimitAlgorithm algorithm = resolveAlgorithm(policy, request.getAlgorithm(), clientId, serviceName);
+        QuotaRules.EndpointQuota endpointQuota = quotaRules.endpoint(serviceName, request.getEndpoint());
 
-        ClientRateLimit clientLimit = clients.computeIfAbsent(clientKey,
-            k -> new ClientRateLimit(limit, windowMs));
+        long now = System.currentTimeMillis();
+        Grant grant = acquire(serviceName, clientId, endpointQuota, algorithm, limit, windowMs, 1, now);
+        boolean allowed = grant.granted() == 1;
+        auditor.record(now, serviceName, clientId, request.getEndpoint(), 1, grant.granted(), grant.remaining(),
+            limit, grant.rejectedBy(0));
+        return result(request, allowed, grant.remaining(), limit, grant.resetTime(), grant.rejectedBy(0));
+    }
+
+    /**
+     * Проверка пачки запросов. Запросы одного клиента с одинаковым лимитом и квотой эндпоинта
+     * группируются, и каждое ведро меняется один раз на группу: разрешение получают первые
+     * по порядку запросы группы, пока хватает всех уровней. Результаты возвращаются в порядке запросов.
+     */
+    public List<RateLimitResultEvent> checkRateLimits(List<RateLimitRequestEvent> requests) {
+        Map<BatchKey, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            RateLimitRequestEvent request = requests.get(i);
+            LimitPolicy policy = policyEngine.resolve(request);
+            int limit = policy.limit();
+            int windowMs = policy.windowMs();
+            RateLimitAlgorithm algorithm = resolveAlgorithm(policy, request.getAlgorithm(),
+                request.getClientId(), request.getServiceName());
+            QuotaRules.EndpointQuota endpointQuota = quotaRules.endpoint(request.getServiceName(), request.getEndpoint());
+            groups.computeIfAbsent(
+                new BatchKey(request.getServiceName(), request.getClientId(), endpointQuota, algorithm, limit, windowMs),
+                key -> new ArrayList<>(1)).add(i);
+        }
+
+        long now = System.currentTimeMillis();
+        RateLimitResultEvent[] results = new RateLimitResultEvent[requests.size()];
+        for (Map.Entry<BatchKey, List<Integer>> group : groups.entrySet()) {
+            BatchKey key = group.getKey();
+            List<Integer> indices = group.getValue();
+            Grant grant = acquire(key.serviceName(), key.clientId(), key.endpointQuota(), key.algorithm(), key.limit(),
+                key.windowMs(), indices.size(), now);
+            for (int n = 0; n < indices.size(); n++) {
+                boolean allowed = n < grant.granted();
+                // Остаток, который увидел бы запрос при проверке по одному
+                int remaining = allowed ? grant.remaining() + grant.granted() - n - 1 : grant.remaining();
+                int index = indices.get(n);
+                results[index] = result(requests.get(index), allowed, remaining, key.limit(), grant.resetTime(),
+                    grant.rejectedBy(n));
+            }
+            // Одна запись на группу; эндпоинт — первого запроса группы
+            auditor.record(now, key.serviceName(), key.clientId(), requests.get(indices.get(0)).getEndpoint(),
+                indices.size(), grant.granted(), grant.remaining(), key.limit(),
+                grant.granted() < indices.size() ? grant.rejectedBy(grant.granted()) : null);
+        }
+
+        return Arrays.asList(results);
+    }
 
-        boolean allowed = clientLimit.allowRequest();
-        int remaining = clientLimit.getRemainingRequests();
-        long resetTime = clientLimit.getResetTime();
+    public RateLimitResultEvent applyUsage(RateLimitUsage usage) {
+        String clientId = usage.getClientId();
+        String serviceName = usage.getServiceName();
+
+        // Лимит локального ведра шлюза — только его приближение, учитываем по политике клиента
+        LimitPolicy policy = policyEngine.resolve(clientId, usage.getClientIp(), usage.getTier());
+        int limit = policy.limit();
+        int windowMs = policy.windowMs();
+        RateLimitAlgorithm algorithm = resolveAlgorithm(policy, null, clientId, serviceName);
+
+        long now = System.currentTimeMillis();
+        // Эндпоинт в синхронизации не передаётся: учитываем клиента, сервис и весь лимитер
+        List<Bucket> buckets = buckets(serviceName, clientId, null, algorithm, limit, windowMs, now);
+        for (Bucket bucket : buckets) {
+            if (bucket.slot() != ClientTable.NO_SLOT) {
+                clientTable.record(bucket.slot(), bucket.algorithm(), usage.getConsumed(), now);
+            }
+        }
+        int remaining;
+        long resetTime;
+        if (algorithm.isPacked()) {
+            Bucket client = !buckets.isEmpty() && buckets.get(0).level() == QuotaLevel.CLIENT ? buckets.get(0) : null;
+            if (client == null || client.slot() == ClientTable.NO_SLOT) {
+                // Клиенту нет места в таблице: остаток по rate-limiter.clients.overflow-fail-open
+                remaining = client == null ? limit : 0;
+                resetTime = now + windowMs;
+            } else {
+                long state = clientTable.state(client.slot());
+                remaining = client.algorithm().remaining(state, now);
+                resetTime = client.algorithm().resetTime(state, now);
+            }
+        } else {
+            ClientRateLimit clientLimit = clientLimit(clientId, serviceName, algorithm, limit, windowMs, now);
+            clientLimit.recordRequests(usage.getConsumed(), now);
+            remaining = clientLimit.getRemainingRequests(now);
+            resetTime = clientLimit.getResetTime(now);
+        }
 
+        RateLimitResultEvent result = new RateLimitResultEvent();
+        result.setClientId(clientId);
+        result.setServiceName(serviceName);
+        result.setAllowed(remaining > 0);
+        result.setRemainingRequests(remaining);
+        result.setLimit(limit);
+        result.setWindowMs(windowMs);
+        result.setResetTime(resetTime);
+        return result;
+    }
+
+    /**
+     * Снимок состояния клиента, которого проверял request, для changelog. null для sliding-log
+     * (журнал в одно событие не помещается) и для клиента, которого уже нет в таблице.
+     */
+    public RateLimitStateEvent snapshot(RateLimitRequestEvent request) {
+        String clientId = request.getClientId();
+        String serviceName = request.getServiceName();
+        LimitPolicy limitPolicy = policyEngine.resolve(request);
+        int limit = limitPolicy.limit();
+        int windowMs = limitPolicy.windowMs();
+        RateLimitAlgorithm algorithm = resolveAlgorithm(limitPolicy, request.getAlgorithm(), clientId, serviceName);
+        if (!algorithm.isPacked()) {
+            return null;
+        }
+
+        PolicyAlgorithm policy = policy(algorithm, limit, windowMs);
+        int slot = clientTable.find(ClientTable.fingerprint(serviceName, clientId), policy.config());
+        if (slot < 0) {
+            return null;
+        }
+        return new RateLimitStateEvent(serviceName, clientId, algorithm.id(), limit, windowMs,
+            clientTable.state(slot), clientTable.accessedAt(slot));
+    }
+
+    /**
+     * Восстанавливает состояние клиента из changelog. Снимки старше двух окон пропускаются:
+     * за это время любой алгоритм возвращается к начальному состоянию.
+     */
+    public boolean restore(RateLimitStateEvent snapshot, long now) {
+        RateLimitAlgorithm algorithm = RateLimitAlgorithm.fromId(snapshot.getAlgorithm());
+        if (!algorithm.isPacked() || now - snapshot.getUpdatedAt() > 2L * snapshot.getWindowMs()) {
+            return false;
+        }
+        PolicyAlgorithm policy = policy(algorithm, snapshot.getLimit(), snapshot.getWindowMs());
+        return clientTable.restore(ClientTable.fingerprint(snapshot.getServiceName(), snapshot.getClientId()),
+            policy.config(), snapshot.getState(), snapshot.getUpdatedAt());
+    }
+
+    /**
+     * Инкрементальная очистка: за тик проходим не больше sweep-batch клиентов, поэтому пауза
+     * не растёт с числом клиентов, а простаивающий клиент уходит примерно через idle-ttl плюс
+     * один оборот стрелки. Пока клиентов больше max-entries, за тик проходится вдвое больше
+     * слотов и вытесняются все, к кому не обращались с прошлого прохода стрелки (CLOCK-подобное
+     * приближение LRU).
+     */
+    @Scheduled(fixedDelayString = "${rate-limiter.clients.sweep-interval-ms:100}")
+    public void expireIdleClients() {
+        long now = System.currentTimeMillis();
+        long idleBefore = now - idleTtlMs;
+
+        int budget = sweepBatch;
+        long tableIdleBefore = idleBefore;
+        if (clientTable.size() > maxEntries) {
+            budget *= 2;
+            tableIdleBefore = Math.max(idleBefore, now - lapMs(clientTable.capacity(), budget));
+        }
+        int removed = clientTable.sweep(budget, tableIdleBefore);
+
+        long mapIdleBefore = clients.size() > maxEntries
+            ? Math.max(idleBefore, now - lapMs(clients.size(), sweepBatch))
+            : idleBefore;
+        removed += sweepSlidingLogClients(mapIdleBefore);
+
+        if (removed > 0) {
+            expiredClients.increment(removed);
+        }
+    }
+
+    /**
+     * Журнал изменений между снимками: страницы таблицы, изменившиеся за интервал,
+     * дописываются в WAL. Клиенты sliding-log на диск не сохраняются.
+     */
+    @Scheduled(fixedDelayString = "${rate-limiter.persistence.wal-interval-ms:1000}")
+    public void logStateChanges() {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.logChanges();
+        } catch (IOException e) {
+            System.out.println("⚠️ Failed to write rate limit WAL: " + e.getMessage());
+        }
+    }
+
+    // Снимок обновляется только страницами из WAL, поэтому его стоимость не зависит от числа клиентов
+    @Scheduled(fixedDelayString = "${rate-limiter.persistence.snapshot-interval-ms:10000}")
+    public void snapshotState() {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.checkpoint();
+        } catch (IOException e) {
+            System.out.println("⚠️ Failed to write rate limit snapshot: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (store != null) {
+            store.logChanges();
+            store.checkpoint();
+            store.close();
+        }
+    }
+
+    private int sweepSlidingLogClients(long idleBefore) {
+        int removed = 0;
+        boolean restarted = false;
+        for (int i = 0; i < sweepBatch; i++) {
+            if (!slidingLogSweep.hasNext()) {
+                if (restarted) {
+                    break;
+                }
+                slidingLogSweep = clients.entrySet().iterator();
+                restarted = true;
+                if (!slidingLogSweep.hasNext()) {
+                    break;
+                }
+            }
+            if (slidingLogSweep.next().getValue().getLastAccessTime() < idleBefore) {
+                slidingLogSweep.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    // Время полного оборота стрелки по entries записям при budget записях за тик
+    private long lapMs(long entries, int budget) {
+        return (entries + budget - 1) / budget * sweepIntervalMs;
+    }
+
+    /**
+     * Берёт permits по очереди из ведер клиента, клиента на эндпоинте, сервиса и всего лимитера:
+     * каждый уровень пропускает не больше, чем пропустил предыдущий, а излишек, взятый уровнями
+     * до отказавшего, возвращается release. Каждое ведро меняется своим CAS, блокировок нет;
+     * пока идёт откат, конкурентная проверка может увидеть чуть меньший остаток общего ведра.
+     * Журнал sliding-log откатить нельзя, поэтому такой клиент проверяется последним.
+     */
+    private Grant acquire(String serviceName, String clientId, QuotaRules.EndpointQuota endpointQuota,
+                          RateLimitAlgorithm algorithm, int limit, int windowMs, int permits, long now) {
+        List<Bucket> buckets = buckets(serviceName, clientId, endpointQuota, algorithm, limit, windowMs, now);
+        ClientRateLimit slidingLog = algorithm.isPacked()
+            ? null
+            : clientLimit(clientId, serviceName, algorithm, limit, windowMs, now);
+
+        int levels = buckets.size() + (slidingLog != null ? 1 : 0);
+        QuotaLevel[] checkedLevels = new QuotaLevel[levels];
+        int[] grants = new int[levels];
+        int checked = 0;
+        int granted = permits;
+        for (Bucket bucket : buckets) {
+            granted = bucket.slot() != ClientTable.NO_SLOT
+                ? clientTable.tryAcquire(bucket.slot(), bucket.algorithm(), granted, now)
+                : 0;
+            checkedLevels[checked] = bucket.level();
+            grants[checked++] = granted;
+            if (granted == 0) {
+                break;
+            }
+        }
+        if (slidingLog != null && granted > 0) {
+            granted = slidingLog.allowRequests(granted, now);
+            checkedLevels[checked] = QuotaLevel.CLIENT;
+            grants[checked++] = granted;
+        }
+
+        // Сброс — по уровню, урезавшему пропуск до итогового, а если урезания нет — по клиенту
+        int deciding = 0;
+        if (granted < permits) {
+            while (grants[deciding] != granted) {
+                deciding++;
+            }
+        } else if (slidingLog != null) {
+            deciding = checked - 1;
+        }
+
+        int remaining = Integer.MAX_VALUE;
+        long resetTime = 0;
+        for (int i = 0; i < Math.min(checked, buckets.size()); i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket.slot() == ClientTable.NO_SLOT) {
+                remaining = 0;
+                if (i == deciding) {
+                    resetTime = now + bucket.algorithm().windowMs();
+                }
+                continue;
+            }
+            if (grants[i] > granted) {
+                clientTable.release(bucket.slot(), bucket.algorithm(), grants[i] - granted, now);
+            }
+            long state = clientTable.state(bucket.slot());
+            remaining = Math.min(remaining, bucket.algorithm().remaining(state, now));
+            if (i == deciding) {
+                resetTime = bucket.algorithm().resetTime(state, now);
+            }
+        }
+        if (slidingLog != null) {
+            remaining = Math.min(remaining, slidingLog.getRemainingRequests(now));
+            if (deciding >= buckets.size()) {
+                resetTime = slidingLog.getResetTime(now);
+            }
+        }
+        if (checked == 0) {
+            // Ни одного ведра: клиенту не нашлось слота при fail-open, остаток — по его политике
+            remaining = limit;
+            resetTime = now + windowMs;
+        }
+        return new Grant(granted, remaining, resetTime, checkedLevels, grants, checked);
+    }
+
+    // Ведра с одним long в порядке проверки: клиент (кроме sliding-log), эндпоинт, сервис, весь лимитер
+    private List<Bucket> buckets(String serviceName, String clientId, QuotaRules.EndpointQuota endpointQuota,
+                                 RateLimitAlgorithm algorithm, int limit, int windowMs, long now) {
+        List<Bucket> buckets = new ArrayList<>(4);
+        if (algorithm.isPacked()) {
+            PolicyAlgorithm policy = policy(algorithm, limit, windowMs);
+            add(buckets, new Bucket(QuotaLevel.CLIENT, policy.algorithm(),
+                clientTable.slotFor(ClientTable.fingerprint(serviceName, clientId), policy.config(), now)));
+        }
+        if (endpointQuota != null) {
+            add(buckets, bucket(QuotaLevel.ENDPOINT, endpointQuota.quota(),
+                ClientTable.fingerprint(serviceName, clientId + ENDPOINT_KEY + endpointQuota.path()), now));
+        }
+        QuotaRules.Quota serviceQuota = quotaRules.service(serviceName);
+        if (serviceQuota != null) {
+            add(buckets, bucket(QuotaLevel.SERVICE, serviceQuota, ClientTable.fingerprint(serviceName, SERVICE_KEY), now));
+        }
+        QuotaRules.Quota globalQuota = quotaRules.global();
+        if (globalQuota != null) {
+            add(buckets, bucket(QuotaLevel.GLOBAL, globalQuota, GLOBAL_FINGERPRINT, now));
+        }
+        return buckets;
+    }
+
+    // Ведро без слота (окно поиска занято активными клиентами) при fail-open не проверяется,
+    // иначе остаётся в списке и отказывает всем запросам
+    private void add(List<Bucket> buckets, Bucket bucket) {
+        if (bucket.slot() != ClientTable.NO_SLOT || !overflowFailOpen) {
+            buckets.add(bucket);
+        }
+    }
+
+    private Bucket bucket(QuotaLevel level, QuotaRules.Quota quota, long fingerprint, long now) {
+        PolicyAlgorithm policy = quotaPolicies.computeIfAbsent(quota, key -> {
+            RateLimitAlgorithm algorithm = key.algorithm() != null
+                ? RateLimitAlgorithm.fromId(key.algorithm())
+                : RateLimitAlgorithm.SLIDING_WINDOW;
+            // Журнал на весь сервис держать не будем
+            if (!algorithm.isPacked()) {
+                algorithm = RateLimitAlgorithm.SLIDING_WINDOW;
+            }
+            return policy(algorithm, key.limit(), key.windowMs() > 0 ? key.windowMs() : defaultWindowMs);
+        });
+        return new Bucket(level, policy.algorithm(), clientTable.slotFor(fingerprint, policy.config(), now));
+    }
+
+    private static RateLimitResultEvent result(RateLimitRequestEvent request, boolean allowed, int remaining,
+                                               int limit, long resetTime, QuotaLevel rejectedBy) {
         RateLimitResultEvent result = new RateLimitResultEvent();
         result.setRequestId(request.getRequestId());
         result.setClientId(request.getClientId());
@@ -42,70 +507,151 @@ public class RateLimitService {
         result.setRemainingRequests(remaining);
         result.setLimit(limit);
         result.setResetTime(resetTime);
+        result.setRejectedBy(rejectedBy != null ? rejectedBy.id() : null);
+        return result;
+    }
 
-        System.out.println("🔒 Rate limit check: " + clientKey +
-            " - Allowed: " + allowed +
-            " - Remaining: " + remaining + "/" + limit);
+    private String generateClientKey(String clientId, String serviceName) {
+        return serviceName + ":" + clientId;
+    }
 
-        return result;
+    private void registerMetrics(MeterRegistry meterRegistry) {
+        Gauge.builder("rate-limiter.clients.occupancy", clientTable, ClientTable::occupancy)
+            .description("Fraction of client table slots in use")
+            .register(meterRegistry);
+        Gauge.builder("rate-limiter.clients.size", clientTable, ClientTable::size)
+            .register(meterRegistry);
+        Gauge.builder("rate-limiter.clients.capacity", clientTable, ClientTable::capacity)
+            .register(meterRegistry);
+        Gauge.builder("rate-limiter.clients.memory", clientTable, ClientTable::memoryBytes)
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        FunctionCounter.builder("rate-limiter.clients.evictions", clientTable, ClientTable::evictions)
+            .description("Idle clients evicted because their probe window was full")
+            .register(meterRegistry);
+        FunctionCounter.builder("rate-limiter.clients.overflows", clientTable, ClientTable::overflows)
+            .description("Lookups that found no free or idle slot in the probe window")
+            .tag("fail-open", String.valueOf(overflowFailOpen))
+            .register(meterRegistry);
+        if (store != null) {
+            Gauge.builder("rate-limiter.persistence.wal", store, ClientTableStore::walBytes)
+                .description("Write-ahead log size since the last snapshot")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        }
     }
 
-    @Scheduled(fixedRate = 300000) // Каждые 5 минут
-    public void cleanupOldClients() {
-        long currentTime = System.currentTimeMillis();
-        int initialSize = clients.size();
+    private PolicyAlgorithm policy(RateLimitAlgorithm algorithm, int limit, int windowMs) {
+        return policies.computeIfAbsent(new Policy(algorithm, limit, windowMs), key -> {
+            PackedAlgorithm packed = algorithm.packed(limit, windowMs);
+            return new PolicyAlgorithm(packed, ClientTable.config(packed));
+        });
+    }
 
-        clients.entrySet().removeIf(entry ->
-            currentTime - entry.getValue().getLastAccessTime() > 3600000 // 1 час
-        );
+    // Лимитер пересоздаётся, если для клиента поменялись алгоритм, лимит или окно
+    private ClientRateLimit clientLimit(String clientId, String serviceName, RateLimitAlgorithm algorithm,
+                                        int limit, int windowMs, long now) {
+        String clientKey = generateClientKey(clientId, serviceName);
+        Policy policy = new Policy(algorithm, limit, windowMs);
+        ClientRateLimit clientLimit = clients.get(clientKey);
+        if (clientLimit != null && clientLimit.policy.equals(policy)) {
+            return clientLimit;
+        }
+        return clients.compute(clientKey, (key, existing) ->
+            existing != null && existing.policy.equals(policy)
+                ? existing
+                : new ClientRateLimit(policy, algorithm.create(limit, windowMs, now), now));
+    }
 
-        int removed = initialSize - clients.size();
-        if (removed > 0) {
-            System.out.println("🧹 Cleaned up " + removed + " old rate limit clients");
+    // Алгоритм tier клиента, иначе маршрута из запроса, rate-limiter.algorithm.clients.<client>,
+    // rate-limiter.algorithm.services.<service> и rate-limiter.algorithm
+    private RateLimitAlgorithm resolveAlgorithm(LimitPolicy policy, String requested, String clientId,
+                                                String serviceName) {
+        int limit = policy.limit();
+        RateLimitAlgorithm algorithm;
+        if (policy.algorithm() != null && !policy.algorithm().isBlank()) {
+            algorithm = RateLimitAlgorithm.fromId(policy.algorithm());
+        } else if (requested != null && !requested.isBlank()) {
+            algorithm = RateLimitAlgorithm.fromId(requested);
+        } else {
+            String clientAlgorithm = clientId != null ? clientAlgorithms.get(clientId) : null;
+            algorithm = clientAlgorithm != null
+                ? RateLimitAlgorithm.fromId(clientAlgorithm)
+                : serviceAlgorithm(serviceName);
         }
+        if (algorithm == RateLimitAlgorithm.SLIDING_LOG && limit > slidingLogMaxLimit) {
+            return RateLimitAlgorithm.SLIDING_WINDOW;
+        }
+        return algorithm;
     }
 
-    private String generateClientKey(String clientId, String serviceName) {
-        return serviceName + ":" + clientId;
+    private RateLimitAlgorithm serviceAlgorithm(String serviceName) {
+        if (serviceName == null) {
+            return RateLimitAlgorithm.fromId(defaultAlgorithm);
+        }
+        RateLimitAlgorithm algorithm = serviceAlgorithms.get(serviceName);
+        if (algorithm == null) {
+            String configured = environment.getProperty("rate-limiter.algorithm.services." + serviceName);
+            algorithm = RateLimitAlgorithm.fromId(configured != null ? configured : defaultAlgorithm);
+            serviceAlgorithms.put(serviceName, algorithm);
+        }
+        return algorithm;
+    }
+
+    private record Policy(RateLimitAlgorithm algorithm, int limit, int windowMs) {
+    }
+
+    private record PolicyAlgorithm(PackedAlgorithm algorithm, int config) {
+    }
+
+    private record BatchKey(String serviceName, String clientId, QuotaRules.EndpointQuota endpointQuota,
+                            RateLimitAlgorithm algorithm, int limit, int windowMs) {
+    }
+
+    private record Bucket(QuotaLevel level, PackedAlgorithm algorithm, int slot) {
+    }
+
+    // grants[i] — сколько пропустил i-й проверенный уровень, не больше предыдущего
+    private record Grant(int granted, int remaining, long resetTime, QuotaLevel[] levels, int[] grants, int checked) {
+
+        // Уровень, отклонивший n-й запрос группы, или null, если запрос пропущен
+        QuotaLevel rejectedBy(int n) {
+            for (int i = 0; i < checked; i++) {
+                if (grants[i] <= n) {
+                    return levels[i];
+                }
+            }
+            return null;
+        }
     }
 
     private static class ClientRateLimit {
-        private final int limit;
-        private final int windowMs;
-        private final AtomicInteger requests = new AtomicInteger(0);
-        private volatile long windowStart;
+        private final Policy policy;
+        private final RateLimiter limiter;
         private volatile long lastAccessTime;
 
-        public ClientRateLimit(int limit, int windowMs) {
-            this.limit = limit;
-            this.windowMs = windowMs;
-            this.windowStart = System.currentTimeMillis();
-            this.lastAccessTime = System.currentTimeMillis();
+        ClientRateLimit(Policy policy, RateLimiter limiter, long now) {
+            this.policy = policy;
+            this.limiter = limiter;
+            this.lastAccessTime = now;
         }
 
-        public boolean allowRequest() {
-            lastAccessTime = System.currentTimeMillis();
-            long currentTime = System.currentTimeMillis();
-
-            synchronized (this) {
-                if (currentTime - windowStart > windowMs) {
-                    requests.set(0);
-                    windowStart = currentTime;
-                }
+        public int allowRequests(int count, long now) {
+            lastAccessTime = now;
+            return limiter.tryAcquire(count, now);
+        }
 
-                return requests.incrementAndGet() <= limit;
-            }
+        public void recordRequests(int count, long now) {
+            lastAccessTime = now;
+            limiter.record(count, now);
         }
 
-        public int getRemainingRequests() {
-            synchronized (this) {
-                int current = requests.get();
-                return Math.max(0, limit - current);
-            }
+        public int getRemainingRequests(long now) {
+            return limiter.remaining(now);
         }
 
-        public long getResetTime() {
-            return windowStart + windowMs;
+        public long getResetTime(long now) {
+            return limiter.resetTime(now);
         }
 
         public long getLastAccessTime() {
@@ -0,0 +1,447 @@
+package com.example.ratelimiter.store;
+
+import com.example.ratelimiter.algorithm.PackedAlgorithm;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/**
+ * Таблица лимитов клиентов с открытой адресацией в одном long[]: на клиента три long
+ * (отпечаток ключа, состояние алгоритма, метаданные) — 24 байта вместо объекта с атомиками
+ * и строкового ключа. Ключ "сервис + клиент" хешируется в 64-битный отпечаток, строка не хранится.
+ * <p>
+ * Слоты меняются CAS-ом через VarHandle. Клиент ищется в окне из PROBE_LIMIT слотов; если
+ * в окне нет ни его, ни свободного слота, вытесняется слот с самым давним обращением, но только
+ * простаивающий дольше evict-idle: лимит вытесненного клиента начинается заново, и активного
+ * клиента так сбрасывать нельзя. Если простаивающих в окне нет, клиенту слот не выдаётся
+ * ({@link #NO_SLOT}), что с ним делать, решает вызывающий. Коллизия отпечатков или гонка вставки
+ * одного клиента в два слота лишь делят или дублируют его счётчик, блокировок таблица не берёт.
+ * <p>
+ * Простаивающих клиентов убирает {@link #sweep}: стрелка часов за вызов проходит не больше
+ * заданного числа слотов, поэтому пауза не зависит от размера таблицы.
+ * <p>
+ * Любое изменение слота помечает его страницу (PAGE_SLOTS слотов) в битовой карте, по которой
+ * {@link ClientTableStore} пишет на диск только изменившиеся страницы.
+ */
+public final class ClientTable {
+
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final int FIELDS = 3;
+    private static final int FINGERPRINT = 0;
+    private static final int STATE = 1;
+    // Старшие 32 бита — хеш конфигурации лимита, младшие — секунда последнего обращения
+    private static final int META = 2;
+    private static final int PROBE_LIMIT = 8;
+    // 2024-01-01T00:00:00Z: секунды от него помещаются в int ещё на 68 лет
+    private static final long EPOCH_SECONDS = 1_704_067_200L;
+    public static final int PAGE_SLOTS = 256;
+    // Слота для клиента нет: всё окно поиска занято активными клиентами
+    public static final int NO_SLOT = -1;
+    private static final long DEFAULT_EVICT_IDLE_MS = 120_000;
+
+    private final long[] slots;
+    private final int mask;
+    private final int pageSlots;
+    // Бит на страницу, изменившуюся с последнего drainDirtyPages
+    private final AtomicLongArray dirtyPages;
+    private final LongAdder size = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+    private final int evictIdleSeconds;
+    // Позиция стрелки sweep, меняется только потоком очистки
+    private int hand;
+
+    public ClientTable(int capacity) {
+        this(capacity, DEFAULT_EVICT_IDLE_MS);
+    }
+
+    /**
+     * @param evictIdleMs сколько клиент должен простаивать, чтобы его слот можно было отдать
+     *                    другому клиенту при заполненном окне поиска
+     */
+    public ClientTable(int capacity, long evictIdleMs) {
+        this.evictIdleSeconds = (int) Math.max(1, evictIdleMs / 1000);
+        int slotCount = Integer.highestOneBit(Math.max(PROBE_LIMIT, capacity - 1)) << 1;
+        this.slots = new long[slotCount * FIELDS];
+        this.mask = slotCount - 1;
+        this.pageSlots = Math.min(PAGE_SLOTS, slotCount);
+        this.dirtyPages = new AtomicLongArray((slotCount / pageSlots + 63) >>> 6);
+    }
+
+    /**
+     * Слот клиента с заданной конфигурацией лимита. Если конфигурация клиента поменялась,
+     * его состояние сбрасывается в начальное.
+     *
+     * @return слот или {@link #NO_SLOT}, если клиента нет, а окно поиска занято клиентами,
+     *         обращавшимися за последние evict-idle
+     */
+    public int slotFor(long fingerprint, int config, long nowMs) {
+        int nowSeconds = seconds(nowMs);
+        int home = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+        int free = -1;
+        int oldest = -1;
+        long oldestFingerprint = 0;
+        // Вытеснять можно только тех, кто простаивает дольше evict-idle
+        int oldestSeconds = nowSeconds - evictIdleSeconds;
+        for (int probe = 0; probe < PROBE_LIMIT; probe++) {
+            int slot = (home + probe) & mask;
+            long current = get(slot, FINGERPRINT);
+            if (current == fingerprint) {
+                touch(slot, config, nowSeconds);
+                return slot;
+            }
+            if (current == 0) {
+                if (free < 0) {
+                    free = slot;
+                }
+                continue;
+            }
+            int accessed = (int) get(slot, META);
+            if (accessed < oldestSeconds) {
+                oldestSeconds = accessed;
+                oldest = slot;
+                oldestFingerprint = current;
+            }
+        }
+
+        if (free < 0 && oldest < 0) {
+            overflows.increment();
+            return NO_SLOT;
+        }
+        int slot = free >= 0 ? free : oldest;
+        long expected = free >= 0 ? 0 : oldestFingerprint;
+        while (true) {
+            long current = get(slot, FINGERPRINT);
+            if (current == fingerprint) {
+                touch(slot, config, nowSeconds);
+                return slot;
+            }
+            if (current != expected || free < 0 && (int) get(slot, META) != oldestSeconds) {
+                // Свободный слот заняли или вытесняемый клиент обратился между поиском и вставкой
+                return slotFor(fingerprint, config, nowMs);
+            }
+            if (SLOTS.compareAndSet(slots, index(slot, FINGERPRINT), current, fingerprint)) {
+                if (current == 0) {
+                    size.increment();
+                } else {
+                    evictions.increment();
+                }
+                SLOTS.setVolatile(slots, index(slot, STATE), 0L);
+                SLOTS.setVolatile(slots, index(slot, META), meta(config, nowSeconds));
+                markDirty(slot);
+                return slot;
+            }
+        }
+    }
+
+    public boolean tryAcquire(int slot, PackedAlgorithm algorithm, long nowMs) {
+        int index = index(slot, STATE);
+        while (true) {
+            long current = (long) SLOTS.getVolatile(slots, index);
+            long updated = algorithm.acquire(current, nowMs);
+            if (updated == current) {
+                return false;
+            }
+            if (SLOTS.compareAndSet(slots, index, current, updated)) {
+                markDirty(slot);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Пропускает сколько получится из permits запросов одним CAS, возвращает число пропущенных.
+     */
+    public int tryAcquire(int slot, PackedAlgorithm algorithm, int permits, long nowMs) {
+        int index = index(slot, STATE);
+        while (true) {
+            long current = (long) SLOTS.getVolatile(slots, index);
+            int granted = Math.min(permits, algorithm.remaining(current, nowMs));
+            if (granted <= 0) {
+                return 0;
+            }
+            if (SLOTS.compareAndSet(slots, index, current, algorithm.record(current, granted, nowMs))) {
+                markDirty(slot);
+                return granted;
+            }
+        }
+    }
+
+    public void record(int slot, PackedAlgorithm algorithm, int permits, long nowMs) {
+        int index = index(slot, STATE);
+        while (true) {
+            long current = (long) SLOTS.getVolatile(slots, index);
+            if (SLOTS.compareAndSet(slots, index, current, algorithm.record(current, permits, nowMs))) {
+                markDirty(slot);
+                return;
+            }
+        }
+    }
+
+    public void release(int slot, PackedAlgorithm algorithm, int permits, long nowMs) {
+        int index = index(slot, STATE);
+        while (true) {
+            long current = (long) SLOTS.getVolatile(slots, index);
+            if (SLOTS.compareAndSet(slots, index, current, algorithm.release(current, permits, nowMs))) {
+                markDirty(slot);
+                return;
+            }
+        }
+    }
+
+    public long state(int slot) {
+        return get(slot, STATE);
+    }
+
+    /**
+     * Слот клиента или -1, если его нет в таблице. В отличие от {@link #slotFor} клиента
+     * не вставляет и время обращения не обновляет.
+     */
+    public int find(long fingerprint, int config) {
+        int home = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+        for (int probe = 0; probe < PROBE_LIMIT; probe++) {
+            int slot = (home + probe) & mask;
+            if (get(slot, FINGERPRINT) == fingerprint) {
+                return (int) (get(slot, META) >>> 32) == config ? slot : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Переносит в слот состояние, снятое на другой реплике; время обращения — время снимка.
+     *
+     * @return {@code false}, если клиенту не нашлось слота
+     */
+    public boolean restore(long fingerprint, int config, long state, long updatedAtMs) {
+        int slot = slotFor(fingerprint, config, updatedAtMs);
+        if (slot == NO_SLOT) {
+            return false;
+        }
+        SLOTS.setVolatile(slots, index(slot, STATE), state);
+        markDirty(slot);
+        return true;
+    }
+
+    /**
+     * Проходит следующие budget слотов от стрелки и освобождает клиентов, не обращавшихся
+     * с idleBeforeMs. Вызывается из одного потока. Возвращает число освобождённых слотов.
+     * <p>
+     * Отпечаток очищается последним: пока он на месте, другой клиент в слот не вставится,
+     * и обнуление STATE и META не заденет его состояние. Слот сначала забирается CAS-ом META,
+     * так что клиент, обратившийся между проверкой простоя и захватом, не освобождается.
+     */
+    public int sweep(int budget, long idleBeforeMs) {
+        int idleBeforeSeconds = seconds(idleBeforeMs);
+        int removed = 0;
+        int slot = hand;
+        for (int i = 0; i < Math.min(budget, capacity()); i++) {
+            long fingerprint = get(slot, FINGERPRINT);
+            long meta = get(slot, META);
+            if (fingerprint != 0 && (int) meta < idleBeforeSeconds
+                && SLOTS.compareAndSet(slots, index(slot, META), meta, 0L)) {
+                SLOTS.setVolatile(slots, index(slot, STATE), 0L);
+                // Не вышло — слот между проверкой и очисткой вытеснен другим клиентом
+                if (SLOTS.compareAndSet(slots, index(slot, FINGERPRINT), fingerprint, 0L)) {
+                    size.decrement();
+                    removed++;
+                }
+                markDirty(slot);
+            }
+            slot = (slot + 1) & mask;
+        }
+        hand = slot;
+        return removed;
+    }
+
+    public int pageSlots() {
+        return pageSlots;
+    }
+
+    public int pageCount() {
+        return capacity() / pageSlots;
+    }
+
+    /**
+     * Снимает отметки изменённых страниц и передаёт их номера в action. Отметка снимается
+     * до того, как action прочитает страницу, поэтому изменение во время чтения не теряется:
+     * страница будет отмечена снова.
+     */
+    public void drainDirtyPages(IntConsumer action) {
+        for (int word = 0; word < dirtyPages.length(); word++) {
+            long bits = dirtyPages.get(word) != 0 ? dirtyPages.getAndSet(word, 0L) : 0L;
+            while (bits != 0) {
+                action.accept((word << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    public void markPageDirty(int page) {
+        long bit = 1L << page;
+        if ((dirtyPages.get(page >>> 6) & bit) == 0) {
+            dirtyPages.getAndAccumulate(page >>> 6, bit, (bits, mark) -> bits | mark);
+        }
+    }
+
+    /**
+     * Копирует страницу в dst по три long на слот. Слот, который вытеснили во время чтения,
+     * перечитывается, чтобы состояние не досталось чужому отпечатку.
+     */
+    public void copyPage(int page, long[] dst) {
+        int first = page * pageSlots;
+        for (int i = 0; i < pageSlots; i++) {
+            int slot = first + i;
+            long fingerprint;
+            long state;
+            long meta;
+            do {
+                fingerprint = get(slot, FINGERPRINT);
+                state = get(slot, STATE);
+                meta = get(slot, META);
+            } while (fingerprint != get(slot, FINGERPRINT));
+            dst[i * FIELDS + FINGERPRINT] = fingerprint;
+            dst[i * FIELDS + STATE] = state;
+            dst[i * FIELDS + META] = meta;
+        }
+    }
+
+    /**
+     * Заменяет страницу образом из copyPage той же таблицы. Только для восстановления,
+     * до того как таблицей начнут пользоваться другие потоки.
+     */
+    public void loadPage(int page, long[] src) {
+        int offset = index(page * pageSlots, FINGERPRINT);
+        long delta = 0;
+        for (int i = 0; i < pageSlots; i++) {
+            delta += (src[i * FIELDS + FINGERPRINT] != 0 ? 1 : 0) - (slots[offset + i * FIELDS] != 0 ? 1 : 0);
+        }
+        System.arraycopy(src, 0, slots, offset, pageSlots * FIELDS);
+        size.add(delta);
+    }
+
+    /**
+     * Вставляет слот из образа страницы таблицы другой ёмкости; i — номер слота в образе.
+     *
+     * @return {@code false}, если слот образа пуст или клиенту не нашлось места
+     */
+    public boolean restoreSlot(long[] page, int i) {
+        long fingerprint = page[i * FIELDS + FINGERPRINT];
+        if (fingerprint == 0) {
+            return false;
+        }
+        long meta = page[i * FIELDS + META];
+        return restore(fingerprint, (int) (meta >>> 32), page[i * FIELDS + STATE],
+            ((int) meta + EPOCH_SECONDS) * 1000);
+    }
+
+    // Время последнего обращения к слоту с точностью до секунды
+    public long accessedAt(int slot) {
+        return ((int) get(slot, META) + EPOCH_SECONDS) * 1000;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public long size() {
+        return size.sum();
+    }
+
+    public double occupancy() {
+        return (double) size.sum() / capacity();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public long overflows() {
+        return overflows.sum();
+    }
+
+    public long memoryBytes() {
+        return (long) slots.length * Long.BYTES;
+    }
+
+    /**
+     * 64-битный отпечаток пары сервис/клиент (FNV-1a по UTF-16 с финальным перемешиванием),
+     * 0 зарезервирован под пустой слот.
+     */
+    public static long fingerprint(String serviceName, String clientId) {
+        long hash = 0xcbf29ce484222325L;
+        hash = fnv(hash, serviceName);
+        hash = (hash ^ 0xff) * 0x100000001b3L;
+        hash = fnv(hash, clientId);
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash != 0 ? hash : 1;
+    }
+
+    /**
+     * Ненулевой хеш конфигурации лимита: смена алгоритма, лимита или окна сбрасывает состояние клиента.
+     */
+    public static int config(PackedAlgorithm algorithm) {
+        int hash = algorithm.algorithm().ordinal();
+        hash = hash * 31 + algorithm.limit();
+        hash = hash * 31 + algorithm.windowMs();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash != 0 ? hash : 1;
+    }
+
+    private void touch(int slot, int config, int nowSeconds) {
+        int index = index(slot, META);
+        long current = (long) SLOTS.getVolatile(slots, index);
+        long updated = meta(config, nowSeconds);
+        if (current == updated) {
+            return;
+        }
+        if (SLOTS.compareAndSet(slots, index, current, updated)) {
+            if ((int) (current >>> 32) != config) {
+                SLOTS.setVolatile(slots, index(slot, STATE), 0L);
+            }
+            markDirty(slot);
+        }
+    }
+
+    private void markDirty(int slot) {
+        markPageDirty(slot / pageSlots);
+    }
+
+    private long get(int slot, int field) {
+        return (long) SLOTS.getVolatile(slots, index(slot, field));
+    }
+
+    private static int index(int slot, int field) {
+        return slot * FIELDS + field;
+    }
+
+    private static long meta(int config, int nowSeconds) {
+        return ((long) config << 32) | (nowSeconds & 0xFFFFFFFFL);
+    }
+
+    private static int seconds(long epochMs) {
+        return (int) (epochMs / 1000 - EPOCH_SECONDS);
+    }
+
+    private static long fnv(long hash, String value) {
+        if (value == null) {
+            return hash;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash = (hash ^ (c & 0xff)) * 0x100000001b3L;
+            hash = (hash ^ (c >>> 8)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+}
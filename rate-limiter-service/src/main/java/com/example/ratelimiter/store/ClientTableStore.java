@@ -0,0 +1,273 @@
+package com.example.ratelimiter.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Состояние {@link ClientTable} на диске: снимок таблицы в memory-mapped файле и журнал
+ * упреждающей записи (WAL) изменённых страниц между снимками.
+ * <p>
+ * {@link #logChanges} дописывает в WAL образы страниц, изменившихся с прошлого вызова,
+ * и делает fsync. {@link #checkpoint} переносит записи WAL в снимок на месте, сбрасывает
+ * снимок на диск и только потом обрезает WAL, поэтому падение в любой момент оставляет
+ * снимок, который доводится до последнего logChanges повторным проигрыванием WAL
+ * (образы страниц целиком, проигрывание идемпотентно). Запись WAL, оборванная падением,
+ * отбрасывается по контрольной сумме.
+ * <p>
+ * Формат снимка — заголовок и слоты таблицы в её собственной раскладке, так что при той же
+ * ёмкости восстановление — это копирование страниц. Снимок таблицы другой ёмкости
+ * перевставляется по слотам.
+ */
+public final class ClientTableStore implements Closeable {
+
+    private static final long MAGIC = 0x524C_5441_424C_4531L;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int FIELDS = 3;
+    // Номер страницы, число слотов в ней; в конце записи — CRC32C
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private final ClientTable table;
+    private final Path snapshotPath;
+    private final FileChannel wal;
+    private final int pageSlots;
+    private final long[] page;
+    private final ByteBuffer record;
+    private FileChannel snapshotChannel;
+    private MappedByteBuffer mapped;
+    // Слоты снимка без заголовка
+    private LongBuffer snapshot;
+    private volatile long walBytes;
+
+    public ClientTableStore(Path directory, ClientTable table) throws IOException {
+        Files.createDirectories(directory);
+        this.table = table;
+        this.snapshotPath = directory.resolve("clients.snapshot");
+        this.pageSlots = table.pageSlots();
+        this.page = new long[pageSlots * FIELDS];
+        this.record = ByteBuffer.allocateDirect(recordBytes(pageSlots));
+        this.wal = FileChannel.open(directory.resolve("clients.wal"),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Загружает в пустую таблицу снимок и проигрывает поверх него WAL. WAL остаётся на месте
+     * до следующего checkpoint, чтобы старт не ждал записи снимка на диск. Возвращает число
+     * восстановленных клиентов.
+     */
+    public synchronized long recover() throws IOException {
+        int slotCount = existingSlotCount();
+        if (slotCount == 0) {
+            // WAL без снимка не бывает: снимок создаётся до первой записи в WAL
+            Files.deleteIfExists(snapshotPath);
+            truncateWal();
+        } else if (slotCount != table.capacity()) {
+            return recoverResized(slotCount);
+        } else {
+            try (FileChannel previous = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+                LongBuffer slots = previous.map(FileChannel.MapMode.READ_ONLY, 0, snapshotBytes(slotCount))
+                    .position(HEADER_BYTES).slice().asLongBuffer();
+                for (int p = 0; p < table.pageCount(); p++) {
+                    slots.get(page);
+                    table.loadPage(p, page);
+                }
+            }
+        }
+
+        long validBytes = 0;
+        wal.position(0);
+        while (readRecord(record, page, pageSlots)) {
+            table.loadPage(record.getInt(0), page);
+            validBytes = wal.position();
+        }
+        // Оборванный хвост отрезаем, новые записи пойдут сразу за последней целой
+        wal.truncate(validBytes);
+        wal.position(validBytes);
+        walBytes = validBytes;
+        mapSnapshot();
+        return table.size();
+    }
+
+    /**
+     * Ёмкость таблицы поменялась: старый снимок доводится WAL-ом на месте, его клиенты
+     * перевставляются по одному, и снимок сразу пишется заново в новой раскладке. Падение
+     * посреди этого оставляет клиентов без сохранённого состояния, как при первом старте.
+     */
+    private long recoverResized(int slotCount) throws IOException {
+        int previousPageSlots = Math.min(ClientTable.PAGE_SLOTS, slotCount);
+        int previousPages = slotCount / previousPageSlots;
+        long[] image = new long[previousPageSlots * FIELDS];
+        ByteBuffer buffer = ByteBuffer.allocateDirect(recordBytes(previousPageSlots));
+        try (FileChannel previous = FileChannel.open(snapshotPath, StandardOpenOption.READ,
+                 StandardOpenOption.WRITE)) {
+            LongBuffer slots = previous.map(FileChannel.MapMode.READ_WRITE, 0, snapshotBytes(slotCount))
+                .position(HEADER_BYTES).slice().asLongBuffer();
+            wal.position(0);
+            while (readRecord(buffer, image, previousPageSlots)) {
+                int p = buffer.getInt(0);
+                if (p < previousPages) {
+                    slots.put(p * previousPageSlots * FIELDS, image);
+                }
+            }
+            for (int p = 0; p < previousPages; p++) {
+                slots.get(p * previousPageSlots * FIELDS, image);
+                for (int i = 0; i < previousPageSlots; i++) {
+                    table.restoreSlot(image, i);
+                }
+            }
+        }
+        Files.delete(snapshotPath);
+        truncateWal();
+        mapSnapshot();
+        logChanges();
+        checkpoint();
+        return table.size();
+    }
+
+    /**
+     * Дописывает в WAL страницы, изменившиеся с прошлого вызова, и сбрасывает его на диск.
+     * Когда WAL вдвое больше снимка, checkpoint делается сразу: так WAL и время его
+     * проигрывания при старте ограничены размером таблицы. Возвращает число записанных страниц.
+     */
+    public synchronized int logChanges() throws IOException {
+        int[] written = {0};
+        IOException[] failure = {null};
+        table.drainDirtyPages(p -> {
+            if (failure[0] == null) {
+                try {
+                    table.copyPage(p, page);
+                    writeRecord(p);
+                    written[0]++;
+                    return;
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            }
+            // Отметку уже сняли — возвращаем, чтобы страница ушла в следующий раз
+            table.markPageDirty(p);
+        });
+        if (written[0] > 0) {
+            wal.force(false);
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        if (walBytes > 2 * snapshotBytes(table.capacity())) {
+            checkpoint();
+        }
+        return written[0];
+    }
+
+    /**
+     * Переносит WAL в снимок и обрезает WAL. Изменения после последнего logChanges сюда
+     * не попадают — они уйдут следующим logChanges.
+     */
+    public synchronized void checkpoint() throws IOException {
+        if (walBytes == 0) {
+            return;
+        }
+        wal.position(0);
+        while (readRecord(record, page, pageSlots)) {
+            snapshot.put(record.getInt(0) * pageSlots * FIELDS, page);
+        }
+        mapped.force();
+        truncateWal();
+    }
+
+    public long walBytes() {
+        return walBytes;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        wal.close();
+        if (snapshotChannel != null) {
+            snapshotChannel.close();
+        }
+    }
+
+    private void writeRecord(int p) throws IOException {
+        record.clear();
+        record.putInt(p).putInt(pageSlots);
+        record.asLongBuffer().put(page);
+        int payloadBytes = RECORD_HEADER_BYTES + page.length * Long.BYTES;
+        CRC32C crc = new CRC32C();
+        crc.update(record.duplicate().position(0).limit(payloadBytes));
+        record.putLong(payloadBytes, crc.getValue());
+        record.position(0).limit(payloadBytes + Long.BYTES);
+        while (record.hasRemaining()) {
+            walBytes += wal.write(record);
+        }
+    }
+
+    // Следующая целая запись WAL; false — конец журнала или оборванный падением хвост
+    private boolean readRecord(ByteBuffer buffer, long[] image, int slots) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (wal.read(buffer) < 0) {
+                return false;
+            }
+        }
+        int payloadBytes = RECORD_HEADER_BYTES + slots * FIELDS * Long.BYTES;
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().position(0).limit(payloadBytes));
+        if (buffer.getInt(4) != slots || buffer.getLong(payloadBytes) != crc.getValue()) {
+            return false;
+        }
+        buffer.position(RECORD_HEADER_BYTES).limit(payloadBytes).slice().asLongBuffer().get(image);
+        return true;
+    }
+
+    private void truncateWal() throws IOException {
+        wal.truncate(0);
+        wal.position(0);
+        wal.force(true);
+        walBytes = 0;
+    }
+
+    // Число слотов в существующем снимке или 0, если снимка нет или он повреждён
+    private int existingSlotCount() throws IOException {
+        if (!Files.exists(snapshotPath) || Files.size(snapshotPath) < HEADER_BYTES) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // заголовок читается целиком
+            }
+            int slotCount = header.getInt(12);
+            boolean valid = header.getLong(0) == MAGIC && header.getInt(8) == VERSION
+                && slotCount > 0 && Integer.bitCount(slotCount) == 1
+                && channel.size() == snapshotBytes(slotCount);
+            return valid ? slotCount : 0;
+        }
+    }
+
+    private void mapSnapshot() throws IOException {
+        boolean created = !Files.exists(snapshotPath);
+        snapshotChannel = FileChannel.open(snapshotPath,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mapped = snapshotChannel.map(FileChannel.MapMode.READ_WRITE, 0, snapshotBytes(table.capacity()));
+        if (created) {
+            mapped.putLong(0, MAGIC).putInt(8, VERSION).putInt(12, table.capacity());
+            mapped.force();
+        }
+        snapshot = mapped.slice(HEADER_BYTES, mapped.capacity() - HEADER_BYTES).asLongBuffer();
+    }
+
+    private static long snapshotBytes(int slotCount) {
+        return HEADER_BYTES + (long) slotCount * FIELDS * Long.BYTES;
+    }
+
+    private static int recordBytes(int pageSlots) {
+        return RECORD_HEADER_BYTES + pageSlots * FIELDS * Long.BYTES + Long.BYTES;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.ratelimiter.algorithm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedAlgorithmTest {
+
+    private static final int LIMIT = 10;
+    private static final int WINDOW_MS = 1000;
+    // Середина окна: для sliding-window время не совпадает с его границей
+    private static final long NOW = 1_750_000_000_500L;
+
+    private static List<PackedAlgorithm> algorithms() {
+        return List.of(
+            RateLimitAlgorithm.TOKEN_BUCKET.packed(LIMIT, WINDOW_MS),
+            RateLimitAlgorithm.SLIDING_WINDOW.packed(LIMIT, WINDOW_MS),
+            RateLimitAlgorithm.GCRA.packed(LIMIT, WINDOW_MS));
+    }
+
+    @Test
+    void acquirePassesExactlyLimitThenKeepsState() {
+        for (PackedAlgorithm algorithm : algorithms()) {
+            long state = 0;
+            for (int i = 0; i < LIMIT; i++) {
+                assertEquals(LIMIT - i, algorithm.remaining(state, NOW), algorithm.algorithm().id());
+                long next = algorithm.acquire(state, NOW);
+                assertNotEquals(state, next, algorithm.algorithm().id());
+                state = next;
+            }
+            assertEquals(0, algorithm.remaining(state, NOW), algorithm.algorithm().id());
+            assertEquals(state, algorithm.acquire(state, NOW), algorithm.algorithm().id());
+        }
+    }
+
+    @Test
+    void recordEqualsAsManyAcquires() {
+        for (PackedAlgorithm algorithm : algorithms()) {
+            long acquired = 0;
+            for (int i = 0; i < 4; i++) {
+                acquired = algorithm.acquire(acquired, NOW);
+            }
+            long recorded = algorithm.record(0, 4, NOW);
+
+            assertEquals(algorithm.remaining(acquired, NOW), algorithm.remaining(recorded, NOW),
+                algorithm.algorithm().id());
+            assertEquals(LIMIT - 4, algorithm.remaining(recorded, NOW), algorithm.algorithm().id());
+        }
+    }
+
+    @Test
+    void releaseReturnsPermitsTakenInTheSameWindow() {
+        for (PackedAlgorithm algorithm : algorithms()) {
+            long state = algorithm.record(0, 3, NOW);
+            state = algorithm.record(state, 5, NOW);
+
+            state = algorithm.release(state, 5, NOW);
+
+            assertEquals(LIMIT - 3, algorithm.remaining(state, NOW), algorithm.algorithm().id());
+            state = algorithm.release(state, 3, NOW);
+            assertEquals(LIMIT, algorithm.remaining(state, NOW), algorithm.algorithm().id());
+        }
+    }
+
+    @Test
+    void releaseNeverGoesBelowAFullLimit() {
+        for (PackedAlgorithm algorithm : algorithms()) {
+            long state = algorithm.record(0, 2, NOW);
+
+            state = algorithm.release(state, 5, NOW);
+
+            assertEquals(LIMIT, algorithm.remaining(state, NOW), algorithm.algorithm().id());
+            // Лишний release не даёт пропустить больше limit
+            for (int i = 0; i < LIMIT; i++) {
+                state = algorithm.acquire(state, NOW);
+            }
+            assertEquals(state, algorithm.acquire(state, NOW), algorithm.algorithm().id());
+        }
+    }
+
+    @Test
+    void limitRecoversAfterWindow() {
+        for (PackedAlgorithm algorithm : algorithms()) {
+            long state = algorithm.record(0, LIMIT, NOW);
+            assertEquals(0, algorithm.remaining(state, NOW), algorithm.algorithm().id());
+
+            // sliding-window помнит предыдущее окно, поэтому ждём два
+            long later = NOW + 2L * WINDOW_MS;
+
+            assertEquals(LIMIT, algorithm.remaining(state, later), algorithm.algorithm().id());
+            assertNotEquals(state, algorithm.acquire(state, later), algorithm.algorithm().id());
+        }
+    }
+
+    @Test
+    void tokenBucketRefillsProportionallyToElapsedTime() {
+        PackedAlgorithm algorithm = RateLimitAlgorithm.TOKEN_BUCKET.packed(LIMIT, WINDOW_MS);
+        long state = algorithm.record(0, LIMIT, NOW);
+
+        assertEquals(3, algorithm.remaining(state, NOW + 3 * WINDOW_MS / LIMIT));
+        assertEquals(NOW + WINDOW_MS, algorithm.resetTime(state, NOW));
+    }
+
+    @Test
+    void slidingWindowReleaseAfterRollReturnsPermitsToPreviousWindow() {
+        PackedAlgorithm algorithm = RateLimitAlgorithm.SLIDING_WINDOW.packed(LIMIT, WINDOW_MS);
+        long state = algorithm.record(0, LIMIT, NOW);
+        long nextWindow = (NOW / WINDOW_MS + 1) * WINDOW_MS;
+
+        // В начале следующего окна предыдущее весит полностью
+        assertEquals(0, algorithm.remaining(state, nextWindow));
+        state = algorithm.release(state, 4, nextWindow);
+
+        assertEquals(4, algorithm.remaining(state, nextWindow));
+    }
+
+    @Test
+    void gcraReleaseStopsAtCurrentTime() {
+        PackedAlgorithm algorithm = RateLimitAlgorithm.GCRA.packed(LIMIT, WINDOW_MS);
+        long state = algorithm.record(0, 2, NOW);
+
+        long released = algorithm.release(state, 10, NOW);
+
+        assertEquals(NOW * 1000, released);
+        assertEquals(NOW, algorithm.resetTime(released, NOW));
+    }
+
+    @Test
+    void atomicRateLimiterGrantsBatchUpToRemaining() {
+        for (RateLimitAlgorithm algorithm : RateLimitAlgorithm.values()) {
+            RateLimiter limiter = algorithm.create(LIMIT, WINDOW_MS, NOW);
+
+            assertEquals(7, limiter.tryAcquire(7, NOW), algorithm.id());
+            assertEquals(3, limiter.tryAcquire(7, NOW), algorithm.id());
+            assertEquals(0, limiter.tryAcquire(1, NOW), algorithm.id());
+            assertFalse(limiter.tryAcquire(NOW), algorithm.id());
+        }
+    }
+}
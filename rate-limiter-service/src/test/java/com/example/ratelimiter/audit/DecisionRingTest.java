@@ -0,0 +1,131 @@
+package com.example.ratelimiter.audit;
+
+import com.example.ratelimiter.quota.QuotaLevel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecisionRingTest {
+
+    private static boolean offer(DecisionRing ring, long timestamp) {
+        return ring.offer(timestamp, "user-service", "client-" + timestamp, "/api/users", 1, 0, 0, 100,
+            QuotaLevel.CLIENT);
+    }
+
+    private static List<Long> drain(DecisionRing ring, int max) {
+        List<Long> timestamps = new ArrayList<>();
+        ring.drain(decision -> timestamps.add(decision.timestamp()), max);
+        return timestamps;
+    }
+
+    @Test
+    void capacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(8, new DecisionRing(5).capacity());
+        assertEquals(8, new DecisionRing(8).capacity());
+        assertEquals(2, new DecisionRing(0).capacity());
+    }
+
+    @Test
+    void fullRingDropsNewDecisionsUntilDrained() {
+        DecisionRing ring = new DecisionRing(4);
+        for (long i = 0; i < 4; i++) {
+            assertTrue(offer(ring, i));
+        }
+
+        assertFalse(offer(ring, 4));
+        assertEquals(1, ring.dropped());
+        assertEquals(List.of(0L, 1L, 2L, 3L), drain(ring, 10));
+        assertTrue(offer(ring, 5));
+    }
+
+    @Test
+    void wrapsAroundKeepingOrder() {
+        DecisionRing ring = new DecisionRing(4);
+        List<Long> drained = new ArrayList<>();
+
+        // Десять кругов по кольцу, каждый раз читаем неполную часть
+        for (long next = 0; next < 40; next += 3) {
+            for (long i = next; i < next + 3; i++) {
+                assertTrue(offer(ring, i));
+            }
+            drained.addAll(drain(ring, 2));
+            drained.addAll(drain(ring, 1));
+        }
+
+        List<Long> expected = new ArrayList<>();
+        for (long i = 0; i < 42; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, drained);
+        assertEquals(0, ring.dropped());
+    }
+
+    @Test
+    void drainStopsAtMaxAndKeepsTheRest() {
+        DecisionRing ring = new DecisionRing(8);
+        for (long i = 0; i < 6; i++) {
+            offer(ring, i);
+        }
+
+        assertEquals(List.of(0L, 1L, 2L, 3L), drain(ring, 4));
+        assertEquals(List.of(4L, 5L), drain(ring, 4));
+        assertEquals(List.of(), drain(ring, 4));
+    }
+
+    @Test
+    void concurrentWritersLoseNothingThatWasAccepted() throws Exception {
+        DecisionRing ring = new DecisionRing(1024);
+        int writers = 4;
+        int perWriter = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        long[] accepted = new long[writers];
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perWriter; i++) {
+                    if (offer(ring, (long) writer * perWriter + i)) {
+                        accepted[writer]++;
+                    }
+                }
+                return null;
+            });
+        }
+
+        start.countDown();
+        executor.shutdown();
+        long read = 0;
+        long[] lastPerWriter = new long[writers];
+        Arrays.fill(lastPerWriter, -1);
+        while (!executor.isTerminated() || read < sum(accepted)) {
+            for (long timestamp : drain(ring, 256)) {
+                int writer = (int) (timestamp / perWriter);
+                // Решения одного писателя читаются в порядке записи
+                assertTrue(timestamp > lastPerWriter[writer]);
+                lastPerWriter[writer] = timestamp;
+                read++;
+            }
+            executor.awaitTermination(1, TimeUnit.MILLISECONDS);
+        }
+
+        assertEquals(sum(accepted), read);
+        assertEquals((long) writers * perWriter, read + ring.dropped());
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
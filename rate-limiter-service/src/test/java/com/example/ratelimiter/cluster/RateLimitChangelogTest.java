@@ -0,0 +1,128 @@
+package com.example.ratelimiter.cluster;
+
+import com.example.ratelimiter.audit.DecisionAuditor;
+import com.example.ratelimiter.policy.PolicyEngine;
+import com.example.ratelimiter.service.RateLimitService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.example.common.event.RateLimitRequestEvent;
+import org.example.common.event.RateLimitResultEvent;
+import org.example.common.event.RateLimitStateEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RateLimitChangelogTest {
+
+    private static final String CHANGELOG = "rate-limiter-changelog";
+    private static final String SERVICE = "user-service";
+    private static final int LIMIT = 5;
+    private static final int WINDOW_MS = 60_000;
+    private static final TopicPartition REQUESTS = new TopicPartition(RateLimitChangelog.REQUEST_TOPIC, 0);
+    private static final TopicPartition STATES = new TopicPartition(CHANGELOG, 0);
+
+    @SuppressWarnings("unchecked")
+    private final ConsumerFactory<String, Object> consumerFactory = mock(ConsumerFactory.class);
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, Object> kafkaTemplate = mock(KafkaTemplate.class);
+    private final MockConsumer<String, Object> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+
+    // Поля @Value без Spring не заполняются, поэтому алгоритм задаётся в запросе
+    private static RateLimitService service() {
+        MockEnvironment environment = new MockEnvironment();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PolicyEngine policies = new PolicyEngine(new DefaultResourceLoader(), environment, registry, "",
+            1000, LIMIT, WINDOW_MS);
+        DecisionAuditor auditor = new DecisionAuditor(null, registry, false, 1024, "", 0, 1000, 20, 1000, 100);
+        return new RateLimitService(environment, registry, policies, auditor, 1024, 0, 600000, 100, 4096,
+            120000, true, false, "unused");
+    }
+
+    private static RateLimitRequestEvent request(String clientId) {
+        RateLimitRequestEvent request = new RateLimitRequestEvent(clientId, SERVICE, "/api/users");
+        request.setAlgorithm("token-bucket");
+        return request;
+    }
+
+    private static long allowed(RateLimitService service, String clientId, int count) {
+        List<RateLimitRequestEvent> requests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            requests.add(request(clientId));
+        }
+        return service.checkRateLimits(requests).stream().filter(RateLimitResultEvent::isAllowed).count();
+    }
+
+    private RateLimitChangelog changelog(RateLimitService service) {
+        return new RateLimitChangelog(service, kafkaTemplate, consumerFactory, new SimpleMeterRegistry(),
+            true, CHANGELOG, 5000);
+    }
+
+    @Test
+    void newOwnerRestoresClientStateBeforeFirstCheck() {
+        RateLimitService previousOwner = service();
+        assertEquals(3, allowed(previousOwner, "client-1", 3));
+        RateLimitStateEvent state = previousOwner.snapshot(request("client-1"));
+        RateLimitStateEvent stale = new RateLimitStateEvent(SERVICE, "client-2", "token-bucket", LIMIT, WINDOW_MS,
+            state.getState(), System.currentTimeMillis() - 10L * WINDOW_MS);
+
+        when(consumerFactory.createConsumer(any(), anyString(), any(), any(Properties.class))).thenReturn(consumer);
+        consumer.updateBeginningOffsets(Map.of(STATES, 0L));
+        consumer.updateEndOffsets(Map.of(STATES, 4L));
+        consumer.schedulePollTask(() -> {
+            consumer.addRecord(new ConsumerRecord<>(CHANGELOG, 0, 0, "user-service:client-1", state));
+            consumer.addRecord(new ConsumerRecord<>(CHANGELOG, 0, 1, "user-service:client-2", stale));
+            // Tombstone после компакции и запись чужого формата пропускаются
+            consumer.addRecord(new ConsumerRecord<>(CHANGELOG, 0, 2, "user-service:client-3", null));
+            consumer.addRecord(new ConsumerRecord<>(CHANGELOG, 0, 3, "user-service:client-4", "garbage"));
+        });
+
+        RateLimitService newOwner = service();
+        changelog(newOwner).restore(List.of(REQUESTS));
+
+        assertEquals(LIMIT - 3, allowed(newOwner, "client-1", LIMIT));
+        // Снимок старше двух окон ничего не значит: клиент начинает с полного лимита
+        assertEquals(LIMIT, allowed(newOwner, "client-2", LIMIT));
+        assertTrue(consumer.closed());
+    }
+
+    @Test
+    void restoreIgnoresPartitionsOfOtherTopics() {
+        changelog(service()).restore(List.of(new TopicPartition("rate-limit-results", 0)));
+
+        verify(consumerFactory, never()).createConsumer(any(), anyString(), any(), any(Properties.class));
+    }
+
+    @Test
+    void handOffWritesOnlyClientsOfRevokedPartitions() {
+        RateLimitService service = service();
+        RateLimitChangelog changelog = changelog(service);
+        List<RateLimitRequestEvent> requests = List.of(request("client-1"), request("client-2"));
+        service.checkRateLimits(requests);
+        changelog.markDirty(requests, List.of(0, 1));
+
+        changelog.handOff(List.of(REQUESTS));
+
+        verify(kafkaTemplate).send(eq(CHANGELOG), eq(0), eq("user-service:client-1"), any(RateLimitStateEvent.class));
+        verify(kafkaTemplate, never()).send(eq(CHANGELOG), anyInt(), eq("user-service:client-2"), any());
+    }
+}
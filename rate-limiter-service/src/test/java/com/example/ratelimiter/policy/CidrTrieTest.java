@@ -0,0 +1,85 @@
+package com.example.ratelimiter.policy;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CidrTrieTest {
+
+    @Test
+    void matchesLongestIpv4Prefix() {
+        CidrTrie<String> trie = new CidrTrie<>();
+        trie.put("10.0.0.0/8", "corporate");
+        trie.put("10.1.0.0/16", "office");
+        trie.put("10.1.2.3", "host");
+
+        assertEquals("corporate", trie.match("10.200.0.1"));
+        assertEquals("office", trie.match("10.1.9.9"));
+        assertEquals("host", trie.match("10.1.2.3"));
+        assertNull(trie.match("11.0.0.1"));
+        assertEquals(3, trie.size());
+    }
+
+    @Test
+    void matchesIpv6WithCompressedGroups() {
+        CidrTrie<String> trie = new CidrTrie<>();
+        trie.put("2001:db8::/32", "documentation");
+        trie.put("2001:db8:1::/48", "lab");
+
+        assertEquals("documentation", trie.match("2001:db8:ffff::1"));
+        assertEquals("lab", trie.match("2001:0DB8:0001:0000:0000:0000:0000:0001"));
+        assertEquals("lab", trie.match("[2001:db8:1::42]"));
+        assertNull(trie.match("2001:db9::1"));
+    }
+
+    @Test
+    void parsesDoubleColonForms() {
+        assertArrayEquals(new byte[16], CidrTrie.parse("::"));
+        byte[] loopback = new byte[16];
+        loopback[15] = 1;
+        assertArrayEquals(loopback, CidrTrie.parse("::1"));
+        byte[] prefix = new byte[16];
+        prefix[0] = (byte) 0xfe;
+        prefix[1] = (byte) 0x80;
+        assertArrayEquals(prefix, CidrTrie.parse("fe80::"));
+        assertArrayEquals(CidrTrie.parse("1:0:0:0:0:0:0:8"), CidrTrie.parse("1::8"));
+        assertArrayEquals(CidrTrie.parse("1:2:3:4:5:6:7:0"), CidrTrie.parse("1:2:3:4:5:6:7::"));
+    }
+
+    @Test
+    void matchesIpv4MappedAddressAsIpv4() {
+        CidrTrie<String> trie = new CidrTrie<>();
+        trie.put("10.0.0.0/8", "corporate");
+        trie.put("::/0", "any-ipv6");
+
+        assertArrayEquals(new byte[] {10, 0, 0, 1}, CidrTrie.parse("::ffff:10.0.0.1"));
+        assertEquals("corporate", trie.match("::ffff:10.0.0.1"));
+        assertEquals("any-ipv6", trie.match("::10.0.0.1"));
+    }
+
+    @Test
+    void returnsNullForClientIdsThatAreNotAddresses() {
+        CidrTrie<String> trie = new CidrTrie<>();
+        trie.put("0.0.0.0/0", "any-ipv4");
+        trie.put("::/0", "any-ipv6");
+
+        // Имена не ищутся в DNS: всё, что не литерал адреса, не входит ни в одну сеть
+        for (String clientId : new String[] {"localhost", "client-42", "partner-key", "abc:def:ghi",
+            "fe80::1%eth0", "1:::2", "1::2::3", "12345::", "1:2:3:4:5:6:7", "1:2:3:4:5:6:7:8:9",
+            "::1.2.3", "::1.2.3.4:5", "1.2.3.256", "1.2.3", "1.2.3.4.5", "", ":", "1:"}) {
+            assertNull(trie.match(clientId), clientId);
+        }
+        assertNull(trie.match(null));
+    }
+
+    @Test
+    void rejectsInvalidNetworks() {
+        CidrTrie<String> trie = new CidrTrie<>();
+
+        assertThrows(IllegalArgumentException.class, () -> trie.put("gateway.local/24", "x"));
+        assertThrows(IllegalArgumentException.class, () -> trie.put("10.0.0.0/33", "x"));
+        assertThrows(IllegalArgumentException.class, () -> trie.put("2001:db8::/129", "x"));
+        assertThrows(IllegalArgumentException.class, () -> trie.put("10.0.0.0/x", "x"));
+        assertTrue(trie.isEmpty());
+    }
+}
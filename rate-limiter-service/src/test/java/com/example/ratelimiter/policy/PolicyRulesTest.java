@@ -0,0 +1,86 @@
+package com.example.ratelimiter.policy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolicyRulesTest {
+
+    private static final LimitPolicy FALLBACK = new LimitPolicy("default", 100, 60_000, null);
+
+    private static PolicyRules.Definition definition(String defaultTier, Map<String, String> apiKeys,
+                                                     Map<String, String> headerTiers,
+                                                     List<PolicyRules.Network> networks) {
+        return new PolicyRules.Definition(defaultTier, Map.of(
+            "free", new PolicyRules.Tier(10, 0, null),
+            "premium", new PolicyRules.Tier(1000, 1000, "token-bucket"),
+            "internal", new PolicyRules.Tier(5000, 60_000, null)), apiKeys, headerTiers, networks);
+    }
+
+    private static PolicyRules rules() {
+        return PolicyRules.compile(definition("free",
+            Map.of("partner-key", "premium"),
+            Map.of("gold", "premium"),
+            List.of(new PolicyRules.Network("10.0.0.0/8", "internal"),
+                new PolicyRules.Network("2001:db8::/32", "premium"))), FALLBACK);
+    }
+
+    @Test
+    void apiKeyWinsOverHeaderAndNetwork() {
+        assertEquals("premium", rules().resolve("partner-key", "10.1.2.3", "unknown").tier());
+    }
+
+    @Test
+    void headerTierWinsOverNetwork() {
+        assertEquals("premium", rules().resolve("client-1", "10.1.2.3", "gold").tier());
+        assertEquals("internal", rules().resolve("client-1", "10.1.2.3", "silver").tier());
+    }
+
+    @Test
+    void networkMatchesOnlyClientAddress() {
+        PolicyRules rules = rules();
+
+        assertEquals("internal", rules.resolve("client-1", "10.1.2.3", null).tier());
+        assertEquals("premium", rules.resolve("client-1", "2001:db8::7", null).tier());
+        assertEquals("free", rules.resolve("client-1", "192.168.0.1", null).tier());
+        // X-Client-ID задаёт сам клиент: похожий на адрес id не даёт tier сети
+        assertEquals("free", rules.resolve("10.9.9.9", null, null).tier());
+        assertEquals("free", rules.resolve("10.9.9.9", "192.168.0.1", null).tier());
+    }
+
+    @Test
+    void tierInheritsWindowAndKeepsAlgorithm() {
+        PolicyRules rules = rules();
+
+        LimitPolicy free = rules.defaultPolicy();
+        assertEquals(new LimitPolicy("free", 10, FALLBACK.windowMs(), null), free);
+        assertEquals(new LimitPolicy("premium", 1000, 1000, "token-bucket"), rules.resolve("partner-key", null, null));
+        assertEquals(3, rules.tierCount());
+        assertEquals(1, rules.apiKeyCount());
+        assertEquals(2, rules.networkCount());
+    }
+
+    @Test
+    void withoutDefaultTierFallsBackToConfiguredLimit() {
+        PolicyRules rules = PolicyRules.compile(definition(null, null, null, null), FALLBACK);
+
+        assertSame(FALLBACK, rules.resolve("client-1", "10.1.2.3", "gold"));
+    }
+
+    @Test
+    void invalidDefinitionIsRejectedWhole() {
+        assertThrows(IllegalArgumentException.class, () -> PolicyRules.compile(
+            definition("gold", null, null, null), FALLBACK));
+        assertThrows(IllegalArgumentException.class, () -> PolicyRules.compile(
+            definition("free", Map.of("partner-key", "platinum"), null, null), FALLBACK));
+        assertThrows(IllegalArgumentException.class, () -> PolicyRules.compile(
+            definition("free", null, null, List.of(new PolicyRules.Network("partner.example.com/24", "free"))),
+            FALLBACK));
+        assertThrows(IllegalArgumentException.class, () -> PolicyRules.compile(
+            new PolicyRules.Definition(null, Map.of("broken", new PolicyRules.Tier(0, 1000, null)), null, null, null),
+            FALLBACK));
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.ratelimiter.service;
+
+import com.example.ratelimiter.algorithm.PackedAlgorithm;
+import com.example.ratelimiter.algorithm.RateLimitAlgorithm;
+import com.example.ratelimiter.audit.DecisionAuditor;
+import com.example.ratelimiter.policy.PolicyEngine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.common.event.RateLimitRequestEvent;
+import org.example.common.event.RateLimitResultEvent;
+import org.example.common.event.RateLimitStateEvent;
+import org.example.common.event.RateLimitUsage;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitServiceTest {
+
+    private static final String SERVICE = "user-service";
+    private static final int LIMIT = 5;
+    private static final int WINDOW_MS = 60_000;
+
+    private final MockEnvironment environment = new MockEnvironment();
+
+    // Поля @Value без Spring не заполняются: алгоритм задаётся в запросе, окно квот — в свойствах
+    private RateLimitService service() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PolicyEngine policies = new PolicyEngine(new DefaultResourceLoader(), environment, registry, "",
+            1000, LIMIT, WINDOW_MS);
+        DecisionAuditor auditor = new DecisionAuditor(null, registry, false, 1024, "", 0, 1000, 20, 1000, 100);
+        return new RateLimitService(environment, registry, policies, auditor, 1024, 0, 600000, 100, 4096,
+            120000, true, false, "unused");
+    }
+
+    private static RateLimitRequestEvent request(String clientId, String endpoint) {
+        RateLimitRequestEvent request = new RateLimitRequestEvent(clientId, SERVICE, endpoint);
+        request.setAlgorithm("token-bucket");
+        return request;
+    }
+
+    private static List<RateLimitRequestEvent> requests(String clientId, int count) {
+        List<RateLimitRequestEvent> requests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            requests.add(request(clientId, "/api/users/" + i));
+        }
+        return requests;
+    }
+
+    // Остаток ведра самого клиента, без квот сервиса и всего лимитера
+    private static int clientRemaining(RateLimitService service, String clientId) {
+        RateLimitStateEvent snapshot = service.snapshot(request(clientId, "/api/users"));
+        PackedAlgorithm algorithm = RateLimitAlgorithm.TOKEN_BUCKET.packed(LIMIT, WINDOW_MS);
+        return algorithm.remaining(snapshot.getState(), System.currentTimeMillis());
+    }
+
+    @Test
+    void batchGrantsFirstRequestsOfClientUpToLimit() {
+        List<RateLimitResultEvent> results = service().checkRateLimits(requests("client-1", 8));
+
+        for (int i = 0; i < 8; i++) {
+            RateLimitResultEvent result = results.get(i);
+            assertEquals(i < LIMIT, result.isAllowed(), "request " + i);
+            // Остаток такой же, как при проверке запросов по одному
+            assertEquals(Math.max(0, LIMIT - i - 1), result.getRemainingRequests(), "request " + i);
+            assertEquals(i < LIMIT ? null : "client", result.getRejectedBy(), "request " + i);
+            assertEquals("/api/users/" + i, result.getEndpoint());
+        }
+    }
+
+    @Test
+    void batchGroupsClientsAndKeepsRequestOrder() {
+        RateLimitService service = service();
+        List<RateLimitRequestEvent> requests = new ArrayList<>();
+        for (int i = 0; i < LIMIT + 1; i++) {
+            requests.add(request("client-a", "/api/users"));
+            requests.add(request("client-b", "/api/users"));
+        }
+
+        List<RateLimitResultEvent> results = service.checkRateLimits(requests);
+
+        for (int i = 0; i < requests.size(); i++) {
+            assertEquals(requests.get(i).getRequestId(), results.get(i).getRequestId());
+            assertEquals(requests.get(i).getClientId(), results.get(i).getClientId());
+            assertEquals(i < 2 * LIMIT, results.get(i).isAllowed(), "request " + i);
+        }
+        assertFalse(service.checkRateLimit(request("client-a", "/api/users")).isAllowed());
+    }
+
+    @Test
+    void batchAfterSingleChecksSharesTheClientBucket() {
+        RateLimitService service = service();
+        service.checkRateLimit(request("client-1", "/api/users"));
+        service.checkRateLimit(request("client-1", "/api/users"));
+
+        List<RateLimitResultEvent> results = service.checkRateLimits(requests("client-1", 4));
+
+        assertEquals(List.of(true, true, true, false), results.stream().map(RateLimitResultEvent::isAllowed).toList());
+        assertEquals(0, results.get(2).getRemainingRequests());
+    }
+
+    @Test
+    void serviceQuotaRejectsAndReturnsPermitsToClientBucket() {
+        environment.setProperty("rate-limiter.quota.services.user-service.limit", "3");
+        environment.setProperty("rate-limiter.quota.services.user-service.window-ms", "60000");
+        RateLimitService service = service();
+
+        List<RateLimitResultEvent> results = service.checkRateLimits(requests("client-1", LIMIT));
+
+        assertEquals(3, results.stream().filter(RateLimitResultEvent::isAllowed).count());
+        assertEquals("service", results.get(3).getRejectedBy());
+        assertEquals("service", results.get(4).getRejectedBy());
+        // Два запроса, отклонённых квотой сервиса, в лимит клиента не засчитаны
+        assertEquals(LIMIT - 3, clientRemaining(service, "client-1"));
+        RateLimitResultEvent other = service.checkRateLimit(request("client-2", "/api/users"));
+        assertFalse(other.isAllowed());
+        assertEquals("service", other.getRejectedBy());
+        assertEquals(LIMIT, clientRemaining(service, "client-2"));
+    }
+
+    @Test
+    void endpointQuotaRejectionDoesNotSpendServiceQuota() {
+        environment.setProperty("rate-limiter.quota.services.user-service.limit", "2");
+        environment.setProperty("rate-limiter.quota.services.user-service.window-ms", "60000");
+        environment.setProperty("rate-limiter.quota.endpoints[0].service", SERVICE);
+        environment.setProperty("rate-limiter.quota.endpoints[0].path", "/api/users/search");
+        environment.setProperty("rate-limiter.quota.endpoints[0].limit", "1");
+        environment.setProperty("rate-limiter.quota.endpoints[0].window-ms", "60000");
+        RateLimitService service = service();
+
+        assertTrue(service.checkRateLimit(request("client-1", "/api/users/search?q=a")).isAllowed());
+        RateLimitResultEvent rejected = service.checkRateLimit(request("client-1", "/api/users/search?q=b"));
+        assertFalse(rejected.isAllowed());
+        assertEquals("endpoint", rejected.getRejectedBy());
+        assertEquals(LIMIT - 1, clientRemaining(service, "client-1"));
+
+        // Откат вернул место в квоте сервиса: другой клиент получает последнее
+        assertTrue(service.checkRateLimit(request("client-2", "/api/users/1")).isAllowed());
+        RateLimitResultEvent exhausted = service.checkRateLimit(request("client-3", "/api/users/1"));
+        assertFalse(exhausted.isAllowed());
+        assertEquals("service", exhausted.getRejectedBy());
+    }
+
+    @Test
+    void globalQuotaIsSharedAcrossServices() {
+        environment.setProperty("rate-limiter.quota.global.limit", "2");
+        environment.setProperty("rate-limiter.quota.global.window-ms", "60000");
+        RateLimitService service = service();
+        RateLimitRequestEvent otherService = new RateLimitRequestEvent("client-1", "order-service", "/api/orders");
+        otherService.setAlgorithm("token-bucket");
+
+        assertTrue(service.checkRateLimit(request("client-1", "/api/users")).isAllowed());
+        assertTrue(service.checkRateLimit(otherService).isAllowed());
+        RateLimitResultEvent rejected = service.checkRateLimit(request("client-2", "/api/users"));
+
+        assertFalse(rejected.isAllowed());
+        assertEquals("global", rejected.getRejectedBy());
+        assertEquals(0, rejected.getRemainingRequests());
+    }
+
+    @Test
+    void batchRejectedByQuotaReportsTheLevelPerRequest() {
+        environment.setProperty("rate-limiter.quota.services.user-service.limit", "2");
+        environment.setProperty("rate-limiter.quota.services.user-service.window-ms", "60000");
+        RateLimitService service = service();
+
+        List<RateLimitResultEvent> results = service.checkRateLimits(requests("client-1", LIMIT + 2));
+
+        List<String> rejectedBy = results.stream().map(RateLimitResultEvent::getRejectedBy).toList();
+        assertEquals(Arrays.asList(null, null, "service", "service", "service", "client", "client"),
+            rejectedBy);
+    }
+
+    @Test
+    void syncResolvesPolicyByClientAddressAndTier() {
+        environment.setProperty("rate-limiter.algorithm.services.user-service", "token-bucket");
+        environment.setProperty("rate-limiter.policy.default-tier", "free");
+        environment.setProperty("rate-limiter.policy.tiers.free.limit", "100");
+        environment.setProperty("rate-limiter.policy.tiers.premium.limit", "1000");
+        environment.setProperty("rate-limiter.policy.tiers.internal.limit", "10000");
+        environment.setProperty("rate-limiter.policy.header-tiers.gold", "premium");
+        environment.setProperty("rate-limiter.policy.networks[0].cidr", "10.0.0.0/8");
+        environment.setProperty("rate-limiter.policy.networks[0].tier", "internal");
+        RateLimitService service = service();
+
+        // Подделанный X-Client-ID в виде адреса из внутренней сети не даёт её лимит
+        RateLimitResultEvent spoofed = service.applyUsage(
+            new RateLimitUsage("10.0.0.1", "203.0.113.7", null, SERVICE, 1, LIMIT, WINDOW_MS));
+        assertEquals(100, spoofed.getLimit());
+        RateLimitResultEvent internal = service.applyUsage(
+            new RateLimitUsage("client-1", "10.0.0.1", null, SERVICE, 1, LIMIT, WINDOW_MS));
+        assertEquals(10000, internal.getLimit());
+        RateLimitResultEvent gold = service.applyUsage(
+            new RateLimitUsage("client-2", "203.0.113.7", "gold", SERVICE, 1, LIMIT, WINDOW_MS));
+        assertEquals(1000, gold.getLimit());
+        assertEquals(WINDOW_MS, gold.getWindowMs());
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.ratelimiter.store;
+
+import com.example.ratelimiter.algorithm.PackedAlgorithm;
+import com.example.ratelimiter.algorithm.RateLimitAlgorithm;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientTableStoreTest {
+
+    private static final int CAPACITY = 4 * ClientTable.PAGE_SLOTS;
+    // Заголовок, три long на слот страницы и CRC
+    private static final int RECORD_BYTES = 8 + ClientTable.PAGE_SLOTS * 3 * Long.BYTES + Long.BYTES;
+    // Отпечатки меньше 2^32 попадают в слот со своим номером: первая и вторая страницы
+    private static final long FIRST_PAGE_CLIENT = 10;
+    private static final long SECOND_PAGE_CLIENT = ClientTable.PAGE_SLOTS + 10;
+
+    @TempDir
+    Path directory;
+
+    private final PackedAlgorithm algorithm = RateLimitAlgorithm.TOKEN_BUCKET.packed(10, 60_000);
+    private final int config = ClientTable.config(algorithm);
+    private final long now = System.currentTimeMillis();
+
+    private void use(ClientTable table, long fingerprint, int permits) {
+        table.record(table.slotFor(fingerprint, config, now), algorithm, permits, now);
+    }
+
+    private int remaining(ClientTable table, long fingerprint) {
+        int slot = table.find(fingerprint, config);
+        assertTrue(slot >= 0, "client " + fingerprint + " not recovered");
+        return algorithm.remaining(table.state(slot), now);
+    }
+
+    @Test
+    void recoversSnapshotAndWalAfterRestart() throws IOException {
+        ClientTable table = new ClientTable(CAPACITY);
+        try (ClientTableStore store = new ClientTableStore(directory, table)) {
+            store.recover();
+            use(table, FIRST_PAGE_CLIENT, 3);
+            store.logChanges();
+            store.checkpoint();
+            // Это изменение есть только в WAL
+            use(table, SECOND_PAGE_CLIENT, 4);
+            store.logChanges();
+        }
+
+        ClientTable recovered = new ClientTable(CAPACITY);
+        try (ClientTableStore store = new ClientTableStore(directory, recovered)) {
+            assertEquals(2, store.recover());
+            assertEquals(RECORD_BYTES, store.walBytes());
+        }
+        assertEquals(7, remaining(recovered, FIRST_PAGE_CLIENT));
+        assertEquals(6, remaining(recovered, SECOND_PAGE_CLIENT));
+    }
+
+    @Test
+    void tornWalTailIsDroppedAndOverwritten() throws IOException {
+        ClientTable table = new ClientTable(CAPACITY);
+        try (ClientTableStore store = new ClientTableStore(directory, table)) {
+            store.recover();
+            use(table, FIRST_PAGE_CLIENT, 3);
+            store.logChanges();
+            use(table, SECOND_PAGE_CLIENT, 4);
+            store.logChanges();
+        }
+        // Падение посреди записи второй страницы
+        try (FileChannel wal = FileChannel.open(directory.resolve("clients.wal"), StandardOpenOption.WRITE)) {
+            wal.truncate(2L * RECORD_BYTES - 100);
+        }
+
+        ClientTable recovered = new ClientTable(CAPACITY);
+        try (ClientTableStore store = new ClientTableStore(directory, recovered)) {
+            assertEquals(1, store.recover());
+            assertEquals(RECORD_BYTES, store.walBytes());
+            // Новая запись ложится сразу за последней целой
+            use(recovered, SECOND_PAGE_CLIENT, 1);
+            store.logChanges();
+        }
+        assertEquals(7, remaining(recovered, FIRST_PAGE_CLIENT));
+
+        ClientTable again = new ClientTable(CAPACITY);
+        try (ClientTableStore store = new ClientTableStore(directory, again)) {
+            assertEquals(2, store.recover());
+        }
+        assertEquals(7, remaining(again, FIRST_PAGE_CLIENT));
+        assertEquals(9, remaining(again, SECOND_PAGE_CLIENT));
+    }
+
+    @Test
+    void walRecordWithBadChecksumEndsReplay() throws IOException {
+        ClientTable table = new ClientTable(CAPACITY);
+        try (ClientTableStore store = new ClientTableStore(directory, table)) {
+            store.recover();
+            use(table, FIRST_PAGE_CLIENT, 3);
+            store.logChanges();
+            use(table, SECOND_PAGE_CLIENT, 4);
+            store.logChanges();
+        }
+        try (FileChannel wal = FileChannel.open(directory.resolve("clients.wal"), StandardOpenOption.WRITE)) {
+            wal.write(ByteBuffer.wrap(new byte[] {(byte) 0xff}), RECORD_BYTES + 100);
+        }
+
+        ClientTable recovered = new ClientTable(CAPACITY);
+        try (ClientTableStore store = new ClientTableStore(directory, recovered)) {
+            assertEquals(1, store.recover());
+        }
+        assertEquals(-1, recovered.find(SECOND_PAGE_CLIENT, config));
+    }
+
+    @Test
+    void snapshotOfAnotherCapacityIsReinsertedAndRewritten() throws IOException {
+        ClientTable table = new ClientTable(CAPACITY);
+        try (ClientTableStore store = new ClientTableStore(directory, table)) {
+            store.recover();
+            use(table, FIRST_PAGE_CLIENT, 3);
+            store.logChanges();
+            store.checkpoint();
+            use(table, SECOND_PAGE_CLIENT, 4);
+            store.logChanges();
+        }
+
+        ClientTable resized = new ClientTable(4 * CAPACITY);
+        try (ClientTableStore store = new ClientTableStore(directory, resized)) {
+            assertEquals(2, store.recover());
+            // Снимок сразу переписан в новой раскладке, WAL пуст
+            assertEquals(0, store.walBytes());
+        }
+        assertEquals(7, remaining(resized, FIRST_PAGE_CLIENT));
+        assertEquals(6, remaining(resized, SECOND_PAGE_CLIENT));
+
+        ClientTable reopened = new ClientTable(4 * CAPACITY);
+        try (ClientTableStore store = new ClientTableStore(directory, reopened)) {
+            assertEquals(2, store.recover());
+        }
+        assertEquals(7, remaining(reopened, FIRST_PAGE_CLIENT));
+        assertEquals(6, remaining(reopened, SECOND_PAGE_CLIENT));
+    }
+}
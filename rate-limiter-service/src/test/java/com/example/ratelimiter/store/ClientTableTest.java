@@ -0,0 +1,149 @@
+package com.example.ratelimiter.store;
+
+import com.example.ratelimiter.algorithm.PackedAlgorithm;
+import com.example.ratelimiter.algorithm.RateLimitAlgorithm;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientTableTest {
+
+    private static final long NOW = 1_750_000_000_000L;
+    private static final int CAPACITY = 16;
+    private static final int PROBE_LIMIT = 8;
+    private static final long EVICT_IDLE_MS = 60_000;
+
+    private final PackedAlgorithm algorithm = RateLimitAlgorithm.TOKEN_BUCKET.packed(10, 1000);
+    private final int config = ClientTable.config(algorithm);
+    private final ClientTable table = new ClientTable(CAPACITY, EVICT_IDLE_MS);
+
+    // Отпечатки меньше 2^32 с одинаковым остатком попадают в одно окно поиска
+    private static long colliding(int i) {
+        return 1 + (long) i * CAPACITY;
+    }
+
+    @Test
+    void slotForFindsTheSameClientAgain() {
+        int slot = table.slotFor(colliding(0), config, NOW);
+        assertTrue(table.tryAcquire(slot, algorithm, NOW));
+
+        assertEquals(slot, table.slotFor(colliding(0), config, NOW));
+        assertEquals(slot, table.find(colliding(0), config));
+        assertEquals(9, algorithm.remaining(table.state(slot), NOW));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void collidingClientsProbeToNeighbouringSlots() {
+        int first = table.slotFor(colliding(0), config, NOW);
+        int second = table.slotFor(colliding(1), config, NOW);
+
+        assertEquals((first + 1) % CAPACITY, second);
+        assertEquals(second, table.find(colliding(1), config));
+        assertEquals(-1, table.find(colliding(2), config));
+    }
+
+    @Test
+    void configChangeResetsClientState() {
+        int slot = table.slotFor(colliding(0), config, NOW);
+        table.record(slot, algorithm, 10, NOW);
+        PackedAlgorithm premium = RateLimitAlgorithm.TOKEN_BUCKET.packed(100, 1000);
+
+        assertEquals(slot, table.slotFor(colliding(0), ClientTable.config(premium), NOW));
+
+        assertEquals(100, premium.remaining(table.state(slot), NOW));
+        assertEquals(-1, table.find(colliding(0), config));
+    }
+
+    @Test
+    void fullWindowOfActiveClientsGivesNoSlot() {
+        int[] slots = new int[PROBE_LIMIT];
+        for (int i = 0; i < PROBE_LIMIT; i++) {
+            slots[i] = table.slotFor(colliding(i), config, NOW);
+            table.record(slots[i], algorithm, 5, NOW);
+        }
+
+        assertEquals(ClientTable.NO_SLOT, table.slotFor(colliding(PROBE_LIMIT), config, NOW + EVICT_IDLE_MS / 2));
+
+        assertEquals(1, table.overflows());
+        assertEquals(0, table.evictions());
+        // Активные клиенты своё состояние не потеряли
+        for (int i = 0; i < PROBE_LIMIT; i++) {
+            assertEquals(slots[i], table.find(colliding(i), config));
+            assertEquals(5, algorithm.remaining(table.state(slots[i]), NOW));
+        }
+    }
+
+    @Test
+    void fullWindowEvictsTheLongestIdleClient() {
+        for (int i = 0; i < PROBE_LIMIT; i++) {
+            // Клиент 3 обращался раньше всех, остальные — в пределах evict-idle
+            long accessedAt = i == 3 ? NOW - 2 * EVICT_IDLE_MS : NOW - EVICT_IDLE_MS / 2;
+            int slot = table.slotFor(colliding(i), config, accessedAt);
+            table.record(slot, algorithm, 5, accessedAt);
+        }
+        int idleSlot = table.find(colliding(3), config);
+
+        int slot = table.slotFor(colliding(PROBE_LIMIT), config, NOW);
+
+        assertEquals(idleSlot, slot);
+        assertEquals(0, table.state(slot));
+        assertEquals(-1, table.find(colliding(3), config));
+        assertEquals(1, table.evictions());
+        assertEquals(PROBE_LIMIT, table.size());
+    }
+
+    @Test
+    void restoreIntoFullWindowIsRefused() {
+        for (int i = 0; i < PROBE_LIMIT; i++) {
+            table.slotFor(colliding(i), config, NOW);
+        }
+
+        assertFalse(table.restore(colliding(PROBE_LIMIT), config, algorithm.record(0, 3, NOW), NOW));
+        assertTrue(table.restore(colliding(0), config, algorithm.record(0, 3, NOW), NOW));
+        assertEquals(7, algorithm.remaining(table.state(table.find(colliding(0), config)), NOW));
+    }
+
+    @Test
+    void sweepRemovesOnlyIdleClients() {
+        int idle = table.slotFor(colliding(0), config, NOW - 10_000);
+        table.record(idle, algorithm, 5, NOW - 10_000);
+        int active = table.slotFor(colliding(1), config, NOW);
+        table.record(active, algorithm, 5, NOW);
+
+        assertEquals(1, table.sweep(CAPACITY, NOW - 5_000));
+
+        assertEquals(1, table.size());
+        assertEquals(-1, table.find(colliding(0), config));
+        assertEquals(active, table.find(colliding(1), config));
+        // Вернувшийся клиент начинает с полного лимита
+        int returned = table.slotFor(colliding(0), config, NOW);
+        assertEquals(10, algorithm.remaining(table.state(returned), NOW));
+    }
+
+    @Test
+    void sweepAdvancesByBudgetPerCall() {
+        for (int i = 0; i < 4; i++) {
+            table.slotFor(colliding(i), config, NOW - 10_000);
+        }
+
+        // Четыре клиента в слотах 1..4: первый проход смотрит слоты 0..2, второй — 3..5
+        assertEquals(2, table.sweep(3, NOW));
+        assertEquals(2, table.size());
+        assertEquals(2, table.sweep(3, NOW));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    void drainDirtyPagesReportsChangedPagesOnce() {
+        ClientTable large = new ClientTable(4 * ClientTable.PAGE_SLOTS);
+        int slot = large.slotFor(3L * ClientTable.PAGE_SLOTS + 1, config, NOW);
+        StringBuilder pages = new StringBuilder();
+
+        large.drainDirtyPages(page -> pages.append(page).append(' '));
+        large.drainDirtyPages(page -> pages.append(page).append(' '));
+
+        assertEquals(3, slot / ClientTable.PAGE_SLOTS);
+        assertEquals("3 ", pages.toString());
+    }
+}